@@ -0,0 +1,303 @@
+package com;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingControl;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The Id3Events hooks on the Java Flight Recorder. Id3Events loads this class
+ * when the runtime has the flight recorder API, which first came with JDK
+ * 8u262; it lives in its own source folder so that the rest builds on any
+ * Java 8.
+ * <p/>
+ * The event types are only looked up once the flight recorder has been
+ * started, as loading the first event class brings in much of the recorder.
+ * From then on every begin hook checks that its event is enabled before
+ * creating it, so recordings that leave an event off don't pay for it.
+ */
+final class JfrEvents extends Id3Events {
+
+	/**
+	 * The event types, loaded on first use.
+	 */
+	private static final class Types {
+
+		static final EventType WEIGHT = EventType.getEventType(Weight.class);
+
+		static final EventType SPLIT = EventType.getEventType(Split.class);
+
+		static final EventType SUBTREE = EventType.getEventType(Subtree.class);
+
+		static final EventType SCORE = EventType.getEventType(Score.class);
+	}
+
+	@Override
+	Object beginWeight() {
+		if (!FlightRecorder.isInitialized() || !Types.WEIGHT.isEnabled()) {
+			return null;
+		}
+		Weight event = new Weight();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	void endWeight(Object event, String attribute, double weight, int rows) {
+		Weight weightEvent = (Weight) event;
+		weightEvent.end();
+		if (weightEvent.shouldCommit()) {
+			weightEvent.attribute = attribute;
+			weightEvent.weight = weight;
+			weightEvent.rows = rows;
+			weightEvent.commit();
+		}
+	}
+
+	@Override
+	Object beginSplit() {
+		if (!FlightRecorder.isInitialized() || !Types.SPLIT.isEnabled()) {
+			return null;
+		}
+		Split event = new Split();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	void endSplit(Object event, int depth, int rows, String attribute, double gain, boolean split,
+			boolean sampled) {
+		Split splitEvent = (Split) event;
+		splitEvent.end();
+		if (splitEvent.shouldCommit()) {
+			splitEvent.depth = depth;
+			splitEvent.rows = rows;
+			splitEvent.attribute = attribute;
+			splitEvent.gain = gain;
+			splitEvent.split = split;
+			splitEvent.sampled = sampled;
+			splitEvent.commit();
+		}
+	}
+
+	@Override
+	boolean subtreesEnabled() {
+		return FlightRecorder.isInitialized() && Types.SUBTREE.isEnabled();
+	}
+
+	@Override
+	Object beginSubtree() {
+		if (!subtreesEnabled()) {
+			return null;
+		}
+		Subtree event = new Subtree();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	void endSubtree(Object event, int depth, int rows, int nodes, int leaves) {
+		Subtree subtreeEvent = (Subtree) event;
+		subtreeEvent.end();
+		if (subtreeEvent.shouldCommit()) {
+			subtreeEvent.depth = depth;
+			subtreeEvent.rows = rows;
+			subtreeEvent.nodes = nodes;
+			subtreeEvent.leaves = leaves;
+			subtreeEvent.commit();
+		}
+	}
+
+	@Override
+	Object beginScore() {
+		if (!FlightRecorder.isInitialized() || !Types.SCORE.isEnabled()) {
+			return null;
+		}
+		Score event = new Score();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	void endScore(Object event, int depth, String prediction) {
+		// the sample is drawn by commit; shouldCommit would draw it again
+		Score scoreEvent = (Score) event;
+		scoreEvent.end();
+		scoreEvent.depth = depth;
+		scoreEvent.prediction = prediction;
+		scoreEvent.commit();
+	}
+
+	/**
+	 * The OneR weight of one attribute, the fraction of the training rows its
+	 * OneR rule classifies correctly.
+	 */
+	@Name("com.MyOneR.Weight")
+	@Label("OneR Weight")
+	@Category({ "DM-ML", "Build" })
+	@Description("The OneR weight of one attribute")
+	@StackTrace(false)
+	static final class Weight extends Event {
+
+		@Label("Attribute")
+		String attribute;
+
+		@Label("Weight")
+		double weight;
+
+		@Label("Rows")
+		int rows;
+	}
+
+	/**
+	 * The decision taken at one node of a MyId3 tree: a split on the best
+	 * attribute, or a leaf.
+	 */
+	@Name("com.MyId3.Split")
+	@Label("Split Decision")
+	@Category({ "DM-ML", "Build" })
+	@Description("The split decision of one node of a MyId3 tree")
+	@StackTrace(false)
+	@Threshold("1 ms")
+	static final class Split extends Event {
+
+		@Label("Depth")
+		int depth;
+
+		@Label("Rows")
+		@Description("The number of training rows reaching the node")
+		int rows;
+
+		@Label("Attribute")
+		@Description("The best attribute, null if none was scored")
+		String attribute;
+
+		@Label("Gain")
+		@Description("The gain of the best attribute under the split criterion, NaN if none was scored")
+		double gain;
+
+		@Label("Split")
+		@Description("Whether the node was split rather than made a leaf")
+		boolean split;
+
+		@Label("Sampled")
+		@Description("Whether the attribute was chosen on a sample of the rows")
+		boolean sampled;
+	}
+
+	/**
+	 * A subtree of a MyId3 tree grown to completion, from the split of its root
+	 * to its last leaf. As trees are grown breadth first, the subtree's nodes
+	 * are interleaved with those of its neighbours in between.
+	 */
+	@Name("com.MyId3.Subtree")
+	@Label("Subtree")
+	@Category({ "DM-ML", "Build" })
+	@Description("A subtree of a MyId3 tree grown to completion")
+	@StackTrace(false)
+	@Threshold("10 ms")
+	static final class Subtree extends Event {
+
+		@Label("Depth")
+		int depth;
+
+		@Label("Rows")
+		int rows;
+
+		@Label("Nodes")
+		int nodes;
+
+		@Label("Leaves")
+		int leaves;
+	}
+
+	/**
+	 * One call scoring an instance with a MyId3 tree.
+	 */
+	@Name("com.MyId3.Score")
+	@Label("Score")
+	@Category({ "DM-ML", "Scoring" })
+	@Description("A sample of the calls scoring an instance with a MyId3 tree")
+	@StackTrace(false)
+	static final class Score extends Event {
+
+		@Label("Depth")
+		@Description("The depth of the leaf reached")
+		int depth;
+
+		@Label("Prediction")
+		String prediction;
+
+		/**
+		 * Keeps the share of the calls set by the sample setting.
+		 *
+		 * @param control the setting
+		 * @return true to keep the event
+		 */
+		@SettingDefinition
+		@Name("sample")
+		@Label("Sample")
+		@Description("Keep about one call in this many")
+		protected boolean sample(Sampling control) {
+			return control.take();
+		}
+	}
+
+	/**
+	 * The setting keeping about one event in n, n being 1000 by default. When
+	 * several recordings set it, the smallest n wins.
+	 */
+	public static final class Sampling extends SettingControl {
+
+		/** The default of n. */
+		private static final long DEFAULT = 1000;
+
+		/** One event in this many is kept. */
+		private volatile long m_Every = DEFAULT;
+
+		@Override
+		public String combine(Set<String> values) {
+			long every = Long.MAX_VALUE;
+			for (String value : values) {
+				every = Math.min(every, parse(value));
+			}
+			return Long.toString(every == Long.MAX_VALUE ? DEFAULT : every);
+		}
+
+		@Override
+		public void setValue(String value) {
+			m_Every = parse(value);
+		}
+
+		@Override
+		public String getValue() {
+			return Long.toString(m_Every);
+		}
+
+		/**
+		 * Returns whether to keep the current event.
+		 */
+		boolean take() {
+			long every = m_Every;
+			return every <= 1 || ThreadLocalRandom.current().nextLong(every) == 0;
+		}
+
+		private static long parse(String value) {
+			try {
+				return Math.max(1, Long.parseLong(value.trim()));
+			} catch (NumberFormatException e) {
+				return DEFAULT;
+			}
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The ContingencyCounter on the vector API of JDK 16 and later. A vector of
+ * byte values is widened into vectors of ints, whose lanes are combined with
+ * the class values into table positions. Every lane counts into its own copy
+ * of the table, so the lanes of a vector never hit the same count and can be
+ * gathered, incremented and scattered at once; the copies are summed at the
+ * end. Unlike the scalar loop, no increment waits on the previous one of the
+ * same count, so columns dominated by a few (value, class) pairs gain most.
+ * <p/>
+ * The class needs JDK 16 or later and lives in its own source folder, which
+ * is not on the project's build path nor in any other build. Compiling it is
+ * a manual step: compile it by hand with such a JDK next to the other
+ * classes, and enable the module when running:
+ *
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -cp bin -d bin src-vector/com/VectorContingencyCounter.java
+ * java --add-modules jdk.incubator.vector -cp bin:lib/weka.jar ...
+ * </pre>
+ */
+final class VectorContingencyCounter extends ContingencyCounter {
+
+	/** The int vectors the counts are computed in. */
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+	/** The byte vectors read, at least as many lanes as INTS. */
+	private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(byte.class,
+			VectorShape.forBitSize(Math.max(64, INTS.vectorBitSize() / 4)));
+
+	/** Below this many rows per count the copies of the table cost more. */
+	private static final int MIN_ROWS_PER_COUNT = 4;
+
+	@Override
+	void count(byte[] values, int[] classValues, int numRows, int numClasses, int[] table) {
+		int lanes = INTS.length();
+		if (numRows < MIN_ROWS_PER_COUNT * lanes * table.length) {
+			super.count(values, classValues, numRows, numClasses, table);
+			return;
+		}
+		int parts = BYTES.length() / lanes;
+		int[] copies = new int[table.length * lanes];
+		int[] positions = new int[lanes];
+		IntVector lane = IntVector.zero(INTS).addIndex(1);
+		int bound = BYTES.loopBound(numRows);
+		int row = 0;
+		for (; row < bound; row += BYTES.length()) {
+			ByteVector block = ByteVector.fromArray(BYTES, values, row);
+			for (int part = 0; part < parts; part++) {
+				IntVector value = ((IntVector) block.convertShape(VectorOperators.B2I, INTS, part)).and(0xFF);
+				value.mul(numClasses).add(IntVector.fromArray(INTS, classValues, row + part * lanes)).mul(lanes)
+						.add(lane).intoArray(positions, 0);
+				IntVector.fromArray(INTS, copies, 0, positions, 0).add(1).intoArray(copies, 0, positions, 0);
+			}
+		}
+		for (int k = 0; k < table.length; k++) {
+			int sum = 0;
+			for (int l = 0; l < lanes; l++) {
+				sum += copies[k * lanes + l];
+			}
+			table[k] += sum;
+		}
+		for (; row < numRows; row++) {
+			table[(values[row] & 0xFF) * numClasses + classValues[row]]++;
+		}
+	}
+
+	@Override
+	boolean isVectorized() {
+		return true;
+	}
+}
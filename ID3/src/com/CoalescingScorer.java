@@ -0,0 +1,460 @@
+package com;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+import weka.core.Utils;
+
+/**
+ * Collects single-row scoring requests from many threads into batches. A
+ * batch is closed when it holds the maximum number of rows or when its first
+ * row has waited the maximum time, whichever comes first; its rows are then
+ * copied into one preallocated buffer and scored in a single pass by one
+ * dispatcher thread, and the callers' futures are completed.
+ * <p/>
+ * The scorer keeps metrics on the batch sizes and on the time rows waited
+ * before being scored.
+ */
+public class CoalescingScorer {
+
+	/**
+	 * A model scoring rows held back to back in a buffer.
+	 */
+	public interface BatchModel {
+
+		/**
+		 * Returns whether rows may have missing values.
+		 *
+		 * @return true if missing values are handled
+		 */
+		boolean allowsMissingValues();
+
+		/**
+		 * Scores a batch of rows. A row that can't be scored gets an exception
+		 * instead of a distribution, failing only that row.
+		 *
+		 * @param values        the rows, numAttributes values each
+		 * @param numAttributes the number of values per row
+		 * @param numRows       the number of rows
+		 * @param results       receives a new class distribution per row
+		 * @param errors        receives the exception of each row that can't
+		 *                      be scored, and is left null for the others
+		 * @throws Exception if the batch can't be scored, failing all its rows
+		 */
+		void score(double[] values, int numAttributes, int numRows, double[][] results, Exception[] errors)
+				throws Exception;
+	}
+
+	/**
+	 * A row waiting to be scored.
+	 */
+	private static class Pending {
+
+		final double[] m_Values;
+		final long m_Enqueued = System.nanoTime();
+		final CompletableFuture<double[]> m_Result = new CompletableFuture<double[]>();
+
+		Pending(double[] values) {
+			m_Values = values;
+		}
+	}
+
+	/** The model. */
+	private final BatchModel m_Model;
+
+	/** The number of values per row. */
+	private final int m_NumAttributes;
+
+	/** The maximum number of rows per batch. */
+	private final int m_MaxBatchSize;
+
+	/** The longest a row waits for others to join its batch, in nanoseconds. */
+	private final long m_MaxWaitNanos;
+
+	/** The rows waiting for the dispatcher. */
+	private final BlockingQueue<Pending> m_Queue = new LinkedBlockingQueue<Pending>();
+
+	/** The rows of the batch being scored. */
+	private final Pending[] m_Batch;
+
+	/** The values of the batch being scored, row after row. */
+	private final double[] m_Values;
+
+	/** The distributions of the batch being scored. */
+	private final double[][] m_Results;
+
+	/** The exception of each row of the current batch that can't be scored. */
+	private final Exception[] m_Errors;
+
+	/** Scores the batches. */
+	private final Thread m_Dispatcher;
+
+	/** Number of batches scored. */
+	private final AtomicLong m_Batches = new AtomicLong();
+
+	/** Number of rows scored. */
+	private final AtomicLong m_Rows = new AtomicLong();
+
+	/** Largest batch scored. */
+	private final AtomicLong m_MaxBatch = new AtomicLong();
+
+	/** Total time rows waited before being scored, in nanoseconds. */
+	private final AtomicLong m_WaitNanos = new AtomicLong();
+
+	/** Longest time a row waited before being scored, in nanoseconds. */
+	private final AtomicLong m_MaxWaitNanosSeen = new AtomicLong();
+
+	/** Number of batches by size: entry k counts sizes from 2^k to 2^(k+1)-1. */
+	private final AtomicLongArray m_BatchSizes = new AtomicLongArray(32);
+
+	/** Set once close has been called. */
+	private volatile boolean m_Closed;
+
+	/**
+	 * Creates a scorer and starts its dispatcher thread.
+	 *
+	 * @param model          the model
+	 * @param numAttributes  the number of values per row
+	 * @param maxBatchSize   the maximum number of rows per batch
+	 * @param maxWaitMicros  the longest a row waits for others to join its
+	 *                       batch, in microseconds; 0 takes only the rows that
+	 *                       are already waiting
+	 */
+	public CoalescingScorer(BatchModel model, int numAttributes, int maxBatchSize, long maxWaitMicros) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1!");
+		}
+		m_Model = model;
+		m_NumAttributes = numAttributes;
+		m_MaxBatchSize = maxBatchSize;
+		m_MaxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+		m_Batch = new Pending[maxBatchSize];
+		m_Values = new double[maxBatchSize * numAttributes];
+		m_Results = new double[maxBatchSize][];
+		m_Errors = new Exception[maxBatchSize];
+		m_Dispatcher = new Thread("coalescing-scorer") {
+			@Override
+			public void run() {
+				dispatch();
+			}
+		};
+		m_Dispatcher.setDaemon(true);
+		m_Dispatcher.start();
+	}
+
+	/**
+	 * Creates a scorer for the model currently held by a ModelHolder. Each
+	 * batch is scored with the model current when the batch is closed.
+	 *
+	 * @param holder        the model holder, with a model published
+	 * @param maxBatchSize  the maximum number of rows per batch
+	 * @param maxWaitMicros the longest a row waits, in microseconds
+	 * @return the scorer
+	 * @throws IllegalStateException if no model has been published yet
+	 */
+	public static CoalescingScorer forModel(final ModelHolder holder, int maxBatchSize, long maxWaitMicros) {
+		ModelHolder.Version version = holder.current();
+		if (version == null) {
+			throw new IllegalStateException("No model published yet!");
+		}
+		return new CoalescingScorer(new BatchModel() {
+			@Override
+			public boolean allowsMissingValues() {
+				return false;
+			}
+
+			@Override
+			public void score(double[] values, int numAttributes, int numRows, double[][] results,
+					Exception[] errors) {
+				FlatTree model = holder.current().model();
+				for (int i = 0; i < numRows; i++) {
+					try {
+						results[i] = model.distribution(model.leafOffset(values, i * numAttributes));
+					} catch (NoSupportForMissingValuesException e) {
+						errors[i] = e;
+					}
+				}
+			}
+		}, version.model().numAttributes(), maxBatchSize, maxWaitMicros);
+	}
+
+	/**
+	 * Creates a scorer for a trained MyId3 tree, scoring a snapshot of it.
+	 *
+	 * @param tree          the trained tree
+	 * @param maxBatchSize  the maximum number of rows per batch
+	 * @param maxWaitMicros the longest a row waits, in microseconds
+	 * @return the scorer
+	 */
+	public static CoalescingScorer forTree(MyId3 tree, int maxBatchSize, long maxWaitMicros) {
+		ModelHolder holder = new ModelHolder();
+		holder.publish(tree);
+		return forModel(holder, maxBatchSize, maxWaitMicros);
+	}
+
+	/**
+	 * Creates a scorer for a trained MyOneR classifier. The distributions put
+	 * all weight on the predicted class.
+	 *
+	 * @param oneR          the trained classifier
+	 * @param header        the header of the training data
+	 * @param maxBatchSize  the maximum number of rows per batch
+	 * @param maxWaitMicros the longest a row waits, in microseconds
+	 * @return the scorer
+	 */
+	public static CoalescingScorer forOneR(final MyOneR oneR, Instances header, int maxBatchSize,
+			long maxWaitMicros) {
+		final int numClasses = header.numClasses();
+		return new CoalescingScorer(new BatchModel() {
+			@Override
+			public boolean allowsMissingValues() {
+				return true;
+			}
+
+			@Override
+			public void score(double[] values, int numAttributes, int numRows, double[][] results,
+					Exception[] errors) throws Exception {
+				for (int i = 0; i < numRows; i++) {
+					results[i] = new double[numClasses];
+					results[i][(int) oneR.classifyValues(values, i * numAttributes, numAttributes)] = 1;
+				}
+			}
+		}, header.numAttributes(), maxBatchSize, maxWaitMicros);
+	}
+
+	/**
+	 * Queues a row given as attribute values, nominal values by their index.
+	 *
+	 * @param values the values, not modified until the future completes
+	 * @return the future class distribution
+	 */
+	public CompletableFuture<double[]> distributionForValues(double[] values) {
+		Pending pending = new Pending(values);
+		if (values.length != m_NumAttributes) {
+			pending.m_Result.completeExceptionally(
+					new IllegalArgumentException("Expected " + m_NumAttributes + " values, got " + values.length + "!"));
+		} else if (m_Closed) {
+			pending.m_Result.completeExceptionally(new IllegalStateException("Scorer closed!"));
+		} else {
+			m_Queue.add(pending);
+			// close() may have run since the check, and the dispatcher drained
+			// the queue before the row was added
+			if (m_Closed && m_Queue.remove(pending)) {
+				pending.m_Result.completeExceptionally(new IllegalStateException("Scorer closed!"));
+			}
+		}
+		return pending.m_Result;
+	}
+
+	/**
+	 * Queues an instance.
+	 *
+	 * @param instance the instance
+	 * @return the future class distribution
+	 */
+	public CompletableFuture<double[]> distributionForInstance(Instance instance) {
+		if (!m_Model.allowsMissingValues() && instance.hasMissingValue()) {
+			CompletableFuture<double[]> result = new CompletableFuture<double[]>();
+			result.completeExceptionally(new NoSupportForMissingValuesException("Id3: no missing values, please."));
+			return result;
+		}
+		return distributionForValues(instance.toDoubleArray());
+	}
+
+	/**
+	 * Queues an instance for classification.
+	 *
+	 * @param instance the instance
+	 * @return the future predicted class, missing if the row fell into an empty
+	 *         leaf
+	 */
+	public CompletableFuture<Double> classifyInstance(Instance instance) {
+		return distributionForInstance(instance).thenApply(new java.util.function.Function<double[], Double>() {
+			@Override
+			public Double apply(double[] dist) {
+				return Utils.sum(dist) == 0 ? Utils.missingValue() : Utils.maxIndex(dist);
+			}
+		});
+	}
+
+	/**
+	 * Stops the dispatcher. Rows still queued fail with an
+	 * IllegalStateException.
+	 */
+	public void close() {
+		m_Closed = true;
+		m_Dispatcher.interrupt();
+	}
+
+	/**
+	 * Takes batches off the queue and scores them until closed.
+	 */
+	private void dispatch() {
+		while (!m_Closed) {
+			try {
+				m_Batch[0] = m_Queue.take();
+			} catch (InterruptedException e) {
+				break;
+			}
+			int size = 1;
+			long deadline = m_Batch[0].m_Enqueued + m_MaxWaitNanos;
+			try {
+				while (size < m_MaxBatchSize) {
+					Pending next = m_Queue.poll();
+					if (next == null) {
+						long remaining = deadline - System.nanoTime();
+						if (remaining <= 0 || (next = m_Queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+							break;
+						}
+					}
+					m_Batch[size++] = next;
+				}
+			} catch (InterruptedException e) {
+				m_Closed = true;
+			}
+			scoreBatch(size);
+		}
+		Pending pending;
+		while ((pending = m_Queue.poll()) != null) {
+			pending.m_Result.completeExceptionally(new IllegalStateException("Scorer closed!"));
+		}
+	}
+
+	/**
+	 * Scores the first rows of the current batch and completes their futures.
+	 *
+	 * @param size the number of rows
+	 */
+	private void scoreBatch(int size) {
+		long now = System.nanoTime();
+		long maxWait = 0;
+		long totalWait = 0;
+		for (int i = 0; i < size; i++) {
+			System.arraycopy(m_Batch[i].m_Values, 0, m_Values, i * m_NumAttributes, m_NumAttributes);
+			long waited = now - m_Batch[i].m_Enqueued;
+			totalWait += waited;
+			maxWait = Math.max(maxWait, waited);
+		}
+		try {
+			m_Model.score(m_Values, m_NumAttributes, size, m_Results, m_Errors);
+			for (int i = 0; i < size; i++) {
+				if (m_Errors[i] != null) {
+					m_Batch[i].m_Result.completeExceptionally(m_Errors[i]);
+				} else {
+					m_Batch[i].m_Result.complete(m_Results[i]);
+				}
+			}
+		} catch (Exception e) {
+			for (int i = 0; i < size; i++) {
+				m_Batch[i].m_Result.completeExceptionally(e);
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			m_Batch[i] = null;
+			m_Results[i] = null;
+			m_Errors[i] = null;
+		}
+
+		m_Batches.incrementAndGet();
+		m_Rows.addAndGet(size);
+		m_WaitNanos.addAndGet(totalWait);
+		// only the dispatcher writes the maxima
+		if (size > m_MaxBatch.get()) {
+			m_MaxBatch.set(size);
+		}
+		if (maxWait > m_MaxWaitNanosSeen.get()) {
+			m_MaxWaitNanosSeen.set(maxWait);
+		}
+		m_BatchSizes.incrementAndGet(31 - Integer.numberOfLeadingZeros(size));
+	}
+
+	/**
+	 * Returns the number of batches scored.
+	 *
+	 * @return the number of batches
+	 */
+	public long numBatches() {
+		return m_Batches.get();
+	}
+
+	/**
+	 * Returns the number of rows scored.
+	 *
+	 * @return the number of rows
+	 */
+	public long numRows() {
+		return m_Rows.get();
+	}
+
+	/**
+	 * Returns the number of rows waiting to be scored.
+	 *
+	 * @return the number of queued rows
+	 */
+	public int numQueued() {
+		return m_Queue.size();
+	}
+
+	/**
+	 * Returns the mean number of rows per batch.
+	 *
+	 * @return the mean batch size, 0 if nothing was scored
+	 */
+	public double meanBatchSize() {
+		long batches = m_Batches.get();
+		return batches == 0 ? 0 : (double) m_Rows.get() / batches;
+	}
+
+	/**
+	 * Returns the largest number of rows scored as one batch.
+	 *
+	 * @return the largest batch size
+	 */
+	public long maxBatchSize() {
+		return m_MaxBatch.get();
+	}
+
+	/**
+	 * Returns the counts of batches by size. Entry k counts the batches of 2^k
+	 * to 2^(k+1)-1 rows.
+	 *
+	 * @return the histogram, up to the largest non-empty entry
+	 */
+	public long[] batchSizeHistogram() {
+		int length = 32;
+		while (length > 0 && m_BatchSizes.get(length - 1) == 0) {
+			length--;
+		}
+		long[] histogram = new long[length];
+		for (int k = 0; k < length; k++) {
+			histogram[k] = m_BatchSizes.get(k);
+		}
+		return histogram;
+	}
+
+	/**
+	 * Returns the mean time rows waited before being scored.
+	 *
+	 * @return the mean wait in microseconds, 0 if nothing was scored
+	 */
+	public double meanWaitMicros() {
+		long rows = m_Rows.get();
+		return rows == 0 ? 0 : m_WaitNanos.get() / 1e3 / rows;
+	}
+
+	/**
+	 * Returns the longest time a row waited before being scored.
+	 *
+	 * @return the longest wait in microseconds
+	 */
+	public double maxWaitMicros() {
+		return m_MaxWaitNanosSeen.get() / 1e3;
+	}
+}
@@ -0,0 +1,57 @@
+package com;
+
+/**
+ * Counts the (value, class) pairs of a column of byte values, the histogram
+ * kernel behind the contingency tables of MyId3's whole-column scans and
+ * MyOneR's nominal rules. This class is the scalar version. On JDK 16 and
+ * later, started with <code>--add-modules jdk.incubator.vector</code>, the
+ * vectorized VectorContingencyCounter is used instead if it has been compiled.
+ * Both give the same counts.
+ * <p/>
+ * VectorContingencyCounter is in the src-vector source folder, which is not
+ * part of the Java 8 project or any other build: compiling it is a manual
+ * step, with the javac line given there. Without it, this class is used.
+ */
+class ContingencyCounter {
+
+	/** The counter used, vectorized if the runtime allows it. */
+	static final ContingencyCounter INSTANCE = load();
+
+	/**
+	 * Adds the (value, class) pairs of the first rows of a column to a table.
+	 *
+	 * @param values      the value index of each row, unsigned
+	 * @param classValues the class value index of each row
+	 * @param numRows     the number of rows counted, from row 0
+	 * @param numClasses  the number of classes
+	 * @param table       the counts, value v and class c at v * numClasses + c
+	 */
+	void count(byte[] values, int[] classValues, int numRows, int numClasses, int[] table) {
+		for (int row = 0; row < numRows; row++) {
+			table[(values[row] & 0xFF) * numClasses + classValues[row]]++;
+		}
+	}
+
+	/**
+	 * Returns whether the counting is vectorized.
+	 *
+	 * @return true for the vectorized counter
+	 */
+	boolean isVectorized() {
+		return false;
+	}
+
+	/**
+	 * Returns the vectorized counter if the vector API is there and the class
+	 * has been compiled, the scalar one otherwise.
+	 */
+	private static ContingencyCounter load() {
+		try {
+			Class.forName("jdk.incubator.vector.IntVector");
+			return (ContingencyCounter) Class.forName("com.VectorContingencyCounter").getDeclaredConstructor()
+					.newInstance();
+		} catch (Throwable e) {
+			return new ContingencyCounter();
+		}
+	}
+}
@@ -0,0 +1,413 @@
+package com;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.converters.ArffLoader;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Grows a MyId3 tree on rows sharded over several ShardWorker processes, on
+ * this host or others. The workers count their own rows; this coordinator
+ * only holds the header. For every level of the tree it sends the splits of
+ * the level to all workers, sums the class counts and contingency tables they
+ * return for the successors, and lets MyId3 choose the successors' splits from
+ * the sums with its usual criteria and limits. The OneR weights come from the
+ * summed tables of the root. As the sums are the counts of all rows, the tree
+ * is the one MyId3 grows in a single process.
+ * <p/>
+ * Valid options are:
+ *
+ * <pre>
+ * -t &lt;training file&gt;
+ *  The ARFF file giving the header, class last; with -local also the
+ *  rows (required).
+ * </pre>
+ *
+ * <pre>
+ * -workers &lt;host:port,...&gt;
+ *  The addresses of running ShardWorkers.
+ * </pre>
+ *
+ * <pre>
+ * -local &lt;number of workers&gt;
+ *  Start this many worker processes on this host instead, each holding
+ *  every n-th row of the training file.
+ * </pre>
+ *
+ * <pre>
+ * -verify
+ *  Also grow the tree in this process on the training file and check
+ *  that both trees are the same.
+ * </pre>
+ *
+ * All other options are passed to MyId3.
+ */
+public class DistributedId3 {
+
+	/**
+	 * The connection to one worker.
+	 */
+	private static class Connection {
+
+		/** The worker's address, for messages. */
+		final String m_Address;
+
+		final Socket m_Socket;
+
+		final DataInputStream m_In;
+
+		final DataOutputStream m_Out;
+
+		Connection(String address) throws IOException {
+			m_Address = address;
+			int colon = address.lastIndexOf(':');
+			if (colon < 0) {
+				throw new IOException("Worker address without port: " + address);
+			}
+			m_Socket = new Socket(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+			m_Socket.setTcpNoDelay(true);
+			m_In = new DataInputStream(new BufferedInputStream(m_Socket.getInputStream(), 1 << 16));
+			m_Out = new DataOutputStream(new BufferedOutputStream(m_Socket.getOutputStream(), 1 << 16));
+		}
+
+		/**
+		 * Reads the status of a reply.
+		 *
+		 * @throws IOException if the worker reports an error
+		 */
+		void readStatus() throws IOException {
+			if (m_In.readUnsignedByte() != 0) {
+				throw new IOException("Worker " + m_Address + " failed: " + m_In.readUTF());
+			}
+		}
+	}
+
+	/** The header of the training data. */
+	private final Instances m_Header;
+
+	/** The workers. */
+	private final List<Connection> m_Workers = new ArrayList<Connection>();
+
+	/** Number of rows over all shards. */
+	private long m_NumInstances;
+
+	/** Number of bytes received from the workers. */
+	private long m_BytesReceived;
+
+	/**
+	 * Connects to the workers and checks that their shards have the header's
+	 * attributes.
+	 *
+	 * @param header    the header of the training data, with the class set
+	 * @param addresses the workers' addresses, as host:port
+	 * @throws IOException if a worker can't be reached or does not match
+	 */
+	public DistributedId3(Instances header, String[] addresses) throws IOException {
+		m_Header = new Instances(header, 0);
+		try {
+			for (String address : addresses) {
+				m_Workers.add(new Connection(address.trim()));
+			}
+			for (Connection worker : m_Workers) {
+				worker.m_Out.writeByte(ShardWorker.HELLO);
+				worker.m_Out.flush();
+			}
+			for (Connection worker : m_Workers) {
+				worker.readStatus();
+				m_NumInstances += worker.m_In.readInt();
+				boolean same = worker.m_In.readInt() == m_Header.numAttributes()
+						& worker.m_In.readInt() == m_Header.classIndex();
+				for (int att = 0; att < m_Header.numAttributes() && same; att++) {
+					same = worker.m_In.readInt() == m_Header.attribute(att).numValues();
+				}
+				if (!same) {
+					throw new IOException("Worker " + worker.m_Address + " holds different attributes!");
+				}
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of rows over all shards.
+	 *
+	 * @return the number of rows
+	 */
+	public long numInstances() {
+		return m_NumInstances;
+	}
+
+	/**
+	 * Returns the number of bytes of counts received so far.
+	 *
+	 * @return the number of bytes
+	 */
+	public long bytesReceived() {
+		return m_BytesReceived;
+	}
+
+	/**
+	 * Grows a tree on the rows of all workers.
+	 *
+	 * @param tree the untrained tree, with its options set
+	 * @throws Exception if the tree can't be built or a worker fails
+	 */
+	public void buildClassifier(MyId3 tree) throws Exception {
+		if (m_NumInstances > Integer.MAX_VALUE) {
+			throw new Exception("Too many rows to count in int: " + m_NumInstances + "!");
+		}
+		tree.buildTree(m_Header, new LevelCounter() {
+			@Override
+			public void countRoot(NodeStatistics root) throws Exception {
+				for (Connection worker : m_Workers) {
+					worker.m_Out.writeByte(ShardWorker.ROOT);
+					worker.m_Out.flush();
+				}
+				readLevel(new NodeStatistics[] { root });
+			}
+
+			@Override
+			public void countLevel(int[] splits, NodeStatistics[] successors) throws Exception {
+				for (Connection worker : m_Workers) {
+					worker.m_Out.writeByte(ShardWorker.SPLIT);
+					worker.m_Out.writeInt(splits.length);
+					for (int att : splits) {
+						worker.m_Out.writeInt(att);
+					}
+					worker.m_Out.flush();
+				}
+				readLevel(successors);
+			}
+		});
+		for (Connection worker : m_Workers) {
+			worker.m_Out.writeByte(ShardWorker.QUIT);
+			worker.m_Out.flush();
+		}
+	}
+
+	/**
+	 * Reads the counts of a level from every worker and sums them. The workers
+	 * count in parallel, so reading the replies one after the other only waits
+	 * for the slowest.
+	 *
+	 * @param nodes receives the summed counts of the level's nodes
+	 * @throws IOException if a worker fails or returns another number of nodes
+	 */
+	private void readLevel(NodeStatistics[] nodes) throws IOException {
+		int numClasses = m_Header.numClasses();
+		int[][] classCounts = new int[nodes.length][numClasses];
+		int[][][] counts = new int[nodes.length][][];
+		byte[] block = new byte[0];
+		for (Connection worker : m_Workers) {
+			DataInputStream in = worker.m_In;
+			worker.readStatus();
+			int numNodes = in.readInt();
+			if (numNodes != nodes.length) {
+				throw new IOException("Worker " + worker.m_Address + " returned " + numNodes + " nodes, expected "
+						+ nodes.length + "!");
+			}
+			int length = in.readInt();
+			if (block.length < length) {
+				block = new byte[length];
+			}
+			in.readFully(block, 0, length);
+			m_BytesReceived += length;
+			int[] position = { 0 };
+			for (int i = 0; i < numNodes; i++) {
+				int numRows = 0;
+				for (int c = 0; c < numClasses; c++) {
+					int count = getVarint(block, position);
+					classCounts[i][c] += count;
+					numRows += count;
+				}
+				if (numRows == 0) {
+					continue;
+				}
+				if (counts[i] == null) {
+					counts[i] = new int[m_Header.numAttributes()][];
+					for (int att = 0; att < counts[i].length; att++) {
+						if (att != m_Header.classIndex()) {
+							counts[i][att] = new int[m_Header.attribute(att).numValues() * numClasses];
+						}
+					}
+				}
+				for (int[] table : counts[i]) {
+					if (table != null) {
+						for (int k = 0; k < table.length; k++) {
+							table[k] += getVarint(block, position);
+						}
+					}
+				}
+			}
+			if (position[0] != length) {
+				throw new IOException("Worker " + worker.m_Address + " sent a malformed block!");
+			}
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i].setClassCounts(classCounts[i]);
+			if (counts[i] != null) {
+				nodes[i].setCounts(counts[i]);
+			}
+			counts[i] = null;
+		}
+	}
+
+	/**
+	 * Decodes a count of a block.
+	 *
+	 * @param block    the block
+	 * @param position the position of the count, advanced past it
+	 * @return the count
+	 */
+	private static int getVarint(byte[] block, int[] position) {
+		int value = 0;
+		int pos = position[0];
+		for (int shift = 0;; shift += 7) {
+			byte b = block[pos++];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				position[0] = pos;
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Closes the connections to the workers.
+	 */
+	public void close() {
+		for (Connection worker : m_Workers) {
+			try {
+				worker.m_Socket.close();
+			} catch (IOException e) {
+				// nothing left to do with it
+			}
+		}
+		m_Workers.clear();
+	}
+
+	/**
+	 * Starts worker processes on this host, each holding every n-th row of a
+	 * file.
+	 *
+	 * @param trainFile  the training file
+	 * @param numWorkers the number of workers
+	 * @param processes  receives the processes, to be destroyed by the caller
+	 * @return the workers' addresses
+	 * @throws IOException if a worker does not start
+	 */
+	static String[] startLocalWorkers(String trainFile, int numWorkers, List<Process> processes)
+			throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		for (int i = 0; i < numWorkers; i++) {
+			ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					ShardWorker.class.getName(), "-t", trainFile, "-shard", i + "/" + numWorkers, "-p", "0");
+			builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+			processes.add(builder.start());
+		}
+		// every worker prints its port once it has read its rows
+		String[] addresses = new String[numWorkers];
+		for (int i = 0; i < numWorkers; i++) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(processes.get(i).getInputStream()));
+			String line = reader.readLine();
+			if (line == null || !line.startsWith("ShardWorker listening on port ")) {
+				throw new IOException("Worker " + i + " did not start: " + line);
+			}
+			addresses[i] = "localhost:" + line.split(" ")[4];
+		}
+		return addresses;
+	}
+
+	/**
+	 * Returns the binary form of a tree's snapshot, which holds its splits and
+	 * leaf distributions.
+	 */
+	private static byte[] bytes(MyId3 tree) {
+		FlatTree flat = tree.snapshot();
+		ByteBuffer buffer = ByteBuffer.allocate((int) flat.sizeInBytes());
+		flat.writeTo(buffer);
+		return buffer.array();
+	}
+
+	/**
+	 * Grows a tree on the workers and prints it.
+	 *
+	 * @param args the options, see the class description
+	 * @throws Exception if the data can't be read or the tree can't be built
+	 */
+	public static void main(String[] args) throws Exception {
+		String trainFile = Utils.getOption('t', args);
+		if (trainFile.length() == 0) {
+			throw new Exception("No training file given (-t).");
+		}
+		String workers = Utils.getOption("workers", args);
+		String local = Utils.getOption("local", args);
+		boolean verify = Utils.getFlag("verify", args);
+		if ((workers.length() == 0) == (local.length() == 0)) {
+			throw new Exception("Give either the workers (-workers) or their number (-local).");
+		}
+		String[] treeOptions = args.clone();
+
+		// only the header is needed unless the tree is also grown here
+		ArffLoader loader = new ArffLoader();
+		loader.setFile(new File(trainFile));
+		Instances header = loader.getStructure();
+		header.setClassIndex(header.numAttributes() - 1);
+		List<Process> processes = new ArrayList<Process>();
+		DistributedId3 coordinator = null;
+		try {
+			String[] addresses = local.length() != 0
+					? startLocalWorkers(trainFile, Integer.parseInt(local), processes)
+					: workers.split(",");
+			coordinator = new DistributedId3(header, addresses);
+			MyId3 tree = new MyId3();
+			tree.setOptions(args);
+			long start = System.nanoTime();
+			coordinator.buildClassifier(tree);
+			long nanos = System.nanoTime() - start;
+			System.out.println(tree);
+			System.out.println("Grown on " + coordinator.numInstances() + " rows of " + addresses.length
+					+ " workers in " + Utils.doubleToString(nanos / 1e6, 1) + " ms, " + coordinator.bytesReceived()
+					+ " bytes of counts received");
+
+			if (verify) {
+				Instances data = DataSource.read(trainFile);
+				data.setClassIndex(data.numAttributes() - 1);
+				MyId3 single = new MyId3();
+				single.setOptions(treeOptions);
+				start = System.nanoTime();
+				single.buildClassifier(data);
+				nanos = System.nanoTime() - start;
+				boolean same = tree.toString().equals(single.toString()) && Arrays.equals(bytes(tree), bytes(single));
+				System.out.println("Grown in this process in " + Utils.doubleToString(nanos / 1e6, 1) + " ms: "
+						+ (same ? "the trees are the same" : "THE TREES DIFFER"));
+				if (!same) {
+					System.exit(1);
+				}
+			}
+		} finally {
+			if (coordinator != null) {
+				coordinator.close();
+			}
+			for (Process process : processes) {
+				process.destroy();
+			}
+		}
+	}
+}
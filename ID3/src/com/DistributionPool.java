@@ -0,0 +1,67 @@
+package com;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns class distributions so that leaves with equal distributions share a
+ * single array. In unpruned trees most leaves are pure or empty, so a tree
+ * typically needs only a handful of distinct arrays.
+ */
+class DistributionPool {
+
+	/** The canonical array of each distinct distribution. */
+	private final Map<Key, double[]> m_Pool = new HashMap<Key, double[]>();
+
+	/**
+	 * Returns the canonical array with the same contents as the given one. The
+	 * array passed in becomes canonical if no equal array was interned before,
+	 * so it must not be modified afterwards.
+	 *
+	 * @param distribution the distribution
+	 * @return the shared array holding the distribution
+	 */
+	double[] intern(double[] distribution) {
+		Key key = new Key(distribution);
+		double[] canonical = m_Pool.get(key);
+		if (canonical == null) {
+			m_Pool.put(key, distribution);
+			canonical = distribution;
+		}
+		return canonical;
+	}
+
+	/**
+	 * Returns the number of distinct distributions interned.
+	 *
+	 * @return the number of distributions
+	 */
+	int size() {
+		return m_Pool.size();
+	}
+
+	/**
+	 * Content-based key of a distribution.
+	 */
+	private static final class Key {
+
+		private final double[] m_Distribution;
+		private final int m_Hash;
+
+		Key(double[] distribution) {
+			m_Distribution = distribution;
+			m_Hash = Arrays.hashCode(distribution);
+		}
+
+		@Override
+		public int hashCode() {
+			return m_Hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(m_Distribution, ((Key) o).m_Distribution);
+		}
+	}
+}
@@ -0,0 +1,859 @@
+package com;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+import weka.core.SparseInstance;
+
+/**
+ * Nominal dataset encoded once into primitive arrays for tree induction. Every
+ * attribute value is stored as its value index. Dense data is held column-wise
+ * (one <code>byte[]</code> per attribute, or an <code>int[]</code> for
+ * attributes with more than 256 values); data made up entirely of
+ * <code>SparseInstance</code>s is held row-wise in compressed sparse row form,
+ * keeping only the non-default (non-zero) entries of each row.
+ * <p/>
+ * Rows are addressed by their index, so subsets of the data are expressed as
+ * ranges of a row index array rather than as copies of the instances.
+ * <p/>
+ * Dense data can be moved outside the Java heap with offHeap, into direct
+ * buffers or a memory-mapped file, for datasets too large to be scanned and
+ * copied by the garbage collector.
+ */
+public class EncodedInstances implements Serializable {
+
+	/** for serialization */
+	static final long serialVersionUID = 4460829178356411245L;
+
+	/** Number of rows hashed at a time when looking for duplicates. */
+	private static final int DISTINCT_BLOCK = 4096;
+
+	/** Header of the encoded data (no instances). */
+	private final Instances m_Header;
+
+	/** Number of rows. */
+	private final int m_NumInstances;
+
+	/** Index of the class attribute. */
+	private final int m_ClassIndex;
+
+	/** Number of class values. */
+	private final int m_NumClasses;
+
+	/** Number of values of each attribute. */
+	private final int[] m_NumValues;
+
+	/** Class value index of each row. */
+	private final int[] m_ClassValues;
+
+	/** Dense columns with at most 256 values, null if sparse or wide. */
+	private final byte[][] m_Columns;
+
+	/** Dense columns with more than 256 values, null otherwise. */
+	private final int[][] m_WideColumns;
+
+	/** Start of each row's entries in the sparse arrays (length n + 1). */
+	private final int[] m_RowStart;
+
+	/** Attribute index of each non-default entry. */
+	private final int[] m_EntryAttribute;
+
+	/** Value index of each non-default entry. */
+	private final int[] m_EntryValue;
+
+	/** Off-heap columns with at most 256 values, null on the heap. */
+	private final ByteBuffer[] m_StoredColumns;
+
+	/** Off-heap columns with more than 256 values, null on the heap. */
+	private final IntBuffer[] m_StoredWideColumns;
+
+	/** Off-heap class value index of each row, null on the heap. */
+	private final IntBuffer m_StoredClassValues;
+
+	/**
+	 * Encodes the given nominal data. Instances with a missing class must have
+	 * been removed beforehand.
+	 *
+	 * @param data the data to encode
+	 * @throws NoSupportForMissingValuesException if an attribute value is missing
+	 */
+	public EncodedInstances(Instances data) throws NoSupportForMissingValuesException {
+
+		m_Header = new Instances(data, 0);
+		m_NumInstances = data.numInstances();
+		m_ClassIndex = data.classIndex();
+		m_NumClasses = data.numClasses();
+		m_NumValues = new int[data.numAttributes()];
+		for (int att = 0; att < m_NumValues.length; att++) {
+			m_NumValues[att] = data.attribute(att).numValues();
+		}
+		m_ClassValues = new int[m_NumInstances];
+		m_StoredColumns = null;
+		m_StoredWideColumns = null;
+		m_StoredClassValues = null;
+
+		boolean sparse = m_NumInstances > 0;
+		for (int i = 0; i < m_NumInstances && sparse; i++) {
+			sparse = data.instance(i) instanceof SparseInstance;
+		}
+
+		if (sparse) {
+			m_Columns = null;
+			m_WideColumns = null;
+			m_RowStart = new int[m_NumInstances + 1];
+			int entries = 0;
+			for (int i = 0; i < m_NumInstances; i++) {
+				entries += data.instance(i).numValues();
+			}
+			int[] entryAttribute = new int[entries];
+			int[] entryValue = new int[entries];
+			int pos = 0;
+			for (int i = 0; i < m_NumInstances; i++) {
+				Instance inst = data.instance(i);
+				m_RowStart[i] = pos;
+				// only the non-default entries are kept, the class is stored apart
+				for (int p = 0; p < inst.numValues(); p++) {
+					int att = inst.index(p);
+					if (att == m_ClassIndex) {
+						continue;
+					}
+					double value = inst.valueSparse(p);
+					if (Double.isNaN(value)) {
+						throw new NoSupportForMissingValuesException("Id3: no missing values, " + "please.");
+					}
+					if (value != 0) {
+						entryAttribute[pos] = att;
+						entryValue[pos] = (int) value;
+						pos++;
+					}
+				}
+				m_ClassValues[i] = (int) inst.classValue();
+			}
+			m_RowStart[m_NumInstances] = pos;
+			if (pos < entries) {
+				m_EntryAttribute = new int[pos];
+				m_EntryValue = new int[pos];
+				System.arraycopy(entryAttribute, 0, m_EntryAttribute, 0, pos);
+				System.arraycopy(entryValue, 0, m_EntryValue, 0, pos);
+			} else {
+				m_EntryAttribute = entryAttribute;
+				m_EntryValue = entryValue;
+			}
+		} else {
+			m_RowStart = null;
+			m_EntryAttribute = null;
+			m_EntryValue = null;
+			m_Columns = new byte[m_NumValues.length][];
+			m_WideColumns = new int[m_NumValues.length][];
+			for (int att = 0; att < m_NumValues.length; att++) {
+				if (att == m_ClassIndex) {
+					continue;
+				}
+				if (m_NumValues[att] <= 256) {
+					m_Columns[att] = new byte[m_NumInstances];
+				} else {
+					m_WideColumns[att] = new int[m_NumInstances];
+				}
+			}
+			for (int i = 0; i < m_NumInstances; i++) {
+				Instance inst = data.instance(i);
+				for (int att = 0; att < m_NumValues.length; att++) {
+					if (att == m_ClassIndex) {
+						continue;
+					}
+					double value = inst.value(att);
+					if (Double.isNaN(value)) {
+						throw new NoSupportForMissingValuesException("Id3: no missing values, " + "please.");
+					}
+					if (m_Columns[att] != null) {
+						m_Columns[att][i] = (byte) value;
+					} else {
+						m_WideColumns[att][i] = (int) value;
+					}
+				}
+				m_ClassValues[i] = (int) inst.classValue();
+			}
+		}
+	}
+
+	/**
+	 * Wraps dense columns encoded elsewhere, as by ParallelArffLoader.
+	 *
+	 * @param header      the header of the data, with the class set
+	 * @param columns     the columns of the attributes with at most 256 values,
+	 *                    null for the class and the other attributes
+	 * @param wideColumns the columns of the attributes with more than 256
+	 *                    values, null for the class and the other attributes
+	 * @param classValues the class value index of each row, none missing
+	 */
+	EncodedInstances(Instances header, byte[][] columns, int[][] wideColumns, int[] classValues) {
+		m_Header = new Instances(header, 0);
+		m_NumInstances = classValues.length;
+		m_ClassIndex = header.classIndex();
+		m_NumClasses = header.numClasses();
+		m_NumValues = new int[header.numAttributes()];
+		for (int att = 0; att < m_NumValues.length; att++) {
+			m_NumValues[att] = header.attribute(att).numValues();
+		}
+		m_ClassValues = classValues;
+		m_Columns = columns;
+		m_WideColumns = wideColumns;
+		m_RowStart = null;
+		m_EntryAttribute = null;
+		m_EntryValue = null;
+		m_StoredColumns = null;
+		m_StoredWideColumns = null;
+		m_StoredClassValues = null;
+	}
+
+	/**
+	 * Creates an off-heap copy of dense data.
+	 */
+	private EncodedInstances(EncodedInstances data, ByteBuffer[] columns, IntBuffer[] wideColumns,
+			IntBuffer classValues) {
+		m_Header = data.m_Header;
+		m_NumInstances = data.m_NumInstances;
+		m_ClassIndex = data.m_ClassIndex;
+		m_NumClasses = data.m_NumClasses;
+		m_NumValues = data.m_NumValues;
+		m_ClassValues = null;
+		m_Columns = null;
+		m_WideColumns = null;
+		m_RowStart = null;
+		m_EntryAttribute = null;
+		m_EntryValue = null;
+		m_StoredColumns = columns;
+		m_StoredWideColumns = wideColumns;
+		m_StoredClassValues = classValues;
+	}
+
+	/**
+	 * Returns a copy of this data whose columns and class values are held
+	 * outside the Java heap, either in direct buffers or in a memory-mapped
+	 * file. What remains on the heap is the header and one small buffer object
+	 * per attribute, so the garbage collector no longer scans or copies the
+	 * data, while counting and partitioning read the buffers in place. The copy
+	 * can't be serialized.
+	 *
+	 * @param directory the directory of the file backing the copy, which is
+	 *                  deleted when the virtual machine exits; null for direct
+	 *                  buffers
+	 * @return the off-heap copy
+	 * @throws IOException                   if the file can't be created
+	 * @throws UnsupportedOperationException if the data is sparse
+	 */
+	public EncodedInstances offHeap(File directory) throws IOException {
+		if (isSparse()) {
+			throw new UnsupportedOperationException("Sparse data is kept on the heap!");
+		}
+		if (4L * m_NumInstances > Integer.MAX_VALUE) {
+			throw new IOException("Too many rows for an off-heap column: " + m_NumInstances + "!");
+		}
+
+		RandomAccessFile file = null;
+		FileChannel channel = null;
+		if (directory != null) {
+			File backing = File.createTempFile("encoded", ".bin", directory);
+			backing.deleteOnExit();
+			file = new RandomAccessFile(backing, "rw");
+			channel = file.getChannel();
+		}
+		try {
+			ByteBuffer[] columns = new ByteBuffer[m_NumValues.length];
+			IntBuffer[] wideColumns = new IntBuffer[m_NumValues.length];
+			// the mappings stay valid after the file is closed
+			long position = 0;
+			for (int att = 0; att < m_NumValues.length; att++) {
+				if (att == m_ClassIndex) {
+					continue;
+				}
+				if (m_NumValues[att] <= 256) {
+					columns[att] = allocate(channel, position, m_NumInstances);
+					for (int row = 0; row < m_NumInstances; row++) {
+						columns[att].put(row, (byte) value(row, att));
+					}
+					position += m_NumInstances;
+				} else {
+					wideColumns[att] = allocate(channel, position, 4 * m_NumInstances).asIntBuffer();
+					for (int row = 0; row < m_NumInstances; row++) {
+						wideColumns[att].put(row, value(row, att));
+					}
+					position += 4L * m_NumInstances;
+				}
+			}
+			IntBuffer classValues = allocate(channel, position, 4 * m_NumInstances).asIntBuffer();
+			for (int row = 0; row < m_NumInstances; row++) {
+				classValues.put(row, classValue(row));
+			}
+			return new EncodedInstances(this, columns, wideColumns, classValues);
+		} finally {
+			if (file != null) {
+				file.close();
+			}
+		}
+	}
+
+	/**
+	 * Allocates a direct buffer, or maps a region of a file.
+	 */
+	private static ByteBuffer allocate(FileChannel channel, long position, int size) throws IOException {
+		ByteBuffer buffer;
+		if (channel == null) {
+			buffer = ByteBuffer.allocateDirect(size);
+		} else {
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+		}
+		return buffer.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Decodes the rows into instances, for code that needs them rather than
+	 * the encoded columns.
+	 *
+	 * @return the rows as dense instances of weight 1, with the class set
+	 */
+	public Instances toInstances() {
+		Instances data = new Instances(m_Header, m_NumInstances);
+		for (int row = 0; row < m_NumInstances; row++) {
+			double[] values = new double[m_NumValues.length];
+			for (int att = 0; att < values.length; att++) {
+				values[att] = value(row, att);
+			}
+			data.add(new DenseInstance(1.0, values));
+		}
+		return data;
+	}
+
+	/**
+	 * Returns whether the data is held outside the Java heap.
+	 *
+	 * @return true for a copy made by offHeap
+	 */
+	public boolean isOffHeap() {
+		return m_StoredClassValues != null;
+	}
+
+	/**
+	 * Returns the header of the encoded data.
+	 *
+	 * @return the header, without instances
+	 */
+	public Instances header() {
+		return m_Header;
+	}
+
+	/**
+	 * Returns the number of rows.
+	 *
+	 * @return the number of rows
+	 */
+	public int numInstances() {
+		return m_NumInstances;
+	}
+
+	/**
+	 * Returns the number of attributes, including the class.
+	 *
+	 * @return the number of attributes
+	 */
+	public int numAttributes() {
+		return m_NumValues.length;
+	}
+
+	/**
+	 * Returns the index of the class attribute.
+	 *
+	 * @return the class index
+	 */
+	public int classIndex() {
+		return m_ClassIndex;
+	}
+
+	/**
+	 * Returns the number of class values.
+	 *
+	 * @return the number of classes
+	 */
+	public int numClasses() {
+		return m_NumClasses;
+	}
+
+	/**
+	 * Returns the number of values of an attribute.
+	 *
+	 * @param att the attribute index
+	 * @return the number of values
+	 */
+	public int numValues(int att) {
+		return m_NumValues[att];
+	}
+
+	/**
+	 * Returns whether the rows are stored in sparse form.
+	 *
+	 * @return true if only non-default entries are stored
+	 */
+	public boolean isSparse() {
+		return m_RowStart != null;
+	}
+
+	/**
+	 * Returns the class value index of a row.
+	 *
+	 * @param row the row index
+	 * @return the class value index
+	 */
+	public int classValue(int row) {
+		return m_ClassValues != null ? m_ClassValues[row] : m_StoredClassValues.get(row);
+	}
+
+	/**
+	 * Returns the value index of an attribute in a row.
+	 *
+	 * @param row the row index
+	 * @param att the attribute index
+	 * @return the value index
+	 */
+	public int value(int row, int att) {
+		if (att == m_ClassIndex) {
+			return classValue(row);
+		}
+		if (m_RowStart != null) {
+			// entries of a sparse row are sorted by attribute index
+			int lo = m_RowStart[row];
+			int hi = m_RowStart[row + 1] - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int midAtt = m_EntryAttribute[mid];
+				if (midAtt < att) {
+					lo = mid + 1;
+				} else if (midAtt > att) {
+					hi = mid - 1;
+				} else {
+					return m_EntryValue[mid];
+				}
+			}
+			return 0;
+		}
+		if (m_StoredClassValues != null) {
+			return m_StoredColumns[att] != null ? m_StoredColumns[att].get(row) & 0xFF
+					: m_StoredWideColumns[att].get(row);
+		}
+		if (m_Columns[att] != null) {
+			return m_Columns[att][row] & 0xFF;
+		}
+		return m_WideColumns[att][row];
+	}
+
+	/**
+	 * Returns an array holding the indices of all rows, in order.
+	 *
+	 * @return the row indices 0..n-1
+	 */
+	public int[] allRows() {
+		int[] rows = new int[m_NumInstances];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = i;
+		}
+		return rows;
+	}
+
+	/**
+	 * Collapses duplicate rows into weighted ones. Rows agreeing on every
+	 * attribute and the class are represented by the first of them, whose
+	 * multiplicity is the number of such rows. Counting the distinct rows with
+	 * their multiplicities gives the same counts as counting all rows, so a
+	 * tree grown on them is the same as one grown on all rows.
+	 * <p/>
+	 * The rows are hashed and looked up a block at a time, and the search stops
+	 * as soon as more than maxDistinct distinct rows are found, so that data
+	 * with few duplicates costs little more than that.
+	 *
+	 * @param rowCounts   receives the multiplicity of each distinct row and 0
+	 *                    for the others; at least numInstances() long
+	 * @param maxDistinct the largest number of distinct rows wanted
+	 * @return the indices of the distinct rows, in order, or null if there are
+	 *         more than maxDistinct of them
+	 */
+	public int[] distinctRows(int[] rowCounts, int maxDistinct) {
+
+		// open addressing on the row indices, stored plus one so 0 marks a free
+		// slot, next to the rows' hashes
+		int limit = Math.min(maxDistinct, m_NumInstances);
+		int capacity = 2;
+		while (capacity < 2 * limit) {
+			capacity <<= 1;
+		}
+		int mask = capacity - 1;
+		int[] slots = new int[capacity];
+		int[] slotHashes = new int[capacity];
+		int[] distinct = new int[limit];
+		int numDistinct = 0;
+		int[] hashes = new int[Math.min(m_NumInstances, DISTINCT_BLOCK)];
+		Arrays.fill(rowCounts, 0, m_NumInstances, 0);
+		for (int from = 0; from < m_NumInstances; from += hashes.length) {
+			int to = Math.min(m_NumInstances, from + hashes.length);
+			hashRows(from, to, hashes);
+			for (int row = from; row < to; row++) {
+				int rowHash = hashes[row - from];
+				int hash = rowHash * 0x9E3779B9;
+				int slot = (hash ^ (hash >>> 16)) & mask;
+				while (true) {
+					int other = slots[slot] - 1;
+					if (other < 0) {
+						if (numDistinct == limit) {
+							return null;
+						}
+						slots[slot] = row + 1;
+						slotHashes[slot] = rowHash;
+						distinct[numDistinct++] = row;
+						rowCounts[row] = 1;
+						break;
+					}
+					if (slotHashes[slot] == rowHash && sameRow(other, row)) {
+						rowCounts[other]++;
+						break;
+					}
+					slot = (slot + 1) & mask;
+				}
+			}
+		}
+		return numDistinct == distinct.length ? distinct : Arrays.copyOf(distinct, numDistinct);
+	}
+
+	/**
+	 * Hashes a block of rows, column by column for dense data.
+	 *
+	 * @param from   the first row
+	 * @param to     the row after the last one
+	 * @param hashes receives the hash of each row, from position 0
+	 */
+	private void hashRows(int from, int to, int[] hashes) {
+		if (m_RowStart != null) {
+			for (int row = from; row < to; row++) {
+				int hash = m_ClassValues[row];
+				for (int p = m_RowStart[row]; p < m_RowStart[row + 1]; p++) {
+					hash = 31 * hash + m_EntryAttribute[p];
+					hash = 31 * hash + m_EntryValue[p];
+				}
+				hashes[row - from] = hash;
+			}
+		} else if (m_StoredClassValues != null) {
+			for (int row = from; row < to; row++) {
+				hashes[row - from] = m_StoredClassValues.get(row);
+			}
+			for (int att = 0; att < m_NumValues.length; att++) {
+				ByteBuffer column = m_StoredColumns[att];
+				IntBuffer wide = m_StoredWideColumns[att];
+				if (column != null) {
+					for (int row = from; row < to; row++) {
+						hashes[row - from] = 31 * hashes[row - from] + (column.get(row) & 0xFF);
+					}
+				} else if (wide != null) {
+					for (int row = from; row < to; row++) {
+						hashes[row - from] = 31 * hashes[row - from] + wide.get(row);
+					}
+				}
+			}
+		} else {
+			System.arraycopy(m_ClassValues, from, hashes, 0, to - from);
+			for (int att = 0; att < m_NumValues.length; att++) {
+				byte[] column = m_Columns[att];
+				int[] wide = m_WideColumns[att];
+				if (column != null) {
+					for (int row = from; row < to; row++) {
+						hashes[row - from] = 31 * hashes[row - from] + (column[row] & 0xFF);
+					}
+				} else if (wide != null) {
+					for (int row = from; row < to; row++) {
+						hashes[row - from] = 31 * hashes[row - from] + wide[row];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether two rows agree on every attribute and the class.
+	 */
+	private boolean sameRow(int a, int b) {
+		if (classValue(a) != classValue(b)) {
+			return false;
+		}
+		if (m_RowStart != null) {
+			int length = m_RowStart[a + 1] - m_RowStart[a];
+			if (length != m_RowStart[b + 1] - m_RowStart[b]) {
+				return false;
+			}
+			for (int p = m_RowStart[a], q = m_RowStart[b]; p < m_RowStart[a + 1]; p++, q++) {
+				if (m_EntryAttribute[p] != m_EntryAttribute[q] || m_EntryValue[p] != m_EntryValue[q]) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (m_StoredClassValues != null) {
+			for (int att = 0; att < m_NumValues.length; att++) {
+				if (att != m_ClassIndex && value(a, att) != value(b, att)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		for (int att = 0; att < m_NumValues.length; att++) {
+			byte[] column = m_Columns[att];
+			if (column != null) {
+				if (column[a] != column[b]) {
+					return false;
+				}
+			} else if (m_WideColumns[att] != null && m_WideColumns[att][a] != m_WideColumns[att][b]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the class counts of a range of rows.
+	 *
+	 * @param rows        the row indices
+	 * @param start       the first position in rows
+	 * @param end         the position after the last one in rows
+	 * @param rowCounts   the multiplicity of each row, or null if every row
+	 *                    counts once
+	 * @param classCounts the class counts, zeroed, to be filled in
+	 */
+	public void countClasses(int[] rows, int start, int end, int[] rowCounts, int[] classCounts) {
+		if (m_StoredClassValues != null) {
+			for (int i = start; i < end; i++) {
+				int row = rows[i];
+				classCounts[m_StoredClassValues.get(row)] += rowCounts == null ? 1 : rowCounts[row];
+			}
+		} else if (rowCounts == null) {
+			for (int i = start; i < end; i++) {
+				classCounts[m_ClassValues[rows[i]]]++;
+			}
+		} else {
+			for (int i = start; i < end; i++) {
+				int row = rows[i];
+				classCounts[m_ClassValues[row]] += rowCounts[row];
+			}
+		}
+	}
+
+	/**
+	 * Computes, for every attribute except the class, the (value, class)
+	 * contingency table of a range of rows. The table of an attribute is stored
+	 * flat, with the count of value v and class c at
+	 * <code>v * numClasses() + c</code>. For sparse data only the non-default
+	 * entries are visited and the counts of the default value are derived by
+	 * subtraction from the class counts. The rows of the range must be distinct.
+	 *
+	 * @param rows        the row indices
+	 * @param start       the first position in rows
+	 * @param end         the position after the last one in rows
+	 * @param rowCounts   the multiplicity of each row, or null if every row
+	 *                    counts once
+	 * @param classCounts the class counts of the range, from countClasses
+	 * @param counts      the contingency tables, zeroed, to be filled in; entries
+	 *                    that are null are skipped
+	 */
+	public void countNode(int[] rows, int start, int end, int[] rowCounts, int[] classCounts, int[][] counts) {
+
+		if (m_RowStart != null) {
+			for (int i = start; i < end; i++) {
+				int row = rows[i];
+				int cls = m_ClassValues[row];
+				int weight = rowCounts == null ? 1 : rowCounts[row];
+				for (int p = m_RowStart[row]; p < m_RowStart[row + 1]; p++) {
+					int[] table = counts[m_EntryAttribute[p]];
+					if (table != null) {
+						table[m_EntryValue[p] * m_NumClasses + cls] += weight;
+					}
+				}
+			}
+			deriveDefaultCounts(classCounts, counts);
+			return;
+		}
+		if (m_StoredClassValues != null) {
+			countStored(rows, start, end, rowCounts, counts);
+			return;
+		}
+
+		// a range holding every row once gives the same counts whatever its
+		// order, so the columns can be scanned sequentially without going
+		// through the row indices, byte columns by the contingency counter
+		boolean allRows = rowCounts == null && end - start == m_NumInstances;
+
+		for (int att = 0; att < counts.length; att++) {
+			int[] table = counts[att];
+			if (table == null) {
+				continue;
+			}
+			byte[] column = m_Columns[att];
+			int[] wide = m_WideColumns[att];
+			if (allRows) {
+				if (column != null) {
+					ContingencyCounter.INSTANCE.count(column, m_ClassValues, m_NumInstances, m_NumClasses, table);
+				} else {
+					for (int row = 0; row < m_NumInstances; row++) {
+						table[wide[row] * m_NumClasses + m_ClassValues[row]]++;
+					}
+				}
+			} else if (rowCounts == null) {
+				if (column != null) {
+					for (int i = start; i < end; i++) {
+						int row = rows[i];
+						table[(column[row] & 0xFF) * m_NumClasses + m_ClassValues[row]]++;
+					}
+				} else {
+					for (int i = start; i < end; i++) {
+						int row = rows[i];
+						table[wide[row] * m_NumClasses + m_ClassValues[row]]++;
+					}
+				}
+			} else {
+				if (column != null) {
+					for (int i = start; i < end; i++) {
+						int row = rows[i];
+						table[(column[row] & 0xFF) * m_NumClasses + m_ClassValues[row]] += rowCounts[row];
+					}
+				} else {
+					for (int i = start; i < end; i++) {
+						int row = rows[i];
+						table[wide[row] * m_NumClasses + m_ClassValues[row]] += rowCounts[row];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the contingency tables of a range of rows of off-heap data.
+	 */
+	private void countStored(int[] rows, int start, int end, int[] rowCounts, int[][] counts) {
+		for (int att = 0; att < counts.length; att++) {
+			int[] table = counts[att];
+			if (table == null) {
+				continue;
+			}
+			ByteBuffer column = m_StoredColumns[att];
+			IntBuffer wide = m_StoredWideColumns[att];
+			for (int i = start; i < end; i++) {
+				int row = rows[i];
+				int value = column != null ? column.get(row) & 0xFF : wide.get(row);
+				table[value * m_NumClasses + m_StoredClassValues.get(row)] += rowCounts == null ? 1 : rowCounts[row];
+			}
+		}
+	}
+
+	/**
+	 * Fills in the counts of the default value (index 0) of sparse data, which
+	 * follow from the class counts minus the counts of all other values.
+	 */
+	private void deriveDefaultCounts(int[] classCounts, int[][] counts) {
+		for (int att = 0; att < counts.length; att++) {
+			int[] table = counts[att];
+			if (table == null) {
+				continue;
+			}
+			for (int c = 0; c < m_NumClasses; c++) {
+				int count = classCounts[c];
+				for (int k = m_NumClasses + c; k < table.length; k += m_NumClasses) {
+					count -= table[k];
+				}
+				table[c] = count;
+			}
+		}
+	}
+
+	/**
+	 * Encodes a single instance into value indices, visiting only the stored
+	 * values of a sparse instance. The instance must not have missing values;
+	 * the entry of a missing class is left at 0.
+	 *
+	 * @param instance the instance to encode
+	 * @param codes    the array to fill in, one entry per attribute
+	 */
+	public static void encode(Instance instance, int[] codes) {
+		if (instance instanceof SparseInstance) {
+			Arrays.fill(codes, 0);
+			for (int p = 0; p < instance.numValues(); p++) {
+				double value = instance.valueSparse(p);
+				if (!Double.isNaN(value)) {
+					codes[instance.index(p)] = (int) value;
+				}
+			}
+		} else {
+			for (int att = 0; att < codes.length; att++) {
+				double value = instance.value(att);
+				codes[att] = Double.isNaN(value) ? 0 : (int) value;
+			}
+		}
+	}
+
+	/**
+	 * Reorders a range of rows by the value of an attribute, keeping the relative
+	 * order of rows with the same value.
+	 *
+	 * @param rows  the row indices
+	 * @param start the first position in rows
+	 * @param end   the position after the last one in rows
+	 * @param att   the attribute to partition on
+	 * @return the start position of each value's rows, followed by end
+	 */
+	public int[] partition(int[] rows, int start, int end, int att) {
+		int[] offsets = new int[m_NumValues[att] + 1];
+		partition(rows, start, end, att, offsets, new int[end - start], new int[end - start]);
+		return offsets;
+	}
+
+	/**
+	 * Reorders a range of rows by the value of an attribute, keeping the relative
+	 * order of rows with the same value, using caller-supplied buffers.
+	 *
+	 * @param rows    the row indices
+	 * @param start   the first position in rows
+	 * @param end     the position after the last one in rows
+	 * @param att     the attribute to partition on
+	 * @param offsets receives the start position of each value's rows, followed
+	 *                by end; at least numValues(att) + 1 long
+	 * @param values  scratch space, at least end - start long
+	 * @param sorted  scratch space, at least end - start long
+	 */
+	public void partition(int[] rows, int start, int end, int att, int[] offsets, int[] values, int[] sorted) {
+
+		int numValues = m_NumValues[att];
+		Arrays.fill(offsets, 0, numValues + 1, 0);
+		for (int i = start; i < end; i++) {
+			int v = value(rows[i], att);
+			values[i - start] = v;
+			offsets[v + 1]++;
+		}
+		offsets[0] = start;
+		for (int v = 0; v < numValues; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+		// offsets[v] serves as the insertion point of value v and ends up at the
+		// start of value v + 1, so it is shifted back afterwards
+		for (int i = start; i < end; i++) {
+			sorted[offsets[values[i - start]]++ - start] = rows[i];
+		}
+		for (int v = numValues; v > 0; v--) {
+			offsets[v] = offsets[v - 1];
+		}
+		offsets[0] = start;
+		System.arraycopy(sorted, 0, rows, start, end - start);
+	}
+}
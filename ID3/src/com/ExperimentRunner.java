@@ -0,0 +1,419 @@
+package com;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Runs every algorithm on every dataset, without a GUI, and writes one JSON
+ * object per line with the accuracy, the per-class statistics and the build
+ * and scoring times. The dataset and algorithm pairs run in parallel, and
+ * each dataset file is parsed once however many algorithms use it.
+ * <p/>
+ * Datasets are taken from a directory or a manifest. In a directory,
+ * <code>train-X.arff</code> is paired with <code>test-X.arff</code> and
+ * <code>X.arff</code> with <code>X-test.arff</code>; any other ARFF file is
+ * cross-validated. A manifest has one dataset per line, <code>name train
+ * [test]</code>, with paths relative to the manifest; lines starting with #
+ * are ignored. The class is the last attribute.
+ * <p/>
+ * Valid options are:
+ *
+ * <pre>
+ * -d &lt;directory&gt;
+ *  The directory holding the datasets.
+ * </pre>
+ *
+ * <pre>
+ * -m &lt;manifest&gt;
+ *  The manifest listing the datasets.
+ * </pre>
+ *
+ * <pre>
+ * -A &lt;classifier and options&gt;
+ *  An algorithm to run, may be repeated (default: com.MyId3,
+ *  com.MyOneR and weka.classifiers.trees.Id3).
+ * </pre>
+ *
+ * <pre>
+ * -x &lt;number of folds&gt;
+ *  Number of folds for datasets without a test file (default: 10).
+ * </pre>
+ *
+ * <pre>
+ * -s &lt;seed&gt;
+ *  Seed for randomizing the data before cross-validation (default: 1).
+ * </pre>
+ *
+ * <pre>
+ * -P &lt;threads&gt;
+ *  Number of threads (default: the number of processors).
+ * </pre>
+ *
+ * <pre>
+ * -o &lt;file&gt;
+ *  The file the results are written to (default: standard output).
+ * </pre>
+ */
+public class ExperimentRunner {
+
+	/** The charset of manifests and result files. */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** The algorithms run by default. */
+	private static final String[] DEFAULT_ALGORITHMS = { "com.MyId3", "com.MyOneR", "weka.classifiers.trees.Id3" };
+
+	/**
+	 * A dataset: a training file and an optional test file.
+	 */
+	static class Dataset {
+
+		/** The name used in the results. */
+		final String m_Name;
+
+		/** The training file. */
+		final File m_Train;
+
+		/** The test file, null to cross-validate. */
+		final File m_Test;
+
+		Dataset(String name, File train, File test) {
+			m_Name = name;
+			m_Train = train;
+			m_Test = test;
+		}
+	}
+
+	/** The datasets. */
+	private final List<Dataset> m_Datasets = new ArrayList<Dataset>();
+
+	/** The algorithms, each a class name followed by its options. */
+	private final List<String> m_Algorithms = new ArrayList<String>();
+
+	/** The number of folds for datasets without a test file. */
+	private int m_NumFolds = 10;
+
+	/** The seed for cross-validation. */
+	private int m_Seed = 1;
+
+	/** The parsed files, each read once by whichever task needs it first. */
+	private final ConcurrentMap<File, FutureTask<Instances>> m_Cache = new ConcurrentHashMap<File, FutureTask<Instances>>();
+
+	/**
+	 * Adds the datasets found in a directory.
+	 *
+	 * @param dir the directory
+	 * @throws IOException if the directory can't be listed
+	 */
+	public void addDirectory(File dir) throws IOException {
+		String[] names = dir.list();
+		if (names == null) {
+			throw new IOException("Can't list " + dir + ".");
+		}
+		Arrays.sort(names);
+		List<String> files = Arrays.asList(names);
+		for (String name : names) {
+			if (!name.endsWith(".arff")) {
+				continue;
+			}
+			String base = name.substring(0, name.length() - ".arff".length());
+			if (base.startsWith("test-") && files.contains("train-" + base.substring(5) + ".arff")
+					|| base.endsWith("-test") && files.contains(base.substring(0, base.length() - 5) + ".arff")) {
+				// the test half of a pair
+				continue;
+			}
+			String test = null;
+			if (base.startsWith("train-") && files.contains("test-" + base.substring(6) + ".arff")) {
+				test = "test-" + base.substring(6) + ".arff";
+			} else if (files.contains(base + "-test.arff")) {
+				test = base + "-test.arff";
+			}
+			m_Datasets.add(new Dataset(base, new File(dir, name), test == null ? null : new File(dir, test)));
+		}
+	}
+
+	/**
+	 * Adds the datasets listed in a manifest.
+	 *
+	 * @param manifest the manifest file
+	 * @throws IOException if the manifest can't be read or a line is malformed
+	 */
+	public void addManifest(File manifest) throws IOException {
+		File dir = manifest.getAbsoluteFile().getParentFile();
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), UTF8));
+		try {
+			String line;
+			int number = 0;
+			while ((line = in.readLine()) != null) {
+				number++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("\\s+");
+				if (fields.length < 2 || fields.length > 3) {
+					throw new IOException(
+							manifest + ", line " + number + ": expected name, train file and optional test file.");
+				}
+				m_Datasets.add(new Dataset(fields[0], resolve(dir, fields[1]),
+						fields.length == 3 ? resolve(dir, fields[2]) : null));
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static File resolve(File dir, String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(dir, path);
+	}
+
+	/**
+	 * Adds an algorithm.
+	 *
+	 * @param spec the class name followed by its options
+	 */
+	public void addAlgorithm(String spec) {
+		m_Algorithms.add(spec);
+	}
+
+	/**
+	 * Sets the number of folds for datasets without a test file.
+	 *
+	 * @param numFolds the number of folds
+	 */
+	public void setNumFolds(int numFolds) {
+		m_NumFolds = numFolds;
+	}
+
+	/**
+	 * Sets the seed for cross-validation.
+	 *
+	 * @param seed the seed
+	 */
+	public void setSeed(int seed) {
+		m_Seed = seed;
+	}
+
+	/**
+	 * Returns a dataset file, reading it on first use.
+	 *
+	 * @param file the file
+	 * @return the shared data, not to be modified
+	 * @throws Exception if the file can't be read
+	 */
+	private Instances load(final File file) throws Exception {
+		FutureTask<Instances> task = new FutureTask<Instances>(new Callable<Instances>() {
+			@Override
+			public Instances call() throws Exception {
+				Instances data = DataSource.read(file.getPath());
+				data.setClassIndex(data.numAttributes() - 1);
+				return data;
+			}
+		});
+		FutureTask<Instances> existing = m_Cache.putIfAbsent(file, task);
+		if (existing == null) {
+			task.run();
+		} else {
+			task = existing;
+		}
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * Runs all algorithms on all datasets.
+	 *
+	 * @param numThreads the number of threads
+	 * @param out        receives one JSON object per dataset and algorithm, in
+	 *                   the order of the datasets and algorithms
+	 * @throws InterruptedException if interrupted while waiting for the results
+	 */
+	public void run(int numThreads, PrintWriter out) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (final Dataset dataset : m_Datasets) {
+				for (final String algorithm : m_Algorithms) {
+					results.add(executor.submit(new Callable<String>() {
+						@Override
+						public String call() {
+							return evaluate(dataset, algorithm);
+						}
+					}));
+				}
+			}
+			for (Future<String> result : results) {
+				try {
+					out.println(result.get());
+				} catch (ExecutionException e) {
+					// evaluate reports its own failures
+					throw new IllegalStateException(e.getCause());
+				}
+				out.flush();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Evaluates one algorithm on one dataset.
+	 *
+	 * @param dataset   the dataset
+	 * @param algorithm the class name followed by its options
+	 * @return the result as a JSON object, with an error field if it failed
+	 */
+	String evaluate(Dataset dataset, String algorithm) {
+		StringBuilder json = new StringBuilder("{");
+		field(json, "dataset", jsonString(dataset.m_Name));
+		field(json, "algorithm", jsonString(algorithm));
+		field(json, "evaluation", dataset.m_Test != null ? "\"test\"" : "\"cv-" + m_NumFolds + "\"");
+		try {
+			String[] spec = Utils.splitOptions(algorithm);
+			String className = spec[0];
+			Instances train = load(dataset.m_Train);
+			Evaluation eval = new Evaluation(train);
+			long buildNanos = 0;
+			long scoreNanos = 0;
+			int numFolds = dataset.m_Test != null ? 1 : m_NumFolds;
+			Instances data = null;
+			if (dataset.m_Test == null) {
+				data = new Instances(train);
+				data.randomize(new Random(m_Seed));
+				data.stratify(m_NumFolds);
+			}
+			for (int fold = 0; fold < numFolds; fold++) {
+				Instances foldTrain = data == null ? new Instances(train) : data.trainCV(numFolds, fold);
+				Instances foldTest = data == null ? load(dataset.m_Test) : data.testCV(numFolds, fold);
+				Classifier classifier = AbstractClassifier.forName(className, Arrays.copyOfRange(spec, 1, spec.length));
+				long start = System.nanoTime();
+				classifier.buildClassifier(foldTrain);
+				buildNanos += System.nanoTime() - start;
+				start = System.nanoTime();
+				eval.evaluateModel(classifier, foldTest);
+				scoreNanos += System.nanoTime() - start;
+			}
+			field(json, "instances", "" + (long) eval.numInstances());
+			field(json, "accuracy", "" + eval.pctCorrect() / 100);
+			field(json, "unclassified", "" + (long) eval.unclassified());
+			field(json, "buildMillis", "" + buildNanos / 1e6);
+			field(json, "scoreMillis", "" + scoreNanos / 1e6);
+			StringBuilder classes = new StringBuilder("[");
+			for (int c = 0; c < train.numClasses(); c++) {
+				classes.append(c == 0 ? "{" : ",{");
+				classes.append("\"label\":").append(jsonString(train.classAttribute().value(c)));
+				classes.append(",\"precision\":").append(eval.precision(c));
+				classes.append(",\"recall\":").append(eval.recall(c));
+				classes.append(",\"fMeasure\":").append(eval.fMeasure(c));
+				classes.append('}');
+			}
+			field(json, "classes", classes.append(']').toString());
+		} catch (Exception e) {
+			field(json, "error", jsonString(e.getClass().getSimpleName() + ": " + e.getMessage()));
+		}
+		return json.append('}').toString();
+	}
+
+	private static void field(StringBuilder json, String name, String value) {
+		json.append(json.length() == 1 ? "" : ",").append(jsonString(name)).append(':').append(value);
+	}
+
+	private static String jsonString(String s) {
+		StringBuilder text = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				text.append('\\').append(c);
+			} else if (c < 0x20) {
+				text.append(String.format("\\u%04x", (int) c));
+			} else {
+				text.append(c);
+			}
+		}
+		return text.append('"').toString();
+	}
+
+	/**
+	 * Runs the experiment.
+	 *
+	 * @param args the options, see the class description
+	 * @throws Exception if the datasets can't be listed or the results can't be
+	 *                   written
+	 */
+	public static void main(String[] args) throws Exception {
+		ExperimentRunner runner = new ExperimentRunner();
+		String dir = Utils.getOption('d', args);
+		String manifest = Utils.getOption('m', args);
+		if (dir.length() == 0 && manifest.length() == 0) {
+			throw new Exception("No datasets given (-d or -m).");
+		}
+		if (dir.length() != 0) {
+			runner.addDirectory(new File(dir));
+		}
+		if (manifest.length() != 0) {
+			runner.addManifest(new File(manifest));
+		}
+		String algorithm;
+		while ((algorithm = Utils.getOption('A', args)).length() != 0) {
+			runner.addAlgorithm(algorithm);
+		}
+		if (runner.m_Algorithms.isEmpty()) {
+			for (String name : DEFAULT_ALGORITHMS) {
+				runner.addAlgorithm(name);
+			}
+		}
+		String folds = Utils.getOption('x', args);
+		if (folds.length() != 0) {
+			runner.setNumFolds(Integer.parseInt(folds));
+		}
+		String seed = Utils.getOption('s', args);
+		if (seed.length() != 0) {
+			runner.setSeed(Integer.parseInt(seed));
+		}
+		String threads = Utils.getOption('P', args);
+		String output = Utils.getOption('o', args);
+
+		PrintWriter out = output.length() != 0
+				? new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), UTF8))
+				: new PrintWriter(new OutputStreamWriter(System.out, UTF8));
+		long start = System.nanoTime();
+		runner.run(threads.length() != 0 ? Integer.parseInt(threads) : Runtime.getRuntime().availableProcessors(),
+				out);
+		if (output.length() != 0) {
+			out.close();
+		} else {
+			out.flush();
+		}
+		System.err.printf("%d datasets x %d algorithms in %.1f s%n", runner.m_Datasets.size(),
+				runner.m_Algorithms.size(), (System.nanoTime() - start) / 1e9);
+	}
+}
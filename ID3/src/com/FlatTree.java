@@ -0,0 +1,940 @@
+package com;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+import weka.core.Tag;
+
+/**
+ * Array form of a trained MyId3 tree for fast scoring. The root is node 0, and
+ * the successors of a split node occupy consecutive numbers starting at its
+ * first child; these blocks are laid out breadth-first. Identical subtrees are
+ * stored once, and the distinct leaf distributions are stored back to back in
+ * one pool.
+ * <p/>
+ * Breadth-first keeps the top levels together, which suits shallow trees. For
+ * deep trees withLayout reorders the blocks so that a walk from the root stays
+ * within fewer cache lines: hot path first places the successors most rows
+ * go to right after their parent, and van Emde Boas nests the blocks of
+ * subtrees of half the height, whatever the rows. The order of the blocks is
+ * only a matter of numbering, so every layout scores the same and is saved in
+ * the same format.
+ * <p/>
+ * The arrays are held in buffers, so a tree saved with <code>save</code> can be
+ * memory-mapped by <code>load</code> and scored without copying, and
+ * <code>offHeap</code> moves a tree out of the Java heap. The binary format
+ * (little-endian) is:
+ *
+ * <pre>
+ * "ID3M"                       magic
+ * byte                         format version
+ * varint                       number of classes
+ * varint                       number of attributes
+ * varint                       number of nodes
+ * varint                       length of the distribution pool
+ * padding to a multiple of 8
+ * int32[nodes]                 split attribute, -1 for leaves
+ * int32[nodes]                 first child, or distribution offset for leaves
+ * padding to a multiple of 8
+ * float64[pool length]         leaf distributions
+ * </pre>
+ *
+ * The node and pool sections are fixed-width so they can be used in place.
+ * <p/>
+ * A FlatTree is immutable: its buffers are filled before construction finishes
+ * and only read with absolute gets afterwards. It can therefore be shared by
+ * any number of scoring threads without locking (see ModelHolder for swapping
+ * models while they are in use).
+ */
+public final class FlatTree implements Serializable {
+
+	/** for serialization */
+	static final long serialVersionUID = -5184302216387715320L;
+
+	/** Magic number at the start of a saved tree ("ID3M"). */
+	private static final int MAGIC = 0x4D334449;
+
+	/** Version of the binary format. */
+	private static final byte VERSION = 1;
+
+	/** Blocks in breadth-first order. */
+	public static final int LAYOUT_BREADTH_FIRST = 0;
+
+	/** Blocks depth-first, the successors visited most often first. */
+	public static final int LAYOUT_HOT_PATH = 1;
+
+	/** Blocks in van Emde Boas order. */
+	public static final int LAYOUT_VAN_EMDE_BOAS = 2;
+
+	/** the node layouts */
+	public static final Tag[] TAGS_LAYOUT = { new Tag(LAYOUT_BREADTH_FIRST, "Breadth-first"),
+			new Tag(LAYOUT_HOT_PATH, "Hot path first"), new Tag(LAYOUT_VAN_EMDE_BOAS, "Van Emde Boas") };
+
+	/** Number of class values. */
+	private final int m_NumClasses;
+
+	/** Number of attributes of the training data, including the class. */
+	private final int m_NumAttributes;
+
+	/** Split attribute index of each node, -1 for leaves. */
+	private final IntBuffer m_Attribute;
+
+	/**
+	 * First child of each split node, or offset of the distribution in the pool
+	 * for leaves.
+	 */
+	private final IntBuffer m_Child;
+
+	/** The leaf class distributions. */
+	private final DoubleBuffer m_Distributions;
+
+	/**
+	 * Flattens a trained tree. Leaves with equal distributions share one entry
+	 * of the pool, and split nodes whose subtrees are identical share one block
+	 * of successors, so the result is a directed acyclic graph.
+	 *
+	 * @param tree          the root of the tree
+	 * @param numAttributes the number of attributes, including the class
+	 * @param numClasses    the number of class values
+	 */
+	public FlatTree(MyId3 tree, int numAttributes, int numClasses) {
+
+		m_NumClasses = numClasses;
+		m_NumAttributes = numAttributes;
+
+		// give every distinct subtree an id, bottom-up
+		Flattener flattener = new Flattener(numClasses);
+		int root = flattener.canonical(tree);
+		List<int[]> subtrees = flattener.m_Subtrees;
+
+		// lay out the successor blocks breadth-first, one block per distinct subtree
+		int[] block = new int[subtrees.size()];
+		Arrays.fill(block, -1);
+		int[] entry = new int[16];
+		int[] attribute = new int[16];
+		int[] child = new int[16];
+		entry[0] = root;
+		int numNodes = 1;
+		for (int i = 0; i < numNodes; i++) {
+			int[] subtree = subtrees.get(entry[i]);
+			attribute[i] = subtree[0];
+			if (subtree[0] < 0) {
+				child[i] = subtree[1];
+				continue;
+			}
+			int id = entry[i];
+			if (block[id] < 0) {
+				block[id] = numNodes;
+				int numChildren = subtree.length - 1;
+				if (numNodes + numChildren > entry.length) {
+					int length = Math.max(entry.length * 2, numNodes + numChildren);
+					entry = Arrays.copyOf(entry, length);
+					attribute = Arrays.copyOf(attribute, length);
+					child = Arrays.copyOf(child, length);
+				}
+				System.arraycopy(subtree, 1, entry, numNodes, numChildren);
+				numNodes += numChildren;
+			}
+			child[i] = block[id];
+		}
+
+		m_Attribute = IntBuffer.wrap(Arrays.copyOf(attribute, numNodes));
+		m_Child = IntBuffer.wrap(Arrays.copyOf(child, numNodes));
+		m_Distributions = DoubleBuffer.wrap(Arrays.copyOf(flattener.m_Pool, flattener.m_PoolLength));
+	}
+
+	/**
+	 * Assigns ids to the distinct subtrees of a tree and collects the distinct
+	 * leaf distributions.
+	 */
+	private static class Flattener {
+
+		/** Number of class values. */
+		final int m_NumClasses;
+
+		/** Each distinct subtree: {-1, pool offset} or {attribute, child ids...}. */
+		final List<int[]> m_Subtrees = new ArrayList<int[]>();
+
+		/** Id of each distinct subtree. */
+		final Map<SubtreeKey, Integer> m_Ids = new HashMap<SubtreeKey, Integer>();
+
+		/** Canonical array of each distinct distribution. */
+		final DistributionPool m_Distributions = new DistributionPool();
+
+		/** Pool offset of each canonical distribution. */
+		final Map<double[], Integer> m_Offsets = new IdentityHashMap<double[], Integer>();
+
+		/** The distribution pool. */
+		double[] m_Pool = new double[16];
+
+		/** Used length of the pool. */
+		int m_PoolLength;
+
+		Flattener(int numClasses) {
+			m_NumClasses = numClasses;
+		}
+
+		int canonical(MyId3 node) {
+			int[] subtree;
+			Attribute att = node.getSplitAttribute();
+			if (att == null) {
+				double[] dist = m_Distributions.intern(node.getDistribution());
+				Integer offset = m_Offsets.get(dist);
+				if (offset == null) {
+					offset = m_PoolLength;
+					if (m_PoolLength + m_NumClasses > m_Pool.length) {
+						m_Pool = Arrays.copyOf(m_Pool, Math.max(m_Pool.length * 2, m_PoolLength + m_NumClasses));
+					}
+					System.arraycopy(dist, 0, m_Pool, m_PoolLength, m_NumClasses);
+					m_PoolLength += m_NumClasses;
+					m_Offsets.put(dist, offset);
+				}
+				subtree = new int[] { -1, offset };
+			} else {
+				subtree = new int[att.numValues() + 1];
+				subtree[0] = att.index();
+				for (int v = 0; v < att.numValues(); v++) {
+					subtree[v + 1] = canonical(node.getSuccessor(v));
+				}
+			}
+			SubtreeKey key = new SubtreeKey(subtree);
+			Integer id = m_Ids.get(key);
+			if (id == null) {
+				id = m_Subtrees.size();
+				m_Subtrees.add(subtree);
+				m_Ids.put(key, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Content-based key of a subtree description.
+	 */
+	private static final class SubtreeKey {
+
+		private final int[] m_Subtree;
+		private final int m_Hash;
+
+		SubtreeKey(int[] subtree) {
+			m_Subtree = subtree;
+			m_Hash = Arrays.hashCode(subtree);
+		}
+
+		@Override
+		public int hashCode() {
+			return m_Hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof SubtreeKey && Arrays.equals(m_Subtree, ((SubtreeKey) o).m_Subtree);
+		}
+	}
+
+	/**
+	 * Creates a tree from existing buffers.
+	 */
+	private FlatTree(int numAttributes, int numClasses, IntBuffer attribute, IntBuffer child,
+			DoubleBuffer distributions) {
+		m_NumAttributes = numAttributes;
+		m_NumClasses = numClasses;
+		m_Attribute = attribute;
+		m_Child = child;
+		m_Distributions = distributions;
+	}
+
+	/**
+	 * Returns the number of class values.
+	 *
+	 * @return the number of classes
+	 */
+	public int numClasses() {
+		return m_NumClasses;
+	}
+
+	/**
+	 * Returns the number of attributes of the training data.
+	 *
+	 * @return the number of attributes, including the class
+	 */
+	public int numAttributes() {
+		return m_NumAttributes;
+	}
+
+	/**
+	 * Returns the number of nodes, including leaves.
+	 *
+	 * @return the number of nodes
+	 */
+	public int numNodes() {
+		return m_Attribute.limit();
+	}
+
+	/**
+	 * Returns the number of distinct leaf distributions.
+	 *
+	 * @return the number of distributions in the pool
+	 */
+	public int numDistributions() {
+		return m_Distributions.limit() / m_NumClasses;
+	}
+
+	/**
+	 * Returns the attributes some node splits on. Only these decide which leaf
+	 * a row falls into.
+	 *
+	 * @return the attribute indices, in increasing order
+	 */
+	public int[] splitAttributes() {
+		boolean[] used = new boolean[m_NumAttributes];
+		int count = 0;
+		for (int i = 0; i < numNodes(); i++) {
+			int att = m_Attribute.get(i);
+			if (att >= 0 && !used[att]) {
+				used[att] = true;
+				count++;
+			}
+		}
+		int[] attributes = new int[count];
+		for (int att = 0, i = 0; att < m_NumAttributes; att++) {
+			if (used[att]) {
+				attributes[i++] = att;
+			}
+		}
+		return attributes;
+	}
+
+	/**
+	 * Returns the split attribute of a node.
+	 *
+	 * @param node the node
+	 * @return the attribute index, -1 for a leaf
+	 */
+	int splitAttribute(int node) {
+		return m_Attribute.get(node);
+	}
+
+	/**
+	 * Returns the first child of a split node, or the distribution offset of a
+	 * leaf.
+	 *
+	 * @param node the node
+	 * @return the first child or the offset
+	 */
+	int firstChild(int node) {
+		return m_Child.get(node);
+	}
+
+	/**
+	 * Finds the leaf an instance falls into.
+	 *
+	 * @param instance the instance, without missing values
+	 * @return the offset of the leaf's distribution in the pool
+	 */
+	public int leafOffset(Instance instance) {
+		int node = 0;
+		int att;
+		while ((att = m_Attribute.get(node)) >= 0) {
+			node = m_Child.get(node) + (int) instance.value(att);
+		}
+		return m_Child.get(node);
+	}
+
+	/**
+	 * Finds the leaf an encoded row falls into.
+	 *
+	 * @param codes the value index of each attribute
+	 * @return the offset of the leaf's distribution in the pool
+	 */
+	public int leafOffset(int[] codes) {
+		int node = 0;
+		int att;
+		while ((att = m_Attribute.get(node)) >= 0) {
+			node = m_Child.get(node) + codes[att];
+		}
+		return m_Child.get(node);
+	}
+
+	/**
+	 * Finds the leaf a row of attribute values falls into, for rows held back
+	 * to back in one buffer.
+	 *
+	 * @param values the buffer, nominal values given by their index
+	 * @param offset the position of the row's first value
+	 * @return the offset of the leaf's distribution in the pool
+	 * @throws NoSupportForMissingValuesException if a value split on is
+	 *                                            missing
+	 */
+	public int leafOffset(double[] values, int offset) throws NoSupportForMissingValuesException {
+		int node = 0;
+		int att;
+		while ((att = m_Attribute.get(node)) >= 0) {
+			double value = values[offset + att];
+			if (Double.isNaN(value)) {
+				throw new NoSupportForMissingValuesException("Id3: no missing values, " + "please.");
+			}
+			node = m_Child.get(node) + (int) value;
+		}
+		return m_Child.get(node);
+	}
+
+	/**
+	 * Counts how many rows of a dataset reach each node, as observed while
+	 * scoring or taken from the training data. Nodes shared by identical
+	 * subtrees count the rows of all of them.
+	 *
+	 * @param data the rows, without missing values
+	 * @return the number of rows visiting each node
+	 */
+	public long[] visitCounts(Instances data) {
+		long[] visits = new long[numNodes()];
+		for (int i = 0; i < data.numInstances(); i++) {
+			Instance instance = data.instance(i);
+			int node = 0;
+			int att;
+			visits[0]++;
+			while ((att = m_Attribute.get(node)) >= 0) {
+				node = m_Child.get(node) + (int) instance.value(att);
+				visits[node]++;
+			}
+		}
+		return visits;
+	}
+
+	/**
+	 * Returns a copy of this tree with its nodes in another order. The root
+	 * stays node 0 and the successors of a node stay consecutive, so only the
+	 * order of the successor blocks changes; the distribution pool is shared.
+	 *
+	 * @param layout the layout, one of the LAYOUT constants
+	 * @param visits the number of rows visiting each node, from visitCounts;
+	 *               used by LAYOUT_HOT_PATH, which without them keeps the
+	 *               successors in value order
+	 * @return the reordered tree
+	 * @throws IllegalArgumentException if the layout is unknown or the visits
+	 *                                  do not match the nodes
+	 */
+	public FlatTree withLayout(int layout, long[] visits) {
+		if (visits != null && visits.length != numNodes()) {
+			throw new IllegalArgumentException("Expected " + numNodes() + " visit counts, got " + visits.length + "!");
+		}
+		Layout order = new Layout(visits);
+		switch (layout) {
+		case LAYOUT_BREADTH_FIRST:
+			order.breadthFirst();
+			break;
+		case LAYOUT_HOT_PATH:
+			order.hotPath(0);
+			break;
+		case LAYOUT_VAN_EMDE_BOAS:
+			order.vanEmdeBoas(0, order.height(0));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown layout " + layout + "!");
+		}
+		return order.apply();
+	}
+
+	/**
+	 * Assigns new numbers to the nodes of this tree, one successor block at a
+	 * time.
+	 */
+	private class Layout {
+
+		/** Number of successors of the block starting at each node, 0 elsewhere. */
+		final int[] m_BlockLength;
+
+		/** New number of each node, -1 until its block is placed. */
+		final int[] m_NewIndex;
+
+		/** The visit counts, or null. */
+		final long[] m_Visits;
+
+		/** Height of each split node, 0 until computed. */
+		final int[] m_Height;
+
+		/** Number of levels below each node already placed by vanEmdeBoas. */
+		final int[] m_Levels;
+
+		/** Marks the nodes seen, with the current value of m_Mark. */
+		final int[] m_Seen;
+
+		/** Current mark. */
+		int m_Mark;
+
+		/** Next free number. */
+		int m_Next = 1;
+
+		Layout(long[] visits) {
+			int numNodes = numNodes();
+			m_Visits = visits;
+			m_BlockLength = new int[numNodes];
+			m_Height = new int[numNodes];
+			m_Levels = new int[numNodes];
+			m_Seen = new int[numNodes];
+			m_NewIndex = new int[numNodes];
+			Arrays.fill(m_NewIndex, -1);
+			m_NewIndex[0] = 0;
+
+			// the blocks tile the nodes after the root
+			boolean[] start = new boolean[numNodes];
+			for (int i = 0; i < numNodes; i++) {
+				if (m_Attribute.get(i) >= 0) {
+					start[m_Child.get(i)] = true;
+				}
+			}
+			int last = -1;
+			for (int i = 1; i < numNodes; i++) {
+				if (start[i]) {
+					last = i;
+				}
+				m_BlockLength[last]++;
+			}
+		}
+
+		/**
+		 * Numbers the successors of a split node, unless they already are.
+		 *
+		 * @return true if the block was placed now
+		 */
+		boolean place(int node) {
+			int first = m_Child.get(node);
+			if (m_NewIndex[first] >= 0) {
+				return false;
+			}
+			for (int i = 0; i < m_BlockLength[first]; i++) {
+				m_NewIndex[first + i] = m_Next++;
+			}
+			return true;
+		}
+
+		boolean isSplit(int node) {
+			return m_Attribute.get(node) >= 0;
+		}
+
+		void breadthFirst() {
+			int[] queue = new int[numNodes()];
+			int length = 1;
+			for (int i = 0; i < length; i++) {
+				int node = queue[i];
+				if (isSplit(node) && place(node)) {
+					int first = m_Child.get(node);
+					for (int v = 0; v < m_BlockLength[first]; v++) {
+						queue[length++] = first + v;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Places the block of a node, then the subtrees of its successors by
+		 * decreasing number of visits.
+		 */
+		void hotPath(int node) {
+			if (!isSplit(node) || !place(node)) {
+				return;
+			}
+			int first = m_Child.get(node);
+			Integer[] successors = new Integer[m_BlockLength[first]];
+			for (int v = 0; v < successors.length; v++) {
+				successors[v] = first + v;
+			}
+			if (m_Visits != null) {
+				// stable, so ties keep the value order
+				Arrays.sort(successors, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer a, Integer b) {
+						return Long.compare(m_Visits[b], m_Visits[a]);
+					}
+				});
+			}
+			for (Integer successor : successors) {
+				hotPath(successor);
+			}
+		}
+
+		/**
+		 * Returns the number of successor blocks on the longest path down from a
+		 * node.
+		 */
+		int height(int node) {
+			if (!isSplit(node)) {
+				return 0;
+			}
+			if (m_Height[node] == 0) {
+				int first = m_Child.get(node);
+				int height = 0;
+				for (int v = 0; v < m_BlockLength[first]; v++) {
+					height = Math.max(height, height(first + v));
+				}
+				m_Height[node] = height + 1;
+			}
+			return m_Height[node];
+		}
+
+		/**
+		 * Places the blocks of the given number of levels below a node: first
+		 * the top half of the levels, then each subtree hanging below them.
+		 */
+		void vanEmdeBoas(int node, int levels) {
+			// a subtree shared by identical subtrees is placed once
+			if (levels <= m_Levels[node] || !isSplit(node)) {
+				return;
+			}
+			if (levels == 1) {
+				place(node);
+			} else {
+				int top = levels / 2;
+				vanEmdeBoas(node, top);
+				for (int below : below(node, top)) {
+					vanEmdeBoas(below, levels - top);
+				}
+			}
+			m_Levels[node] = levels;
+		}
+
+		/**
+		 * Returns the distinct nodes a number of levels below a node, left to
+		 * right.
+		 */
+		int[] below(int node, int depth) {
+			int[] level = { node };
+			for (int d = 0; d < depth; d++) {
+				m_Mark++;
+				int length = 0;
+				for (int parent : level) {
+					if (isSplit(parent)) {
+						length += m_BlockLength[m_Child.get(parent)];
+					}
+				}
+				int[] next = new int[length];
+				length = 0;
+				for (int parent : level) {
+					if (isSplit(parent)) {
+						int first = m_Child.get(parent);
+						for (int v = 0; v < m_BlockLength[first]; v++) {
+							if (m_Seen[first + v] != m_Mark) {
+								m_Seen[first + v] = m_Mark;
+								next[length++] = first + v;
+							}
+						}
+					}
+				}
+				level = Arrays.copyOf(next, length);
+			}
+			return level;
+		}
+
+		/**
+		 * Builds the tree with the new numbers.
+		 */
+		FlatTree apply() {
+			int numNodes = numNodes();
+			int[] attribute = new int[numNodes];
+			int[] child = new int[numNodes];
+			for (int i = 0; i < numNodes; i++) {
+				int index = m_NewIndex[i];
+				attribute[index] = m_Attribute.get(i);
+				child[index] = attribute[index] < 0 ? m_Child.get(i) : m_NewIndex[m_Child.get(i)];
+			}
+			return new FlatTree(m_NumAttributes, m_NumClasses, IntBuffer.wrap(attribute), IntBuffer.wrap(child),
+					m_Distributions);
+		}
+	}
+
+	/**
+	 * Adds the distribution of a leaf to an array of sums.
+	 *
+	 * @param offset the offset returned by leafOffset
+	 * @param sums   the sums, one per class
+	 */
+	public void addDistribution(int offset, double[] sums) {
+		for (int c = 0; c < m_NumClasses; c++) {
+			sums[c] += m_Distributions.get(offset + c);
+		}
+	}
+
+	/**
+	 * Returns a copy of the distribution of a leaf.
+	 *
+	 * @param offset the offset returned by leafOffset
+	 * @return the class distribution
+	 */
+	public double[] distribution(int offset) {
+		double[] dist = new double[m_NumClasses];
+		for (int c = 0; c < m_NumClasses; c++) {
+			dist[c] = m_Distributions.get(offset + c);
+		}
+		return dist;
+	}
+
+	/**
+	 * Computes the class distribution for an instance.
+	 *
+	 * @param instance the instance, without missing values
+	 * @return a copy of the distribution of the leaf the instance falls into
+	 */
+	public double[] distributionForInstance(Instance instance) {
+		return distribution(leafOffset(instance));
+	}
+
+	/**
+	 * Returns the size of the binary form of this tree.
+	 *
+	 * @return the number of bytes written by writeTo
+	 */
+	public long sizeInBytes() {
+		return poolStart(numNodes()) + 8L * m_Distributions.limit();
+	}
+
+	/**
+	 * Position of the node section, after the header and its padding.
+	 */
+	private int nodeStart() {
+		int header = 5 + varintSize(m_NumClasses) + varintSize(m_NumAttributes) + varintSize(numNodes())
+				+ varintSize(m_Distributions.limit());
+		return align8(header);
+	}
+
+	/**
+	 * Position of the distribution pool, after the nodes and their padding.
+	 */
+	private long poolStart(int numNodes) {
+		return align8(nodeStart() + 8L * numNodes);
+	}
+
+	/**
+	 * Writes the binary form of this tree.
+	 *
+	 * @param out the buffer to write to, with at least sizeInBytes() remaining
+	 */
+	public void writeTo(ByteBuffer out) {
+		out.order(ByteOrder.LITTLE_ENDIAN);
+		int base = out.position();
+		out.putInt(MAGIC);
+		out.put(VERSION);
+		putVarint(out, m_NumClasses);
+		putVarint(out, m_NumAttributes);
+		putVarint(out, numNodes());
+		putVarint(out, m_Distributions.limit());
+		out.position(base + nodeStart());
+		for (int i = 0; i < numNodes(); i++) {
+			out.putInt(m_Attribute.get(i));
+		}
+		for (int i = 0; i < numNodes(); i++) {
+			out.putInt(m_Child.get(i));
+		}
+		out.position(base + (int) poolStart(numNodes()));
+		for (int i = 0; i < m_Distributions.limit(); i++) {
+			out.putDouble(m_Distributions.get(i));
+		}
+	}
+
+	/**
+	 * Reads a tree from its binary form. The arrays of a direct (for instance
+	 * memory-mapped) buffer are used in place; those of a heap buffer are copied
+	 * into arrays.
+	 *
+	 * @param in the buffer positioned at the start of the tree; on return it is
+	 *           positioned after the tree
+	 * @return the tree
+	 * @throws IOException if the buffer does not hold a tree of this version
+	 */
+	public static FlatTree read(ByteBuffer in) throws IOException {
+		in.order(ByteOrder.LITTLE_ENDIAN);
+		int base = in.position();
+		if (in.remaining() < 5 || in.getInt() != MAGIC) {
+			throw new IOException("Not a FlatTree model!");
+		}
+		byte version = in.get();
+		if (version != VERSION) {
+			throw new IOException("Unsupported FlatTree format version " + version + "!");
+		}
+		int numClasses = getVarint(in);
+		int numAttributes = getVarint(in);
+		int numNodes = getVarint(in);
+		int poolLength = getVarint(in);
+
+		int nodeStart = base + align8(in.position() - base);
+		int poolStart = base + align8(nodeStart - base + 8 * numNodes);
+		if (poolStart + 8L * poolLength > in.limit()) {
+			throw new IOException("Truncated FlatTree model!");
+		}
+
+		IntBuffer attribute = slice(in, nodeStart, 4 * numNodes).asIntBuffer();
+		IntBuffer child = slice(in, nodeStart + 4 * numNodes, 4 * numNodes).asIntBuffer();
+		DoubleBuffer distributions = slice(in, poolStart, 8 * poolLength).asDoubleBuffer();
+		in.position(poolStart + 8 * poolLength);
+
+		if (!in.isDirect()) {
+			// views of heap buffers assemble every value from bytes
+			int[] a = new int[numNodes];
+			attribute.get(a);
+			int[] c = new int[numNodes];
+			child.get(c);
+			double[] d = new double[poolLength];
+			distributions.get(d);
+			attribute = IntBuffer.wrap(a);
+			child = IntBuffer.wrap(c);
+			distributions = DoubleBuffer.wrap(d);
+		}
+		return new FlatTree(numAttributes, numClasses, attribute, child, distributions);
+	}
+
+	/**
+	 * Saves this tree to a file in its binary form.
+	 *
+	 * @param file the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void save(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			raf.setLength(0);
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeInBytes());
+			writeTo(out);
+			out.force();
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Loads a tree saved with save by memory-mapping the file. The node arrays
+	 * and distributions are read from the mapping on demand.
+	 *
+	 * @param file the file to read
+	 * @return the tree
+	 * @throws IOException if the file can't be read or holds no tree
+	 */
+	public static FlatTree load(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			// the mapping stays valid after the channel is closed
+			ByteBuffer in = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			return read(in);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns a copy of this tree held outside the Java heap, scored in place
+	 * from a direct buffer or from a memory-mapped file. Only the FlatTree and
+	 * its three buffer objects remain on the heap.
+	 *
+	 * @param file the file to save the copy to and map, null for a direct
+	 *             buffer
+	 * @return the off-heap copy
+	 * @throws IOException if the file can't be written or read
+	 */
+	public FlatTree offHeap(File file) throws IOException {
+		if (file != null) {
+			save(file);
+			return load(file);
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect((int) sizeInBytes());
+		writeTo(buffer);
+		buffer.rewind();
+		return read(buffer);
+	}
+
+	/**
+	 * Java serialization stores the binary form instead of the buffers.
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		ByteBuffer out = ByteBuffer.allocate((int) sizeInBytes());
+		writeTo(out);
+		return new SerializedForm(out.array());
+	}
+
+	/**
+	 * Serialized form of a FlatTree, the bytes of its binary form.
+	 */
+	private static class SerializedForm implements Serializable {
+
+		/** for serialization */
+		private static final long serialVersionUID = 2016845012874360185L;
+
+		private final byte[] m_Bytes;
+
+		SerializedForm(byte[] bytes) {
+			m_Bytes = bytes;
+		}
+
+		private Object readResolve() throws ObjectStreamException {
+			try {
+				return read(ByteBuffer.wrap(m_Bytes));
+			} catch (IOException e) {
+				throw new InvalidObjectException(e.getMessage());
+			}
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer in, int position, int length) {
+		ByteBuffer dup = in.duplicate();
+		dup.limit(position + length);
+		dup.position(position);
+		return dup.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static int align8(int n) {
+		return (n + 7) & ~7;
+	}
+
+	private static long align8(long n) {
+		return (n + 7) & ~7L;
+	}
+
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	private static void putVarint(ByteBuffer out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	private static int getVarint(ByteBuffer in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint in FlatTree model!");
+	}
+}
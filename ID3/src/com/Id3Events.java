@@ -0,0 +1,216 @@
+package com;
+
+/**
+ * Hooks recording the builds and scoring of MyId3 and MyOneR as Java Flight
+ * Recorder events, alongside the JVM's own events, so that a slow build can be
+ * traced to its nodes and attributes:
+ *
+ * <pre>
+ * com.MyOneR.Weight   the OneR weight of one attribute
+ * com.MyId3.Split     the split decision of one node
+ * com.MyId3.Subtree   a subtree grown to completion
+ * com.MyId3.Score     a sample of the scoring calls
+ * </pre>
+ *
+ * Each event can be switched on and off and given a duration threshold in the
+ * recording settings like any JDK event, e.g.
+ * <code>com.MyId3.Split#threshold=5 ms</code>; the scoring event also takes
+ * <code>com.MyId3.Score#sample=&lt;n&gt;</code> to keep about one call in n.
+ * <p/>
+ * This class records nothing. The events themselves are in JfrEvents, in the
+ * src-jfr source folder, which needs the flight recorder API of JDK 8u262 and
+ * later; it is loaded when that API is there. The src folder alone builds and
+ * runs on any Java 8, so on an older JRE drop src-jfr from the build path.
+ * Every begin hook returns null unless its event is enabled in a running
+ * recording, so a disabled event costs a check and nothing more.
+ */
+public class Id3Events {
+
+	/** The hooks used, recording events if the runtime allows it. */
+	static final Id3Events INSTANCE = load();
+
+	/**
+	 * Starts timing the OneR weight of an attribute.
+	 *
+	 * @return the event, null if not recorded
+	 */
+	Object beginWeight() {
+		return null;
+	}
+
+	/**
+	 * Records the OneR weight of an attribute.
+	 *
+	 * @param event     the event from beginWeight, not null
+	 * @param attribute the attribute's name
+	 * @param weight    the weight
+	 * @param rows      the number of rows counted
+	 */
+	void endWeight(Object event, String attribute, double weight, int rows) {
+	}
+
+	/**
+	 * Starts timing the split decision of a node.
+	 *
+	 * @return the event, null if not recorded
+	 */
+	Object beginSplit() {
+		return null;
+	}
+
+	/**
+	 * Records the split decision of a node.
+	 *
+	 * @param event     the event from beginSplit, not null
+	 * @param depth     the node's depth
+	 * @param rows      the number of training rows reaching the node
+	 * @param attribute the best attribute, null if none was scored
+	 * @param gain      the best attribute's gain, NaN if none was scored
+	 * @param split     whether the node was split rather than made a leaf
+	 * @param sampled   whether the attribute was chosen on a sample of the rows
+	 */
+	void endSplit(Object event, int depth, int rows, String attribute, double gain, boolean split,
+			boolean sampled) {
+	}
+
+	/**
+	 * Returns whether subtrees are recorded, so that the build keeps track of
+	 * the subtree of every node.
+	 *
+	 * @return true if subtree events are enabled
+	 */
+	boolean subtreesEnabled() {
+		return false;
+	}
+
+	/**
+	 * Starts timing a subtree.
+	 *
+	 * @return the event, null if not recorded
+	 */
+	Object beginSubtree() {
+		return null;
+	}
+
+	/**
+	 * Records a subtree grown to completion.
+	 *
+	 * @param event  the event from beginSubtree, not null
+	 * @param depth  the depth of the subtree's root
+	 * @param rows   the number of rows reaching the root
+	 * @param nodes  the number of nodes of the subtree
+	 * @param leaves the number of leaves of the subtree
+	 */
+	void endSubtree(Object event, int depth, int rows, int nodes, int leaves) {
+	}
+
+	/**
+	 * Starts timing a scoring call.
+	 *
+	 * @return the event, null if not recorded
+	 */
+	Object beginScore() {
+		return null;
+	}
+
+	/**
+	 * Records a scoring call, if it is in the sample.
+	 *
+	 * @param event      the event from beginScore, not null
+	 * @param depth      the depth of the leaf reached
+	 * @param prediction the predicted class, null for an empty leaf
+	 */
+	void endScore(Object event, int depth, String prediction) {
+	}
+
+	/**
+	 * Returns the hooks of JfrEvents if the flight recorder API is there and
+	 * the class has been compiled, these otherwise.
+	 */
+	private static Id3Events load() {
+		try {
+			Class.forName("jdk.jfr.FlightRecorder");
+			return (Id3Events) Class.forName("com.JfrEvents").getDeclaredConstructor().newInstance();
+		} catch (Throwable e) {
+			return new Id3Events();
+		}
+	}
+
+	/**
+	 * The state of a growing subtree, while subtrees are recorded.
+	 */
+	static final class SubtreeState {
+
+		/** The state of the parent's subtree, null at the root. */
+		private final SubtreeState m_Parent;
+
+		/** The event, recorded when the subtree is complete; may be null. */
+		private final Object m_Event;
+
+		/** The depth of the subtree's root. */
+		private final int m_Depth;
+
+		/** The number of rows reaching the subtree's root. */
+		private int m_Rows;
+
+		/** The number of nodes of the subtree so far. */
+		private int m_Nodes;
+
+		/** The number of leaves of the subtree so far. */
+		private int m_Leaves;
+
+		/** The number of successors whose subtrees are still growing. */
+		private int m_Pending;
+
+		/**
+		 * Starts timing the subtree of a node about to be split.
+		 *
+		 * @param parent the state of the parent's subtree, null at the root
+		 * @param depth  the node's depth
+		 */
+		SubtreeState(SubtreeState parent, int depth) {
+			m_Parent = parent;
+			m_Depth = depth;
+			m_Event = INSTANCE.beginSubtree();
+		}
+
+		/**
+		 * Records the outcome of the node's split.
+		 *
+		 * @param rows          the number of rows reaching the node
+		 * @param numSuccessors the number of successors, 0 for a leaf
+		 */
+		void split(int rows, int numSuccessors) {
+			m_Rows = rows;
+			m_Nodes = 1;
+			m_Pending = numSuccessors;
+			if (numSuccessors == 0) {
+				m_Leaves = 1;
+				complete();
+			}
+		}
+
+		/**
+		 * Records the event of a complete subtree and adds its nodes to the
+		 * parent's, completing that too if it was the last one growing.
+		 */
+		private void complete() {
+			SubtreeState state = this;
+			while (true) {
+				if (state.m_Event != null) {
+					INSTANCE.endSubtree(state.m_Event, state.m_Depth, state.m_Rows, state.m_Nodes, state.m_Leaves);
+				}
+				SubtreeState parent = state.m_Parent;
+				if (parent == null) {
+					return;
+				}
+				parent.m_Nodes += state.m_Nodes;
+				parent.m_Leaves += state.m_Leaves;
+				if (--parent.m_Pending > 0) {
+					return;
+				}
+				state = parent;
+			}
+		}
+	}
+}
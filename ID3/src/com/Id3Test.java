@@ -1,6 +1,7 @@
 package com;
 
 import java.awt.BorderLayout;
+import java.io.File;
 
 import javax.swing.JFrame;
 
@@ -18,13 +19,17 @@ public class Id3Test {
 		return m_instances;
 	}
 
+	// 多线程读取大的 ARFF 训练集，直接编码成列
+	public EncodedInstances getEncodedInstances(String fileName) throws Exception {
+		return new ParallelArffLoader(new File(fileName)).getEncodedData();
+	}
+
 	public static void main(String[] args) throws Exception {
 		// TODO Auto-generated method stub
 		String name = "data/train-big.arff";
 		Id3Test id3Test = new Id3Test();
-		Instances instances = id3Test.getInstances(name);
 		MyId3 classifier = new MyId3();
-		classifier.buildClassifier(instances);
+		classifier.buildClassifier(id3Test.getEncodedInstances(name));
 
 		//System.out.println(classifier.toString());
 
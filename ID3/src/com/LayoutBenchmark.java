@@ -0,0 +1,193 @@
+package com;
+
+import java.util.Arrays;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+import weka.core.SelectedTag;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Compares the node layouts of FlatTree on a trained MyId3 tree. For every
+ * layout it measures the scoring throughput over the test rows, and replays
+ * the node reads of the same walks through a simulated cache to count the
+ * 64-byte lines they touch and miss; Java has no portable access to the
+ * hardware counters, and the simulation does not depend on what else the
+ * machine is doing. The hot path layout uses the branch frequencies of the
+ * training rows.
+ * <p/>
+ * The differences only show on trees much larger than the cache, so the
+ * training file should give a deep tree.
+ * <p/>
+ * Usage: LayoutBenchmark [train file] [test file] [ms per layout] [cache KB]
+ */
+public class LayoutBenchmark {
+
+	/** Size of a cache line, in bytes. */
+	static final int LINE_SIZE = 64;
+
+	/** Number of lines per set of the simulated cache. */
+	static final int WAYS = 8;
+
+	/** Keeps the results alive so scoring is not optimized away. */
+	static volatile long ms_sink;
+
+	/**
+	 * A set-associative cache with least recently used replacement, holding
+	 * line numbers.
+	 */
+	static class CacheModel {
+
+		/** The lines of each set, most recently used first, -1 if empty. */
+		private final long[][] m_Sets;
+
+		/** Number of lookups that missed. */
+		long m_Misses;
+
+		CacheModel(int sizeInBytes) {
+			m_Sets = new long[Math.max(1, sizeInBytes / LINE_SIZE / WAYS)][WAYS];
+			for (long[] set : m_Sets) {
+				Arrays.fill(set, -1);
+			}
+		}
+
+		/**
+		 * Reads the line holding a byte address.
+		 *
+		 * @param address the address
+		 */
+		void access(long address) {
+			long line = address / LINE_SIZE;
+			long[] set = m_Sets[(int) (line % m_Sets.length)];
+			int way = 0;
+			while (way < WAYS - 1 && set[way] != line) {
+				way++;
+			}
+			if (set[way] != line) {
+				m_Misses++;
+			}
+			System.arraycopy(set, 0, set, 1, way);
+			set[0] = line;
+		}
+	}
+
+	/**
+	 * Reads a dataset, with the last attribute as the class.
+	 *
+	 * @param fileName the file to read
+	 * @return the dataset
+	 * @throws Exception if the file can't be read
+	 */
+	public Instances getInstances(String fileName) throws Exception {
+		Instances m_instances = DataSource.read(fileName);
+		m_instances.setClassIndex(m_instances.numAttributes() - 1);
+		return m_instances;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String train = args.length > 0 ? args[0] : "data/breast-cancer.arff";
+		String test = args.length > 1 ? args[1] : "data/breast-cancer-test.arff";
+		long millis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+		int cacheKB = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+
+		LayoutBenchmark benchmark = new LayoutBenchmark();
+		Instances trainIns = benchmark.getInstances(train);
+		Instances testIns = benchmark.getInstances(test);
+		MyId3 tree = new MyId3();
+		tree.buildClassifier(trainIns);
+		FlatTree flat = tree.snapshot();
+		long[] visits = flat.visitCounts(trainIns);
+		System.out.println("nodes: " + flat.numNodes() + ", node bytes: " + 8L * flat.numNodes());
+
+		// the rows back to back, as a batch scorer holds them
+		int numValues = testIns.numAttributes();
+		double[] values = new double[testIns.numInstances() * numValues];
+		for (int i = 0; i < testIns.numInstances(); i++) {
+			Instance instance = testIns.instance(i);
+			for (int att = 0; att < numValues; att++) {
+				values[i * numValues + att] = instance.value(att);
+			}
+		}
+
+		FlatTree[] layouts = new FlatTree[FlatTree.TAGS_LAYOUT.length];
+		for (int i = 0; i < layouts.length; i++) {
+			layouts[i] = flat.withLayout(FlatTree.TAGS_LAYOUT[i].getID(), visits);
+		}
+		// warm up
+		for (FlatTree layout : layouts) {
+			score(layout, values, numValues, millis / 4);
+		}
+
+		System.out.println("layout\tscores/s\tlines/row\tmisses/row");
+		for (int i = 0; i < layouts.length; i++) {
+			double rate = score(layouts[i], values, numValues, millis);
+			CacheModel cache = new CacheModel(cacheKB * 1024);
+			// one pass to fill the cache, one to count
+			replay(layouts[i], values, numValues, cache);
+			cache.m_Misses = 0;
+			long lines = replay(layouts[i], values, numValues, cache);
+			int rows = values.length / numValues;
+			System.out.println(String.format("%s\t%.0f\t%.2f\t%.2f",
+					new SelectedTag(FlatTree.TAGS_LAYOUT[i].getID(), FlatTree.TAGS_LAYOUT).getSelectedTag().getReadable(),
+					rate, (double) lines / rows, (double) cache.m_Misses / rows));
+		}
+	}
+
+	/**
+	 * Scores the rows over and over for the given time.
+	 *
+	 * @return the number of rows scored per second
+	 * @throws NoSupportForMissingValuesException if a row has a missing value
+	 */
+	static double score(FlatTree tree, double[] values, int numValues, long millis)
+			throws NoSupportForMissingValuesException {
+		long sum = 0;
+		long count = 0;
+		long start = System.nanoTime();
+		long end = start + millis * 1000000L;
+		long now;
+		do {
+			for (int offset = 0; offset < values.length; offset += numValues) {
+				sum += tree.leafOffset(values, offset);
+			}
+			count += values.length / numValues;
+			now = System.nanoTime();
+		} while (now < end);
+		ms_sink = sum;
+		return count * 1e9 / (now - start);
+	}
+
+	/**
+	 * Walks every row through the tree, reading the attribute and child of each
+	 * node at their positions in the saved format.
+	 *
+	 * @return the number of lines read, summed over the rows; a line counts
+	 *         again only after the walk has left it
+	 */
+	static long replay(FlatTree tree, double[] values, int numValues, CacheModel cache) {
+		int numNodes = tree.numNodes();
+		long childStart = 4L * numNodes;
+		long lines = 0;
+		for (int offset = 0; offset < values.length; offset += numValues) {
+			long lastAttributeLine = -1;
+			long lastChildLine = -1;
+			int node = 0;
+			while (true) {
+				cache.access(4L * node);
+				cache.access(childStart + 4L * node);
+				long attributeLine = 4L * node / LINE_SIZE;
+				long childLine = (childStart + 4L * node) / LINE_SIZE;
+				lines += (attributeLine != lastAttributeLine ? 1 : 0) + (childLine != lastChildLine ? 1 : 0);
+				lastAttributeLine = attributeLine;
+				lastChildLine = childLine;
+				int att = tree.splitAttribute(node);
+				if (att < 0) {
+					break;
+				}
+				node = tree.firstChild(node) + (int) values[offset + att];
+			}
+		}
+		return lines;
+	}
+}
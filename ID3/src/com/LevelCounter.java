@@ -0,0 +1,32 @@
+package com;
+
+/**
+ * Source of the counts of a tree grown without its rows, one level at a time.
+ * The counter follows the tree's frontier: first the root, then for every
+ * level the successors of the nodes split on the level before, in the order
+ * the tree splits them.
+ */
+interface LevelCounter {
+
+	/**
+	 * Counts the rows of the root.
+	 *
+	 * @param root receives the class counts and the contingency tables of every
+	 *             attribute
+	 * @throws Exception if the rows can't be counted
+	 */
+	void countRoot(NodeStatistics root) throws Exception;
+
+	/**
+	 * Splits the nodes of the current level and counts the rows of their
+	 * successors, which become the current level.
+	 *
+	 * @param splits     the split attribute of every node of the current level,
+	 *                   -1 for the nodes not split
+	 * @param successors receives the class counts and the contingency tables of
+	 *                   every attribute of the successors, in order; the tables
+	 *                   are left out for successors without rows
+	 * @throws Exception if the rows can't be counted
+	 */
+	void countLevel(int[] splits, NodeStatistics[] successors) throws Exception;
+}
@@ -0,0 +1,82 @@
+package com;
+
+import weka.core.Utils;
+
+/**
+ * Lookup tables of log2(n) and n * log2(n) for the integer counts met while
+ * scoring splits, so that entropies and split infos are sums of table lookups
+ * instead of logarithm calls. The entries are computed exactly as before, which
+ * keeps the scores and therefore the chosen splits unchanged.
+ * <p/>
+ * One table is shared by all builds and only ever grows; a build asks for a
+ * table covering its number of instances once and then reads it without
+ * further checks.
+ */
+final class Log2Table {
+
+	/** The largest table built so far. */
+	private static volatile Log2Table s_Shared = new Log2Table(1024);
+
+	/** log2(n), negative infinity for 0. */
+	private final double[] m_Log2;
+
+	/** n * log2(n), NaN for 0 as 0 * log2(0) is. */
+	private final double[] m_NLog2N;
+
+	/**
+	 * Builds the tables for all counts up to the given size.
+	 *
+	 * @param size the number of entries
+	 */
+	private Log2Table(int size) {
+		m_Log2 = new double[size];
+		m_NLog2N = new double[size];
+		for (int n = 0; n < size; n++) {
+			m_Log2[n] = Utils.log2(n);
+			m_NLog2N[n] = n * m_Log2[n];
+		}
+	}
+
+	/**
+	 * Returns a table covering all counts up to the given maximum, extending the
+	 * shared table if necessary.
+	 *
+	 * @param maxCount the largest count to be looked up
+	 * @return the table
+	 */
+	static Log2Table upTo(int maxCount) {
+		Log2Table table = s_Shared;
+		if (table.m_Log2.length > maxCount) {
+			return table;
+		}
+		synchronized (Log2Table.class) {
+			table = s_Shared;
+			if (table.m_Log2.length <= maxCount) {
+				// grow geometrically so a series of larger datasets rebuilds rarely
+				table = new Log2Table(Math.max(maxCount + 1, 2 * table.m_Log2.length));
+				s_Shared = table;
+			}
+			return table;
+		}
+	}
+
+	/**
+	 * Returns log2(n).
+	 *
+	 * @param n the count
+	 * @return the logarithm
+	 */
+	double log2(int n) {
+		return m_Log2[n];
+	}
+
+	/**
+	 * Returns n * log2(n).
+	 *
+	 * @param n the count
+	 * @return the product
+	 */
+	double nLog2N(int n) {
+		return m_NLog2N[n];
+	}
+}
@@ -0,0 +1,123 @@
+package com;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import weka.core.Instance;
+import weka.core.NoSupportForMissingValuesException;
+
+/**
+ * Holds the model currently used for scoring and lets a newly trained one
+ * replace it while requests are being served. Reading the current model is a
+ * single volatile read, so scoring threads never block, and a request scores
+ * entirely with the model it started with, even if a new one is published in
+ * the meantime.
+ * <p/>
+ * Every published model gets the next version number, starting at 1.
+ */
+public class ModelHolder {
+
+	/** The current model and its version, null until the first publish. */
+	private final AtomicReference<Version> m_Current = new AtomicReference<Version>();
+
+	/**
+	 * A published model together with its version number.
+	 */
+	public static final class Version {
+
+		/** The version number. */
+		private final long m_Number;
+
+		/** The model. */
+		private final FlatTree m_Model;
+
+		private Version(long number, FlatTree model) {
+			m_Number = number;
+			m_Model = model;
+		}
+
+		/**
+		 * Returns the version number.
+		 *
+		 * @return the version, 1 for the first model published
+		 */
+		public long number() {
+			return m_Number;
+		}
+
+		/**
+		 * Returns the model.
+		 *
+		 * @return the model
+		 */
+		public FlatTree model() {
+			return m_Model;
+		}
+	}
+
+	/**
+	 * Returns the current model and its version.
+	 *
+	 * @return the current version, or null if no model has been published
+	 */
+	public Version current() {
+		return m_Current.get();
+	}
+
+	/**
+	 * Makes a model the current one. Scoring requests already in progress finish
+	 * with the model they started with.
+	 *
+	 * @param model the new model
+	 * @return the version number assigned to the model
+	 * @throws IllegalArgumentException if the model expects a different number
+	 *                                  of attributes or classes than the
+	 *                                  current one
+	 */
+	public long publish(FlatTree model) {
+		while (true) {
+			Version current = m_Current.get();
+			long number = 1;
+			if (current != null) {
+				FlatTree old = current.m_Model;
+				if (old.numAttributes() != model.numAttributes() || old.numClasses() != model.numClasses()) {
+					throw new IllegalArgumentException("Model has " + model.numAttributes() + " attributes and "
+							+ model.numClasses() + " classes, expected " + old.numAttributes() + " and "
+							+ old.numClasses() + "!");
+				}
+				number = current.m_Number + 1;
+			}
+			if (m_Current.compareAndSet(current, new Version(number, model))) {
+				return number;
+			}
+		}
+	}
+
+	/**
+	 * Makes an immutable snapshot of a trained tree the current model.
+	 *
+	 * @param tree the trained tree
+	 * @return the version number assigned to the model
+	 */
+	public long publish(MyId3 tree) {
+		return publish(tree.snapshot());
+	}
+
+	/**
+	 * Computes the class distribution for an instance with the current model.
+	 *
+	 * @param instance the instance
+	 * @return the class distribution
+	 * @throws NoSupportForMissingValuesException if instance has missing values
+	 * @throws IllegalStateException              if no model has been published
+	 */
+	public double[] distributionForInstance(Instance instance) throws NoSupportForMissingValuesException {
+		Version current = m_Current.get();
+		if (current == null) {
+			throw new IllegalStateException("No model published yet!");
+		}
+		if (instance.hasMissingValue()) {
+			throw new NoSupportForMissingValuesException("Id3: no missing values, " + "please.");
+		}
+		return current.m_Model.distributionForInstance(instance);
+	}
+}
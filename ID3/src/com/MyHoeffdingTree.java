@@ -0,0 +1,870 @@
+package com;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.core.Attribute;
+import weka.core.Capabilities;
+import weka.core.Capabilities.Capability;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+import weka.core.Option;
+import weka.core.RevisionUtils;
+import weka.core.TechnicalInformation;
+import weka.core.TechnicalInformation.Field;
+import weka.core.TechnicalInformation.Type;
+import weka.core.TechnicalInformationHandler;
+import weka.core.Utils;
+
+/**
+ * <!-- globalinfo-start --> Class for learning a decision tree from a stream of
+ * nominal instances, one instance at a time. Every leaf keeps the (value,
+ * class) counts of the instances that reached it and is split on the attribute
+ * with the highest OneR-weighted information gain, the criterion of MyId3, as
+ * soon as the Hoeffding bound shows that attribute to be ahead of the others
+ * with high probability. The OneR weights are the accuracies of the attributes'
+ * OneR rules on all instances seen so far. Memory is bounded by keeping counts
+ * only in the most promising leaves; the others are deactivated and merely
+ * predict until they become promising again. For more information see: <br/>
+ * <br/>
+ * Pedro Domingos, Geoff Hulten: Mining high-speed data streams. In: Proceedings
+ * of the Sixth ACM SIGKDD International Conference on Knowledge Discovery and
+ * Data Mining, 71-80, 2000.
+ * <p/>
+ * <!-- globalinfo-end -->
+ *
+ * <!-- options-start --> Valid options are:
+ * <p/>
+ *
+ * <pre>
+ * -G &lt;grace period&gt;
+ *  Number of instances a leaf observes between split attempts
+ *  (default: 200).
+ * </pre>
+ *
+ * <pre>
+ * -E &lt;split confidence&gt;
+ *  Allowable error in the split decision, delta in the Hoeffding
+ *  bound (default: 1e-7).
+ * </pre>
+ *
+ * <pre>
+ * -H &lt;tie threshold&gt;
+ *  Hoeffding bound below which a tie is broken by splitting
+ *  (default: 0.05).
+ * </pre>
+ *
+ * <pre>
+ * -depth &lt;max depth&gt;
+ *  Maximum depth of the tree (default: 0, which means unlimited).
+ * </pre>
+ *
+ * <pre>
+ * -max-leaves &lt;num&gt;
+ *  Maximum number of active leaves, which keep counts
+ *  (default: 1000, 0 means unlimited).
+ * </pre>
+ *
+ * <!-- options-end -->
+ */
+public class MyHoeffdingTree extends AbstractClassifier implements UpdateableClassifier, TechnicalInformationHandler {
+
+	/** for serialization */
+	static final long serialVersionUID = -5163837296451370832L;
+
+	/** Number of instances a leaf observes between split attempts. */
+	private int m_GracePeriod = 200;
+
+	/** Allowable error in the split decision. */
+	private double m_SplitConfidence = 1e-7;
+
+	/** Bound below which ties are broken by splitting. */
+	private double m_TieThreshold = 0.05;
+
+	/** Maximum depth, 0 for unlimited. */
+	private int m_MaxDepth = 0;
+
+	/** Maximum number of active leaves, 0 for unlimited. */
+	private int m_MaxActiveLeaves = 1000;
+
+	/** Header of the training data. */
+	private Instances m_Header;
+
+	/** The root of the tree. */
+	private Node m_Root;
+
+	/** All leaves of the tree, active or not. */
+	private List<Node> m_Leaves;
+
+	/** Number of leaves that keep counts. */
+	private int m_NumActiveLeaves;
+
+	/**
+	 * The (value, class) counts of every attribute over all instances seen, for
+	 * the OneR weights; null for the class.
+	 */
+	private double[][] m_TotalCounts;
+
+	/** Total weight of the instances seen. */
+	private double m_NumSeen;
+
+	/**
+	 * A node of the tree. Leaves hold their class counts and, while active, the
+	 * contingency table of every attribute they may still split on.
+	 */
+	private static class Node implements Serializable {
+
+		/** for serialization */
+		static final long serialVersionUID = 2962931757431347219L;
+
+		/** The split attribute, -1 for a leaf. */
+		int m_Attribute = -1;
+
+		/** The successors by value of the split attribute. */
+		Node[] m_Successors;
+
+		/** The weight of each class among the instances that reached the leaf. */
+		final double[] m_ClassCounts;
+
+		/** The attributes the leaf may split on, shared by siblings. */
+		final boolean[] m_Candidates;
+
+		/** The depth of the node, 0 at the root. */
+		final int m_Depth;
+
+		/**
+		 * The (value, class) counts of each candidate attribute, null for the
+		 * others and for inactive leaves; stored flat as in MyId3.
+		 */
+		double[][] m_Counts;
+
+		/** The weight seen by the leaf at the last split attempt. */
+		double m_WeightAtLastAttempt;
+
+		Node(double[] classCounts, boolean[] candidates, int depth) {
+			m_ClassCounts = classCounts;
+			m_Candidates = candidates;
+			m_Depth = depth;
+			m_WeightAtLastAttempt = Utils.sum(classCounts);
+		}
+
+		/**
+		 * Returns the weight of the instances the leaf's majority class gets
+		 * wrong, which is what splitting the leaf can gain at most.
+		 */
+		double promise() {
+			return Utils.sum(m_ClassCounts) - m_ClassCounts[Utils.maxIndex(m_ClassCounts)];
+		}
+	}
+
+	/**
+	 * Returns a string describing the classifier.
+	 *
+	 * @return a description suitable for the GUI.
+	 */
+	public String globalInfo() {
+
+		return "Class for learning a decision tree from a stream of nominal instances, one instance at a "
+				+ "time. Every leaf keeps the (value, class) counts of the instances that reached it and is "
+				+ "split on the attribute with the highest OneR-weighted information gain, the criterion of "
+				+ "MyId3, as soon as the Hoeffding bound shows that attribute to be ahead of the others with "
+				+ "high probability. Memory is bounded by keeping counts only in the most promising leaves. "
+				+ "For more information see:\n\n" + getTechnicalInformation().toString();
+	}
+
+	@Override
+	public TechnicalInformation getTechnicalInformation() {
+		TechnicalInformation result;
+
+		result = new TechnicalInformation(Type.INPROCEEDINGS);
+		result.setValue(Field.AUTHOR, "Pedro Domingos and Geoff Hulten");
+		result.setValue(Field.TITLE, "Mining high-speed data streams");
+		result.setValue(Field.BOOKTITLE, "Proceedings of the Sixth ACM SIGKDD International Conference on "
+				+ "Knowledge Discovery and Data Mining");
+		result.setValue(Field.YEAR, "2000");
+		result.setValue(Field.PAGES, "71-80");
+
+		return result;
+	}
+
+	/**
+	 * Returns default capabilities of the classifier.
+	 *
+	 * @return the capabilities of this classifier
+	 */
+	@Override
+	public Capabilities getCapabilities() {
+		Capabilities result = super.getCapabilities();
+		result.disableAll();
+
+		// attributes
+		result.enable(Capability.NOMINAL_ATTRIBUTES);
+
+		// class
+		result.enable(Capability.NOMINAL_CLASS);
+		result.enable(Capability.MISSING_CLASS_VALUES);
+
+		// instances
+		result.setMinimumNumberInstances(0);
+
+		return result;
+	}
+
+	/**
+	 * Starts a new tree and trains it on the given instances in order.
+	 *
+	 * @param data the training data
+	 * @throws Exception if the classifier can't be built successfully
+	 */
+	@Override
+	public void buildClassifier(Instances data) throws Exception {
+
+		// can classifier handle the data?
+		getCapabilities().testWithFail(data);
+
+		m_Header = new Instances(data, 0);
+		int numAttributes = data.numAttributes();
+		int numClasses = data.numClasses();
+		boolean[] candidates = new boolean[numAttributes];
+		m_TotalCounts = new double[numAttributes][];
+		for (int att = 0; att < numAttributes; att++) {
+			if (att != data.classIndex()) {
+				candidates[att] = true;
+				m_TotalCounts[att] = new double[data.attribute(att).numValues() * numClasses];
+			}
+		}
+		m_NumSeen = 0;
+		m_Root = new Node(new double[numClasses], candidates, 0);
+		m_Leaves = new ArrayList<Node>();
+		m_Leaves.add(m_Root);
+		m_NumActiveLeaves = 0;
+		activate(m_Root);
+
+		for (int i = 0; i < data.numInstances(); i++) {
+			updateClassifier(data.instance(i));
+		}
+	}
+
+	/**
+	 * Updates the tree with one instance: the counts of the leaf it reaches are
+	 * updated and, once the leaf has seen a grace period's worth of instances
+	 * since the last attempt, the leaf is considered for a split. Instances with
+	 * a missing class are ignored.
+	 *
+	 * @param instance the instance
+	 * @throws Exception if the tree has not been built yet or the instance has
+	 *                   missing values
+	 */
+	@Override
+	public void updateClassifier(Instance instance) throws Exception {
+
+		if (m_Root == null) {
+			throw new Exception("MyHoeffdingTree: No model built yet.");
+		}
+		if (instance.classIsMissing()) {
+			return;
+		}
+		if (instance.hasMissingValue()) {
+			throw new NoSupportForMissingValuesException("MyHoeffdingTree: no missing values, " + "please.");
+		}
+
+		int numClasses = m_Header.numClasses();
+		int cls = (int) instance.classValue();
+		double weight = instance.weight();
+		m_NumSeen += weight;
+		for (int att = 0; att < m_TotalCounts.length; att++) {
+			if (m_TotalCounts[att] != null) {
+				m_TotalCounts[att][(int) instance.value(att) * numClasses + cls] += weight;
+			}
+		}
+
+		Node leaf = leafFor(instance);
+		leaf.m_ClassCounts[cls] += weight;
+		if (leaf.m_Counts == null) {
+			return;
+		}
+		for (int att = 0; att < leaf.m_Counts.length; att++) {
+			double[] table = leaf.m_Counts[att];
+			if (table != null) {
+				table[(int) instance.value(att) * numClasses + cls] += weight;
+			}
+		}
+		double seen = Utils.sum(leaf.m_ClassCounts);
+		if (seen - leaf.m_WeightAtLastAttempt >= m_GracePeriod) {
+			leaf.m_WeightAtLastAttempt = seen;
+			attemptSplit(leaf, seen);
+		}
+	}
+
+	/**
+	 * Splits a leaf if the Hoeffding bound shows that the attribute with the
+	 * highest weighted gain is better than the runner-up, or the two are too
+	 * close to matter.
+	 *
+	 * @param leaf the active leaf
+	 * @param seen the weight of the instances the leaf has seen
+	 */
+	private void attemptSplit(Node leaf, double seen) {
+
+		int numClasses = m_Header.numClasses();
+		double parentEntropy = entropy(leaf.m_ClassCounts, 0, numClasses, seen);
+		if (parentEntropy == 0) {
+			return;
+		}
+		double best = 0;
+		double second = 0;
+		int bestAtt = -1;
+		for (int att = 0; att < leaf.m_Counts.length; att++) {
+			double[] table = leaf.m_Counts[att];
+			if (table == null) {
+				continue;
+			}
+			double gain = oneRWeight(att) * infoGain(table, numClasses, parentEntropy, seen);
+			if (bestAtt < 0 || gain > best) {
+				second = best;
+				best = gain;
+				bestAtt = att;
+			} else if (gain > second) {
+				second = gain;
+			}
+		}
+		if (bestAtt < 0 || best <= 0) {
+			return;
+		}
+		// the weighted gain lies in [0, log2(numClasses)], as the weights do not
+		// exceed 1
+		double range = Utils.log2(numClasses);
+		double bound = Math.sqrt(range * range * Math.log(1 / m_SplitConfidence) / (2 * seen));
+		if (best - second > bound || bound < m_TieThreshold) {
+			split(leaf, bestAtt);
+		}
+	}
+
+	/**
+	 * Turns a leaf into a split. The successors start out with the class counts
+	 * the leaf saw for their value, so they predict from the first instance on.
+	 *
+	 * @param leaf the leaf
+	 * @param att  the split attribute
+	 */
+	private void split(Node leaf, int att) {
+
+		int numClasses = m_Header.numClasses();
+		int numValues = m_Header.attribute(att).numValues();
+		double[] table = leaf.m_Counts[att];
+		boolean[] candidates = leaf.m_Candidates.clone();
+		candidates[att] = false;
+		leaf.m_Attribute = att;
+		leaf.m_Successors = new Node[numValues];
+		leaf.m_Counts = null;
+		m_NumActiveLeaves--;
+		m_Leaves.remove(leaf);
+		for (int v = 0; v < numValues; v++) {
+			double[] classCounts = new double[numClasses];
+			System.arraycopy(table, v * numClasses, classCounts, 0, numClasses);
+			Node successor = new Node(classCounts, candidates, leaf.m_Depth + 1);
+			leaf.m_Successors[v] = successor;
+			m_Leaves.add(successor);
+			activate(successor);
+		}
+		if (m_MaxActiveLeaves > 0 && m_NumActiveLeaves > m_MaxActiveLeaves) {
+			enforceActiveLimit();
+		}
+	}
+
+	/**
+	 * Keeps only the most promising leaves active: the leaves are ranked by the
+	 * weight their majority class gets wrong, the others are deactivated and
+	 * inactive leaves that rank high enough are reactivated with fresh counts.
+	 */
+	private void enforceActiveLimit() {
+
+		List<Node> ranked = new ArrayList<Node>(m_Leaves);
+		Collections.sort(ranked, new Comparator<Node>() {
+			@Override
+			public int compare(Node a, Node b) {
+				return Double.compare(b.promise(), a.promise());
+			}
+		});
+		for (int i = 0; i < ranked.size(); i++) {
+			Node leaf = ranked.get(i);
+			if (i < m_MaxActiveLeaves) {
+				activate(leaf);
+			} else if (leaf.m_Counts != null) {
+				leaf.m_Counts = null;
+				m_NumActiveLeaves--;
+			}
+		}
+	}
+
+	/**
+	 * Gives an inactive leaf empty counts for its candidate attributes, unless
+	 * it is at the maximum depth or has nothing left to split on.
+	 *
+	 * @param leaf the leaf
+	 */
+	private void activate(Node leaf) {
+
+		if (leaf.m_Counts != null || (m_MaxDepth > 0 && leaf.m_Depth >= m_MaxDepth)) {
+			return;
+		}
+		int numClasses = m_Header.numClasses();
+		double[][] counts = new double[leaf.m_Candidates.length][];
+		boolean any = false;
+		for (int att = 0; att < counts.length; att++) {
+			if (leaf.m_Candidates[att]) {
+				counts[att] = new double[m_Header.attribute(att).numValues() * numClasses];
+				any = true;
+			}
+		}
+		if (any) {
+			leaf.m_Counts = counts;
+			leaf.m_WeightAtLastAttempt = Utils.sum(leaf.m_ClassCounts);
+			m_NumActiveLeaves++;
+		}
+	}
+
+	/**
+	 * Returns the OneR weight of an attribute, the fraction of all instances
+	 * seen that its OneR rule classifies correctly.
+	 *
+	 * @param att the attribute index
+	 * @return the weight
+	 */
+	private double oneRWeight(int att) {
+
+		int numClasses = m_Header.numClasses();
+		double[] counts = m_TotalCounts[att];
+		double correct = 0;
+		for (int value = 0; value < counts.length; value += numClasses) {
+			double best = 0;
+			for (int c = 0; c < numClasses; c++) {
+				best = Math.max(best, counts[value + c]);
+			}
+			correct += best;
+		}
+		return correct / m_NumSeen;
+	}
+
+	/**
+	 * Computes the information gain of an attribute at a leaf.
+	 *
+	 * @param counts        the attribute's (value, class) counts
+	 * @param numClasses    the number of classes
+	 * @param parentEntropy the entropy of the leaf's class distribution
+	 * @param numInstances  the weight of the instances at the leaf
+	 * @return the information gain
+	 */
+	private static double infoGain(double[] counts, int numClasses, double parentEntropy, double numInstances) {
+
+		double infoGain = parentEntropy;
+		for (int j = 0; j < counts.length; j += numClasses) {
+			double size = 0;
+			for (int c = 0; c < numClasses; c++) {
+				size += counts[j + c];
+			}
+			if (size > 0) {
+				infoGain -= (size / numInstances) * entropy(counts, j, numClasses, size);
+			}
+		}
+		return infoGain;
+	}
+
+	/**
+	 * Computes the entropy of a class distribution.
+	 *
+	 * @param classCounts  the array holding the class counts
+	 * @param offset       the position of the first class count
+	 * @param numClasses   the number of classes
+	 * @param numInstances the total of the class counts
+	 * @return the entropy of the class distribution
+	 */
+	private static double entropy(double[] classCounts, int offset, int numClasses, double numInstances) {
+
+		double entropy = 0;
+		for (int j = 0; j < numClasses; j++) {
+			double classCount = classCounts[offset + j];
+			if (classCount > 0) {
+				entropy -= classCount * Utils.log2(classCount);
+			}
+		}
+		entropy /= numInstances;
+		return entropy + Utils.log2(numInstances);
+	}
+
+	/**
+	 * Follows the instance down to its leaf.
+	 *
+	 * @param instance the instance, without missing values
+	 * @return the leaf the instance ends up in
+	 */
+	private Node leafFor(Instance instance) {
+		Node node = m_Root;
+		while (node.m_Attribute >= 0) {
+			node = node.m_Successors[(int) instance.value(node.m_Attribute)];
+		}
+		return node;
+	}
+
+	/**
+	 * Computes the class distribution for an instance from the class counts of
+	 * its leaf, all zero if the leaf has not seen any instances.
+	 *
+	 * @param instance the instance for which distribution is to be computed
+	 * @return the class distribution for the given instance
+	 * @throws NoSupportForMissingValuesException if instance has missing values
+	 */
+	@Override
+	public double[] distributionForInstance(Instance instance) throws NoSupportForMissingValuesException {
+
+		if (instance.hasMissingValue()) {
+			throw new NoSupportForMissingValuesException("MyHoeffdingTree: no missing values, " + "please.");
+		}
+		double[] distribution = leafFor(instance).m_ClassCounts.clone();
+		if (Utils.sum(distribution) > 0) {
+			Utils.normalize(distribution);
+		}
+		return distribution;
+	}
+
+	/**
+	 * Returns the number of leaves that keep counts.
+	 *
+	 * @return the number of active leaves
+	 */
+	public int numActiveLeaves() {
+		return m_NumActiveLeaves;
+	}
+
+	/**
+	 * Returns the number of leaves.
+	 *
+	 * @return the number of leaves, active or not
+	 */
+	public int numLeaves() {
+		return m_Leaves == null ? 0 : m_Leaves.size();
+	}
+
+	/**
+	 * Returns an enumeration describing the available options.
+	 *
+	 * @return an enumeration of all the available options.
+	 */
+	@Override
+	public Enumeration<Option> listOptions() {
+
+		Vector<Option> newVector = new Vector<Option>(5);
+
+		newVector.addElement(new Option("\tNumber of instances a leaf observes between split attempts\n"
+				+ "\t(default: 200).", "G", 1, "-G <grace period>"));
+		newVector.addElement(new Option("\tAllowable error in the split decision, delta in the Hoeffding\n"
+				+ "\tbound (default: 1e-7).", "E", 1, "-E <split confidence>"));
+		newVector.addElement(new Option("\tHoeffding bound below which a tie is broken by splitting\n"
+				+ "\t(default: 0.05).", "H", 1, "-H <tie threshold>"));
+		newVector.addElement(new Option("\tMaximum depth of the tree (default: 0, which means unlimited).", "depth",
+				1, "-depth <max depth>"));
+		newVector.addElement(new Option("\tMaximum number of active leaves, which keep counts\n"
+				+ "\t(default: 1000, 0 means unlimited).", "max-leaves", 1, "-max-leaves <num>"));
+
+		newVector.addAll(Collections.list(super.listOptions()));
+
+		return newVector.elements();
+	}
+
+	/**
+	 * Parses a given list of options.
+	 * <p/>
+	 *
+	 * <!-- options-start --> Valid options are:
+	 * <p/>
+	 *
+	 * <pre>
+	 * -G &lt;grace period&gt;
+	 *  Number of instances a leaf observes between split attempts
+	 *  (default: 200).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -E &lt;split confidence&gt;
+	 *  Allowable error in the split decision, delta in the Hoeffding
+	 *  bound (default: 1e-7).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -H &lt;tie threshold&gt;
+	 *  Hoeffding bound below which a tie is broken by splitting
+	 *  (default: 0.05).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -depth &lt;max depth&gt;
+	 *  Maximum depth of the tree (default: 0, which means unlimited).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -max-leaves &lt;num&gt;
+	 *  Maximum number of active leaves, which keep counts
+	 *  (default: 1000, 0 means unlimited).
+	 * </pre>
+	 *
+	 * <!-- options-end -->
+	 *
+	 * @param options the list of options as an array of strings
+	 * @throws Exception if an option is not supported
+	 */
+	@Override
+	public void setOptions(String[] options) throws Exception {
+
+		String tmpStr = Utils.getOption('G', options);
+		m_GracePeriod = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 200;
+
+		tmpStr = Utils.getOption('E', options);
+		m_SplitConfidence = tmpStr.length() != 0 ? Double.parseDouble(tmpStr) : 1e-7;
+
+		tmpStr = Utils.getOption('H', options);
+		m_TieThreshold = tmpStr.length() != 0 ? Double.parseDouble(tmpStr) : 0.05;
+
+		tmpStr = Utils.getOption("depth", options);
+		m_MaxDepth = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 0;
+
+		tmpStr = Utils.getOption("max-leaves", options);
+		m_MaxActiveLeaves = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 1000;
+
+		super.setOptions(options);
+	}
+
+	/**
+	 * Gets the current settings of the tree.
+	 *
+	 * @return an array of strings suitable for passing to setOptions
+	 */
+	@Override
+	public String[] getOptions() {
+
+		Vector<String> options = new Vector<String>(10);
+
+		options.add("-G");
+		options.add("" + m_GracePeriod);
+		options.add("-E");
+		options.add("" + m_SplitConfidence);
+		options.add("-H");
+		options.add("" + m_TieThreshold);
+		options.add("-depth");
+		options.add("" + m_MaxDepth);
+		options.add("-max-leaves");
+		options.add("" + m_MaxActiveLeaves);
+
+		Collections.addAll(options, super.getOptions());
+
+		return options.toArray(new String[0]);
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String gracePeriodTipText() {
+		return "The number of instances a leaf observes between split attempts.";
+	}
+
+	/**
+	 * Get the value of gracePeriod.
+	 *
+	 * @return Value of gracePeriod.
+	 */
+	public int getGracePeriod() {
+		return m_GracePeriod;
+	}
+
+	/**
+	 * Set the value of gracePeriod.
+	 *
+	 * @param v Value to assign to gracePeriod.
+	 */
+	public void setGracePeriod(int v) {
+		m_GracePeriod = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String splitConfidenceTipText() {
+		return "The allowable error in a split decision; values closer to zero take longer to decide.";
+	}
+
+	/**
+	 * Get the value of splitConfidence.
+	 *
+	 * @return Value of splitConfidence.
+	 */
+	public double getSplitConfidence() {
+		return m_SplitConfidence;
+	}
+
+	/**
+	 * Set the value of splitConfidence.
+	 *
+	 * @param v Value to assign to splitConfidence.
+	 */
+	public void setSplitConfidence(double v) {
+		m_SplitConfidence = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String tieThresholdTipText() {
+		return "The Hoeffding bound below which the best attribute is split on even if the runner-up is close.";
+	}
+
+	/**
+	 * Get the value of tieThreshold.
+	 *
+	 * @return Value of tieThreshold.
+	 */
+	public double getTieThreshold() {
+		return m_TieThreshold;
+	}
+
+	/**
+	 * Set the value of tieThreshold.
+	 *
+	 * @param v Value to assign to tieThreshold.
+	 */
+	public void setTieThreshold(double v) {
+		m_TieThreshold = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String maxDepthTipText() {
+		return "The maximum depth of the tree, 0 for unlimited.";
+	}
+
+	/**
+	 * Get the value of maxDepth.
+	 *
+	 * @return Value of maxDepth.
+	 */
+	public int getMaxDepth() {
+		return m_MaxDepth;
+	}
+
+	/**
+	 * Set the value of maxDepth.
+	 *
+	 * @param v Value to assign to maxDepth.
+	 */
+	public void setMaxDepth(int v) {
+		m_MaxDepth = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String maxActiveLeavesTipText() {
+		return "The maximum number of leaves that keep counts and may still be split, 0 for unlimited.";
+	}
+
+	/**
+	 * Get the value of maxActiveLeaves.
+	 *
+	 * @return Value of maxActiveLeaves.
+	 */
+	public int getMaxActiveLeaves() {
+		return m_MaxActiveLeaves;
+	}
+
+	/**
+	 * Set the value of maxActiveLeaves.
+	 *
+	 * @param v Value to assign to maxActiveLeaves.
+	 */
+	public void setMaxActiveLeaves(int v) {
+		m_MaxActiveLeaves = v;
+	}
+
+	/**
+	 * Prints the tree in the format of MyId3, followed by the size of the tree.
+	 *
+	 * @return a textual description of the classifier
+	 */
+	@Override
+	public String toString() {
+
+		if (m_Root == null) {
+			return "MyHoeffdingTree: No model built yet.";
+		}
+		StringBuffer text = new StringBuffer("MyHoeffdingTree\n");
+		toString(m_Root, 0, text);
+		text.append("\n\nInstances seen: " + Utils.doubleToString(m_NumSeen, 0) + "\nLeaves: " + numLeaves()
+				+ " (" + m_NumActiveLeaves + " active)\n");
+		return text.toString();
+	}
+
+	/**
+	 * Outputs a subtree at a certain level.
+	 */
+	private void toString(Node node, int level, StringBuffer text) {
+
+		if (node.m_Attribute < 0) {
+			if (Utils.sum(node.m_ClassCounts) == 0) {
+				text.append(": null");
+			} else {
+				text.append(": " + m_Header.classAttribute().value(Utils.maxIndex(node.m_ClassCounts)));
+			}
+			return;
+		}
+		Attribute attribute = m_Header.attribute(node.m_Attribute);
+		for (int j = 0; j < attribute.numValues(); j++) {
+			text.append("\n");
+			for (int i = 0; i < level; i++) {
+				text.append("|  ");
+			}
+			text.append(attribute.name() + " = " + attribute.value(j));
+			toString(node.m_Successors[j], level + 1, text);
+		}
+	}
+
+	/**
+	 * Returns the revision string.
+	 *
+	 * @return the revision
+	 */
+	@Override
+	public String getRevision() {
+		return RevisionUtils.extract("$Revision: 1 $");
+	}
+
+	/**
+	 * Main method for testing this class
+	 *
+	 * @param argv the commandline options
+	 */
+	public static void main(String[] argv) {
+		runClassifier(new MyHoeffdingTree(), argv);
+	}
+}
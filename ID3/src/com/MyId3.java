@@ -28,7 +28,10 @@ import weka.core.Drawable;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.NoSupportForMissingValuesException;
+import weka.core.Option;
 import weka.core.RevisionUtils;
+import weka.core.SelectedTag;
+import weka.core.Tag;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformationHandler;
 import weka.core.Utils;
@@ -36,8 +39,28 @@ import weka.core.Capabilities.Capability;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <!-- globalinfo-start --> Class for constructing an unpruned decision tree
@@ -70,6 +93,86 @@ import java.util.Map;
  * <p/>
  * 
  * <pre>
+ * -depth &lt;max depth&gt;
+ *  Maximum depth of the tree (default: 0, which means unlimited).
+ * </pre>
+ *
+ * <pre>
+ * -M &lt;minimum number of instances&gt;
+ *  Minimum number of instances at a node for it to be split
+ *  (default: 0).
+ * </pre>
+ *
+ * <pre>
+ * -G &lt;minimum gain&gt;
+ *  Minimum weighted information gain for a split (default: 0).
+ * </pre>
+ *
+ * <pre>
+ * -max-nodes &lt;num&gt;
+ *  Maximum number of nodes in the tree (default: 0, which means
+ *  unlimited).
+ * </pre>
+ *
+ * <pre>
+ * -R
+ *  Use reduced error pruning.
+ * </pre>
+ *
+ * <pre>
+ * -N &lt;number of folds&gt;
+ *  Number of folds for reduced error pruning, one of which is used
+ *  for pruning (default: 3).
+ * </pre>
+ *
+ * <pre>
+ * -Q &lt;seed&gt;
+ *  Seed for random data shuffling (default: 1).
+ * </pre>
+ *
+ * <pre>
+ * -S &lt;criterion&gt;
+ *  Split criterion: 0 = information gain, 1 = OneR-weighted
+ *  information gain, 2 = gain ratio among the attributes with
+ *  above-average gain, 3 = the same with OneR-weighted gain
+ *  (default: 3).
+ * </pre>
+ *
+ * <pre>
+ * -sample &lt;num&gt;
+ *  Choose the split of nodes with at least this many rows from a
+ *  growing random sample of them (default: 0, which means never).
+ * </pre>
+ *
+ * <pre>
+ * -sample-confidence &lt;delta&gt;
+ *  Allowable error when choosing a split from a sample
+ *  (default: 0.001).
+ * </pre>
+ *
+ * <pre>
+ * -min-weight &lt;weight&gt;
+ *  Only use attributes with at least this OneR weight (default: 0).
+ * </pre>
+ *
+ * <pre>
+ * -top-attributes &lt;num&gt;
+ *  Only use this many attributes with the highest OneR weights
+ *  (default: 0, which means all).
+ * </pre>
+ *
+ * <pre>
+ * -checkpoint &lt;file&gt;
+ *  Write checkpoints of the build to this file and resume from it
+ *  if it exists (default: none).
+ * </pre>
+ *
+ * <pre>
+ * -checkpoint-interval &lt;seconds&gt;
+ *  Time between checkpoints (default: 600).
+ * </pre>
+ *
+ * <pre>
  *  -D
  *  If set, classifier is run in debug mode and
  *  may output additional info to the console
@@ -82,15 +185,35 @@ import java.util.Map;
  */
 public class MyId3 extends AbstractClassifier implements TechnicalInformationHandler, Sourcable, Drawable {
 
-	private Map<String, Double> weights;
-
 	/** for serialization */
 	static final long serialVersionUID = -2693678647096322561L;
+
+	/** split on the attribute with the highest information gain */
+	public static final int SPLIT_INFO_GAIN = 0;
+
+	/** split on the highest information gain weighted by OneR accuracy */
+	public static final int SPLIT_WEIGHTED_GAIN = 1;
+
+	/** split on the highest gain ratio among attributes of above-average gain */
+	public static final int SPLIT_GAIN_RATIO = 2;
+
+	/** the same as SPLIT_GAIN_RATIO with OneR-weighted gains */
+	public static final int SPLIT_WEIGHTED_GAIN_RATIO = 3;
+
+	/** the split criteria */
+	public static final Tag[] TAGS_SPLIT = { new Tag(SPLIT_INFO_GAIN, "Information gain"),
+			new Tag(SPLIT_WEIGHTED_GAIN, "OneR-weighted information gain"),
+			new Tag(SPLIT_GAIN_RATIO, "Gain ratio above average gain"),
+			new Tag(SPLIT_WEIGHTED_GAIN_RATIO, "OneR-weighted gain ratio above average gain") };
+
+	/** the largest share of distinct rows for which duplicates are collapsed */
+	static final double MAX_DISTINCT_SHARE = 0.75;
+
 	/** the node's id */
 	private int m_id;
 
-	/** static count to assign the ids */
-	private static int ms_count = 0;
+	/** static count to assign the ids, shared by trees built in parallel */
+	private static final AtomicInteger ms_count = new AtomicInteger();
 	/** The node's successors. */
 	private MyId3[] m_Successors;
 
@@ -106,9 +229,15 @@ public class MyId3 extends AbstractClassifier implements TechnicalInformationHan
 	/** Class attribute of dataset. */
 	private Attribute m_ClassAttribute;
 
+	/** The options, only set at the root (see Settings). */
+	private Settings m_Settings;
+
+	/** Header of the training data, only set at the root of a built tree. */
+	private Instances m_Header;
+
 	public MyId3() {
 		// Assign ids to each node of the id3 tree
-		m_id = ms_count++;
+		m_id = ms_count.getAndIncrement();
 	}
 
 	/**
@@ -182,379 +311,2173 @@ public class MyId3 extends AbstractClassifier implements TechnicalInformationHan
 		// remove instances with missing class
 		data = new Instances(data);
 		data.deleteWithMissingClass();
+		m_Header = new Instances(data, 0);
+
+		// һڼٴ֦
+		Settings settings = settings();
+		Instances pruneData = null;
+		if (settings.reducedErrorPruning) {
+			data.randomize(new Random(settings.seed));
+			data.stratify(settings.numFolds);
+			pruneData = data.testCV(settings.numFolds, settings.numFolds - 1);
+			data = data.trainCV(settings.numFolds, settings.numFolds - 1);
+		}
 
-		MyOneR one_r = new MyOneR();
-		one_r.buildClassifier(data);
-		weights = one_r.getWeights();
+		grow(new EncodedInstances(data), settings);
 
-		makeTree(data, weights);
+		if (pruneData != null) {
+			EncodedInstances holdout = new EncodedInstances(pruneData);
+			prune(holdout, holdout.allRows(), 0, holdout.numInstances());
+		}
 	}
 
 	/**
-	 * Method for building an Id3 tree.
+	 * Builds the tree on data that is already encoded, as read by
+	 * ParallelArffLoader, without creating an Instance per row. Reduced-error
+	 * pruning is not supported, as the holdout is taken from instances.
 	 *
-	 * @param data the training data
-	 * @exception Exception if decision tree can't be built successfully
+	 * @param data the training data, without missing class values
+	 * @exception Exception if classifier can't be built successfully
 	 */
-	private void makeTree(Instances data, Map<String, Double> weights) throws Exception {
-
-		// Check if no instances have reached this node.
-		if (data.numInstances() == 0) {
-			m_Attribute = null;
-			m_ClassValue = Utils.missingValue();
-			m_Distribution = new double[data.numClasses()];
-			return;
-		}
-		// Compute attribute with maximum information gain.
-		// Դÿֻܴؼ
-		double[] infoGains = new double[data.numAttributes()];
+	public void buildClassifier(EncodedInstances data) throws Exception {
 
-		// ÿԵsplitInfo
-		double[] splitInfos = new double[data.numAttributes()];
-
-		// ֻԵö
-		Enumeration attEnum = data.enumerateAttributes();
-		// ÿһ
-		while (attEnum.hasMoreElements()) {
-			Attribute att = (Attribute) attEnum.nextElement();
-			// ÿһԵؼֵ
-			infoGains[att.index()] = computeInfoGain(data, att, weights);
-			splitInfos[att.index()] = computeSplitInfo(data, att, weights);
+		getCapabilities().testWithFail(data.header());
+		Settings settings = settings();
+		if (settings.reducedErrorPruning) {
+			throw new Exception("MyId3: reduced-error pruning needs the training data as instances.");
 		}
+		m_Header = new Instances(data.header(), 0);
+		grow(data, settings);
+	}
 
-		// ƽֵ
-		double avrEntr = 0;
-		int count = 0;
-		for (double infoGain : infoGains) {
-			avrEntr += infoGain;
-			count++;
-
-		}
-		avrEntr /= count;
-		// Ҵƽֵ棬ʲcandidates
-		boolean haveCandidates = false;
-		double[] candidates = new double[infoGains.length];
-		for (int i = 0; i < infoGains.length; i++) {
-			if (infoGains[i] > avrEntr) {
-				candidates[i] = infoGains[i] / splitInfos[i];
-				haveCandidates = true;
-			}
+	/**
+	 * Grows the tree on all rows of the encoded training data, resuming from
+	 * the checkpoint file if there is one.
+	 *
+	 * @param encoded  the training data
+	 * @param settings the options
+	 * @exception Exception if decision tree can't be built successfully
+	 */
+	private void grow(EncodedInstances encoded, Settings settings) throws Exception {
+
+		ScratchArena arena = new ScratchArena(encoded);
+		// duplicate rows are grown on once, with their multiplicity, unless too
+		// few of them repeat to outweigh the faster counting of unweighted rows
+		int[] rowCounts = new int[encoded.numInstances()];
+		int[] rows = encoded.distinctRows(rowCounts, (int) (encoded.numInstances() * MAX_DISTINCT_SHARE));
+		if (rows == null) {
+			rows = encoded.allRows();
+			rowCounts = null;
 		}
-		// Ľ2
-		// жϢػϢ
-		if (haveCandidates) {
-			m_Attribute = data.attribute(Utils.maxIndex(candidates));
+		if (settings.checkpointFile.length() == 0) {
+			makeTree(new BuildContext(arena, rows, rowCounts, oneRWeights(arena, rows, rowCounts), null, 0, settings));
 		} else {
-			m_Attribute = data.attribute(Utils.maxIndex(infoGains));
+			File file = new File(settings.checkpointFile);
+			Checkpoint checkpoint = file.exists() ? Checkpoint.read(file, m_Header, encoded.numInstances(),
+					checkpointOptions()) : null;
+			BuildContext context = new BuildContext(arena, rows, rowCounts,
+					checkpoint != null ? checkpoint.weights : oneRWeights(arena, rows, rowCounts), null, 0, settings);
+			context.checkpointFile = file;
+			context.checkpointInterval = settings.checkpointInterval * 1000000000L;
+			context.nextCheckpoint = System.nanoTime() + context.checkpointInterval;
+			context.resume = checkpoint;
+			makeTree(context);
+			Files.deleteIfExists(file.toPath());
 		}
-		 //m_Attribute = data.attribute(Utils.maxIndex(infoGains));
+	}
 
-		if (Utils.eq(infoGains[m_Attribute.index()], 0)) {
-			m_Attribute = null;
-			m_Distribution = new double[data.numClasses()];
-			Enumeration instEnum = data.enumerateInstances();
-			while (instEnum.hasMoreElements()) {
-				Instance inst = (Instance) instEnum.nextElement();
-				m_Distribution[(int) inst.classValue()]++;
-			}
-			Utils.normalize(m_Distribution);
-			m_ClassValue = Utils.maxIndex(m_Distribution);
-			m_ClassAttribute = data.classAttribute();
-		} else {
-			Instances[] splitData = splitData(data, m_Attribute);
-			m_Successors = new MyId3[m_Attribute.numValues()];
-			for (int j = 0; j < m_Attribute.numValues(); j++) {
-				m_Successors[j] = new MyId3();
-				m_Successors[j].makeTree(splitData[j], weights);
-			}
+	/**
+	 * Grows the tree on a subset of shared encoded data, as done for the members
+	 * of an ensemble. The attribute weights are the OneR accuracies on the
+	 * weighted rows, and if numFeatures is positive each node only evaluates
+	 * that many randomly chosen attributes.
+	 *
+	 * @param arena       the working storage, sized for the encoded training
+	 *                    data, which is not modified
+	 * @param rows        the indices of the rows to train on, reordered in place
+	 * @param rowCounts   the multiplicity of each row of data, or null for one
+	 * @param random      the random number generator for attribute sampling
+	 * @param numFeatures the number of attributes sampled per node, 0 for all
+	 * @throws Exception if decision tree can't be built successfully
+	 */
+	void buildTree(ScratchArena arena, int[] rows, int[] rowCounts, Random random, int numFeatures)
+			throws Exception {
+
+		makeTree(new BuildContext(arena, rows, rowCounts, oneRWeights(arena, rows, rowCounts),
+				numFeatures > 0 ? random : null, numFeatures, settings()));
+	}
+
+	/**
+	 * Grows the tree on a subset of shared encoded data with precomputed
+	 * attribute weights, taking the node counts from statistics shared with
+	 * other trees grown on the same rows, as done when comparing settings.
+	 * Reduced-error pruning is not applied, and attributes are neither
+	 * filtered by weight nor eliminated below nodes, as the statistics hold the
+	 * tables of all attributes.
+	 *
+	 * @param arena      the working storage, sized for the encoded training
+	 *                   data, which is not modified
+	 * @param rows       the indices of the rows to train on, reordered in place
+	 * @param weights    the OneR weights of the rows (see oneRWeights)
+	 * @param statistics the statistics of the root for these rows
+	 * @throws Exception if decision tree can't be built successfully
+	 */
+	void buildTree(ScratchArena arena, int[] rows, double[] weights, NodeStatistics statistics) throws Exception {
+
+		BuildContext context = new BuildContext(arena, rows, null, weights, null, 0, settings());
+		context.attributes = null;
+		context.numFiltered = 0;
+		context.statistics = new IdentityHashMap<MyId3, NodeStatistics>();
+		context.statistics.put(this, statistics);
+		makeTree(context);
+	}
+
+	/**
+	 * Grows the tree from counts taken elsewhere, one level at a time, as done
+	 * by DistributedId3 for rows spread over several processes. Each level's
+	 * counts are the sums of the counts of every shard, so the tree is the one
+	 * buildClassifier grows on all rows. Sampling is not used, as the counts
+	 * are exact anyway, and reduced-error pruning is not supported.
+	 *
+	 * @param header  the header of the training data, with the class set
+	 * @param counter the source of the counts
+	 * @throws Exception if decision tree can't be built successfully
+	 */
+	void buildTree(Instances header, LevelCounter counter) throws Exception {
+
+		getCapabilities().testWithFail(header);
+		Settings settings = settings();
+		if (settings.reducedErrorPruning) {
+			throw new Exception("MyId3: reduced-error pruning needs the rows of the holdout.");
 		}
+		m_Header = new Instances(header, 0);
+
+		// ЭԼûУֻñͷȷԺȡֵ
+		EncodedInstances data = new EncodedInstances(m_Header);
+		NodeStatistics root = new NodeStatistics();
+		counter.countRoot(root);
+		int numInstances = Utils.sum(root.classCounts());
+		BuildContext context = new BuildContext(new ScratchArena(data), new int[0], null,
+				oneRWeights(m_Header, root.counts(), numInstances), null, 0, settings);
+		context.log2 = Log2Table.upTo(numInstances);
+		context.counter = counter;
+		context.statistics = new IdentityHashMap<MyId3, NodeStatistics>();
+		context.statistics.put(this, root);
+		makeTree(context);
 	}
 
 	/**
-	 * Computes information gain for an attribute.
+	 * Computes the OneR weight of every attribute, the fraction of the rows the
+	 * attribute's OneR rule classifies correctly, from the contingency tables of
+	 * all rows. This gives the same weights as MyOneR on the training data, as
+	 * neither missing values nor numeric attributes can occur here.
 	 *
-	 * @param data the data for which info gain is to be computed
-	 * @param att  the attribute
-	 * @return the information gain for the given attribute and data
-	 * @throws Exception if computation fails
+	 * @param arena     the working storage, sized for the encoded data
+	 * @param rows      the row indices
+	 * @param rowCounts the multiplicity of each row, or null for one
+	 * @return the weights indexed by attribute, 1 for the class
 	 */
-	private double computeInfoGain(Instances data, Attribute att, Map<String, Double> weights) throws Exception {
-		// 㸸ĲȶǼ
-		double infoGain = computeEntropy(data);
-		// ǰԵÿһȡֵ
-		Instances[] splitData = splitData(data, att);
-		// 㵱ǰԣҲԻֺ󣬱ɵļءøڵؼ
-		for (int j = 0; j < att.numValues(); j++) {
-			if (splitData[j].numInstances() > 0) {
-				infoGain -= ((double) splitData[j].numInstances() / (double) data.numInstances())
-						* computeEntropy(splitData[j]);
+	static double[] oneRWeights(ScratchArena arena, int[] rows, int[] rowCounts) {
+		EncodedInstances data = arena.data();
+		int numClasses = data.numClasses();
+		int[] classCounts = arena.classCounts();
+		int[][] counts = arena.allCounts();
+		data.countClasses(rows, 0, rows.length, rowCounts, classCounts);
+		data.countNode(rows, 0, rows.length, rowCounts, classCounts, counts);
+		return oneRWeights(data.header(), counts, Utils.sum(classCounts));
+	}
+
+	/**
+	 * Computes the OneR weight of every attribute from the contingency tables
+	 * of all rows.
+	 *
+	 * @param header       the header of the rows, with the class set
+	 * @param counts       the tables indexed by attribute, null for the class
+	 * @param numInstances the number of rows counted
+	 * @return the weights indexed by attribute, 1 for the class
+	 */
+	static double[] oneRWeights(Instances header, int[][] counts, int numInstances) {
+		double[] weights = new double[counts.length];
+		for (int att = 0; att < weights.length; att++) {
+			Object event = counts[att] != null ? Id3Events.INSTANCE.beginWeight() : null;
+			weights[att] = counts[att] == null ? 1.0
+					: MyOneR.nominalAccuracy(counts[att], header.numClasses(), numInstances);
+			if (event != null) {
+				Id3Events.INSTANCE.endWeight(event, header.attribute(att).name(), weights[att], numInstances);
 			}
 		}
-		// Ľ1
-		infoGain *= weights.get(att.name());
-		return infoGain;
+		return weights;
 	}
 
 	/**
-	 * Classifies a given test instance using the decision tree.
+	 * Selects the attributes to grow a tree on by their OneR weight.
 	 *
-	 * @param instance the instance to be classified
-	 * @return the classification
-	 * @throws NoSupportForMissingValuesException if instance has missing values
+	 * @param data          the encoded data
+	 * @param weights       the OneR weights, indexed by attribute
+	 * @param minWeight     the smallest weight kept
+	 * @param topAttributes the number of attributes with the highest weights
+	 *                      kept, 0 for all
+	 * @return the indices of the attributes kept, in order, without the class
 	 */
-	public double classifyInstance(Instance instance) throws NoSupportForMissingValuesException {
+	static int[] filterAttributes(EncodedInstances data, double[] weights, double minWeight, int topAttributes) {
 
-		if (instance.hasMissingValue()) {
-			throw new NoSupportForMissingValuesException("Id3: no missing values, " + "please.");
+		int numKept = 0;
+		int[] kept = new int[data.numAttributes() - 1];
+		for (int att = 0; att < data.numAttributes(); att++) {
+			if (att != data.classIndex() && weights[att] >= minWeight) {
+				kept[numKept++] = att;
+			}
 		}
-		if (m_Attribute == null) {
-			return m_ClassValue;
-		} else {
-			return m_Successors[(int) instance.value(m_Attribute)].classifyInstance(instance);
+		if (topAttributes > 0 && topAttributes < numKept) {
+			// ȨشӸߵȨͬʱ±Сȣǰ topAttributes 
+			Integer[] order = new Integer[numKept];
+			for (int i = 0; i < numKept; i++) {
+				order[i] = kept[i];
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					int cmp = Double.compare(weights[b], weights[a]);
+					return cmp != 0 ? cmp : Integer.compare(a, b);
+				}
+			});
+			numKept = topAttributes;
+			for (int i = 0; i < numKept; i++) {
+				kept[i] = order[i];
+			}
+			Arrays.sort(kept, 0, numKept);
 		}
+		return numKept == kept.length ? kept : Arrays.copyOf(kept, numKept);
 	}
 
 	/**
-	 * Computes class distribution for instance using decision tree.
+	 * Method for building an Id3 tree. The tree is grown breadth-first, so a
+	 * limit on the number of nodes cuts off the deepest levels rather than the
+	 * last branches. Every queued node carries the attributes still worth
+	 * scoring in its subtree.
 	 *
-	 * @param instance the instance for which distribution is to be computed
-	 * @return the class distribution for the given instance
-	 * @throws NoSupportForMissingValuesException if instance has missing values
+	 * @param context the state shared by the whole build
+	 * @exception Exception if decision tree can't be built successfully
 	 */
-	public double[] distributionForInstance(Instance instance) throws NoSupportForMissingValuesException {
+	private void makeTree(BuildContext context) throws Exception {
 
-		if (instance.hasMissingValue()) {
-			throw new NoSupportForMissingValuesException("Id3: no missing values, " + "please.");
+		// չĽ㣬ÿӦ±еһ
+		ScratchArena.Frontier frontier = context.arena.frontier();
+		if (Id3Events.INSTANCE.subtreesEnabled()) {
+			// м¼¼ʱÿչĸ
+			context.subtrees = new IdentityHashMap<MyId3, Id3Events.SubtreeState>();
 		}
-		if (m_Attribute == null) {
-			return m_Distribution;
+		if (context.resume != null) {
+			resume(context, frontier);
 		} else {
-			return m_Successors[(int) instance.value(m_Attribute)].distributionForInstance(instance);
+			frontier.add(this, 0, context.rows.length, 0, context.attributes);
+			context.numNodes = 1;
+			if (context.subtrees != null) {
+				context.subtrees.put(this, null);
+			}
+		}
+		while (!frontier.isEmpty()) {
+			MyId3 node = frontier.poll();
+			int depth = frontier.depth();
+			Id3Events.SubtreeState subtree = null;
+			if (context.subtrees != null && context.subtrees.containsKey(node)) {
+				subtree = new Id3Events.SubtreeState(context.subtrees.remove(node), depth);
+			}
+			Object event = Id3Events.INSTANCE.beginSplit();
+			if (context.counter != null && context.statistics.get(node).classCounts() == null) {
+				// һȫ꣬һȡرнļ
+				int[] splits = new int[context.levelSplits.size()];
+				for (int i = 0; i < splits.length; i++) {
+					splits[i] = context.levelSplits.get(i);
+				}
+				context.counter.countLevel(splits,
+						context.levelSuccessors.toArray(new NodeStatistics[context.levelSuccessors.size()]));
+				context.levelSplits.clear();
+				context.levelSuccessors.clear();
+			}
+			int[] offsets = node.splitNode(context, frontier.start(), frontier.end(), depth, frontier.attributes());
+			if (event != null) {
+				Id3Events.INSTANCE.endSplit(event, depth, context.nodeInstances,
+						context.chosen < 0 ? null : context.data.header().attribute(context.chosen).name(),
+						context.chosen < 0 ? Double.NaN : context.gains[context.chosen], offsets != null,
+						context.chosen >= 0 && context.sampled);
+			}
+			if (subtree != null) {
+				subtree.split(context.nodeInstances, offsets == null ? 0 : node.m_Successors.length);
+				if (offsets != null) {
+					for (MyId3 successor : node.m_Successors) {
+						context.subtrees.put(successor, subtree);
+					}
+				}
+			}
+			if (context.counter != null) {
+				context.levelSplits.add(offsets == null ? -1 : node.m_Attribute.index());
+			}
+			if (offsets != null) {
+				for (int j = 0; j < node.m_Successors.length; j++) {
+					frontier.add(node.m_Successors[j], offsets[j], offsets[j + 1], depth + 1,
+							context.successorAttributes);
+					if (context.counter != null) {
+						context.levelSuccessors.add(context.statistics.get(node.m_Successors[j]));
+					}
+				}
+			}
+			if (context.checkpointFile != null && System.nanoTime() - context.nextCheckpoint >= 0) {
+				writeCheckpoint(context, frontier);
+				context.nextCheckpoint = System.nanoTime() + context.checkpointInterval;
+			}
 		}
 	}
 
 	/**
-	 * Prints the decision tree using the private toString method from below.
-	 *
-	 * @return a textual description of the classifier
+	 * The state of a build between two nodes: the tree grown so far, the nodes
+	 * waiting to be split with the rows reaching them, the OneR weights and the
+	 * state of the row sampling. The rows of split nodes and leaves are not
+	 * kept, so later checkpoints of a build get smaller.
 	 */
-	public String toString() {
+	private static class Checkpoint implements Serializable {
 
-		if ((m_Distribution == null) && (m_Successors == null)) {
-			return "Id3: No model built yet.";
-		}
-		return "Id3\n\n" + toString(0);
-	}
+		/** for serialization */
+		static final long serialVersionUID = -4410837765305727121L;
 
-	private double computeSplitInfo(Instances data, Attribute att, Map<String, Double> weights) throws Exception {
-		// 㸸ĲȶǼ
-		// ǰԵÿһȡֵ
-		Instances[] splitData = splitData(data, att);
+		/** The options affecting the tree, without the checkpoint options. */
+		String[] options;
 
-		// Ľ2
-		double splitInfo = 0;
-		for (int i = 0; i < splitData.length; i++) {
-			splitInfo -= splitData[i].size() * Utils.log2(splitData[i].size());
-		}
-		splitInfo /= (double) data.numInstances();
-		splitInfo += Utils.log2(data.numInstances());
+		/** The header of the training data. */
+		String header;
 
-		return splitInfo;
+		/** The number of training rows. */
+		int numInstances;
+
+		/** The root of the tree grown so far. */
+		MyId3 root;
+
+		/** The nodes waiting to be split, in the order of the frontier. */
+		MyId3[] pending;
+
+		/** The depth of each pending node. */
+		int[] depths;
+
+		/** The attributes scored in the subtree of each pending node, or null. */
+		int[][] attributes;
+
+		/** The number of rows of each pending node. */
+		int[] sizes;
+
+		/** The rows of the pending nodes, one range after the other. */
+		int[] rows;
+
+		/** The OneR weights of the attributes. */
+		double[] weights;
+
+		/** The number of nodes created so far. */
+		int numNodes;
+
+		/** The source of the row samples, or null. */
+		Random sampleRandom;
+
+		/**
+		 * Reads a checkpoint and checks that it was written for the same data and
+		 * options.
+		 *
+		 * @param file         the file to read
+		 * @param header       the header of the training data
+		 * @param numInstances the number of training rows
+		 * @param options      the options affecting the tree
+		 * @return the checkpoint
+		 * @throws Exception if the file can't be read or belongs to another build
+		 */
+		static Checkpoint read(File file, Instances header, int numInstances, String[] options) throws Exception {
+			Checkpoint checkpoint;
+			ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+			try {
+				checkpoint = (Checkpoint) in.readObject();
+			} finally {
+				in.close();
+			}
+			if (!checkpoint.header.equals(header.toString()) || checkpoint.numInstances != numInstances
+					|| !Arrays.equals(checkpoint.options, options)) {
+				throw new Exception("MyId3: checkpoint " + file + " was written for other data or options.");
+			}
+			return checkpoint;
+		}
 	}
 
 	/**
-	 * Computes the entropy of a dataset.
-	 * 
-	 * @param data the data for which entropy is to be computed
-	 * @return the entropy of the data's class distribution
-	 * @throws Exception if computation fails
+	 * Returns the options that affect the tree grown, which a checkpoint must
+	 * have been written with to be resumed.
+	 *
+	 * @return the options without the checkpoint options
 	 */
-	private double computeEntropy(Instances data) throws Exception {
+	private String[] checkpointOptions() {
+		List<String> options = new ArrayList<String>(Arrays.asList(getOptions()));
+		int i = options.indexOf("-checkpoint");
+		if (i >= 0) {
+			options.subList(i, i + 2).clear();
+		}
+		i = options.indexOf("-checkpoint-interval");
+		options.subList(i, i + 2).clear();
+		return options.toArray(new String[0]);
+	}
 
-		// ȡǩֻСá
-		double[] classCounts = new double[data.numClasses()];
-		// ö
-		Enumeration instEnum = data.enumerateInstances();
-		while (instEnum.hasMoreElements()) {
-			// ÿһ
-			Instance inst = (Instance) instEnum.nextElement();
-			// ͳǩϺûĿ
-			classCounts[(int) inst.classValue()]++;
+	/**
+	 * Writes a checkpoint of the build, replacing the previous one only once it
+	 * is complete, so that a build stopped while writing resumes from the one
+	 * before.
+	 *
+	 * @param context  the state shared by the whole build
+	 * @param frontier the nodes waiting to be split, unchanged on return
+	 * @throws IOException if the checkpoint can't be written
+	 */
+	private void writeCheckpoint(BuildContext context, ScratchArena.Frontier frontier) throws IOException {
+		Checkpoint checkpoint = new Checkpoint();
+		checkpoint.options = checkpointOptions();
+		checkpoint.header = m_Header.toString();
+		checkpoint.numInstances = context.data.numInstances();
+		checkpoint.root = this;
+		int size = frontier.size();
+		checkpoint.pending = new MyId3[size];
+		checkpoint.depths = new int[size];
+		checkpoint.attributes = new int[size][];
+		checkpoint.sizes = new int[size];
+		int[] starts = new int[size];
+		int numRows = 0;
+		// ȡչٰԭ˳Ż
+		for (int k = 0; k < size; k++) {
+			checkpoint.pending[k] = frontier.poll();
+			starts[k] = frontier.start();
+			checkpoint.sizes[k] = frontier.end() - frontier.start();
+			checkpoint.depths[k] = frontier.depth();
+			checkpoint.attributes[k] = frontier.attributes();
+			numRows += checkpoint.sizes[k];
 		}
-		// 
-		double entropy = 0;
-		for (int j = 0; j < data.numClasses(); j++) {
-			if (classCounts[j] > 0) {
-				entropy -= classCounts[j] * Utils.log2(classCounts[j]);
-			}
+		checkpoint.rows = new int[numRows];
+		int position = 0;
+		for (int k = 0; k < size; k++) {
+			frontier.add(checkpoint.pending[k], starts[k], starts[k] + checkpoint.sizes[k], checkpoint.depths[k],
+					checkpoint.attributes[k]);
+			System.arraycopy(context.rows, starts[k], checkpoint.rows, position, checkpoint.sizes[k]);
+			position += checkpoint.sizes[k];
 		}
-		entropy /= (double) data.numInstances();
-		return entropy + Utils.log2(data.numInstances());
+		checkpoint.weights = context.oneRWeights;
+		checkpoint.numNodes = context.numNodes;
+		checkpoint.sampleRandom = context.sampleRandom;
+
+		File temp = new File(context.checkpointFile.getPath() + ".tmp");
+		ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+		try {
+			out.writeObject(checkpoint);
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), context.checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
 	}
 
 	/**
-	 * Splits a dataset according to the values of a nominal attribute.
+	 * Continues a build from a checkpoint: takes over the tree grown so far and
+	 * queues the pending nodes, their rows copied to the start of the row
+	 * indices.
 	 *
-	 * @param data the data which is to be split
-	 * @param att  the attribute to be used for splitting
-	 * @return the sets of instances produced by the split
+	 * @param context  the state shared by the whole build, with the checkpoint
+	 *                 in resume
+	 * @param frontier the empty queue of nodes waiting to be split
 	 */
-	private Instances[] splitData(Instances data, Attribute att) {
-		// Եֵ
-		Instances[] splitData = new Instances[att.numValues()];
-		// ʼһ
-		for (int j = 0; j < att.numValues(); j++) {
-			splitData[j] = new Instances(data, data.numInstances());
+	private void resume(BuildContext context, ScratchArena.Frontier frontier) {
+		Checkpoint checkpoint = context.resume;
+		MyId3 root = checkpoint.root;
+		m_Successors = root.m_Successors;
+		m_Attribute = root.m_Attribute;
+		m_ClassValue = root.m_ClassValue;
+		m_Distribution = root.m_Distribution;
+		m_ClassAttribute = root.m_ClassAttribute;
+		restore(context);
+		System.arraycopy(checkpoint.rows, 0, context.rows, 0, checkpoint.rows.length);
+		int start = 0;
+		for (int k = 0; k < checkpoint.pending.length; k++) {
+			MyId3 node = checkpoint.pending[k] == root ? this : checkpoint.pending[k];
+			frontier.add(node, start, start + checkpoint.sizes[k], checkpoint.depths[k], checkpoint.attributes[k]);
+			start += checkpoint.sizes[k];
+		}
+		context.numNodes = checkpoint.numNodes;
+		if (checkpoint.sampleRandom != null) {
+			context.sampleRandom = checkpoint.sampleRandom;
 		}
-		// ͳƸûÿһȡֵĸ
-		Enumeration instEnum = data.enumerateInstances();
-		while (instEnum.hasMoreElements()) {
-			Instance inst = (Instance) instEnum.nextElement();
-			splitData[(int) inst.value(att)].add(inst);
+		context.resume = null;
+	}
+
+	/**
+	 * Gives the nodes of a subtree read from a checkpoint new ids, and shares
+	 * their distributions with the nodes still to be grown.
+	 *
+	 * @param context the state shared by the whole build
+	 */
+	private void restore(BuildContext context) {
+		m_id = ms_count.getAndIncrement();
+		if (m_Distribution != null) {
+			m_Distribution = context.distributions.intern(m_Distribution);
 		}
-		// listõڴֵĸ
-		for (int i = 0; i < splitData.length; i++) {
-			splitData[i].compactify();
+		if (m_Successors != null) {
+			for (MyId3 successor : m_Successors) {
+				successor.restore(context);
+			}
 		}
-		return splitData;
 	}
 
 	/**
-	 * Outputs a tree at a certain level.
+	 * Turns this node into a leaf or a split on the best attribute. The stopping
+	 * criteria that do not depend on the split are checked before any attribute
+	 * is evaluated.
 	 *
-	 * @param level the level at which the tree is to be printed
-	 * @return the tree as string at the given level
+	 * @param context the state shared by the whole build
+	 * @param start   the first position in the row indices that reaches this node
+	 * @param end     the position after the last one that reaches this node
+	 * @param depth      the depth of this node, 0 at the root
+	 * @param attributes the attributes to score, or null for all
+	 * @return the start position of each successor's rows followed by end, or
+	 *         null if the node became a leaf; the successors' attributes are
+	 *         then in context.successorAttributes
+	 * @exception Exception if decision tree can't be built successfully
 	 */
-	private String toString(int level) {
+	private int[] splitNode(BuildContext context, int start, int end, int depth, int[] attributes)
+			throws Exception {
 
-		StringBuffer text = new StringBuffer();
+		EncodedInstances data = context.data;
+		NodeStatistics statistics = context.statistics == null ? null : context.statistics.remove(this);
+		context.nodeInstances = 0;
+		context.chosen = -1;
 
-		if (m_Attribute == null) {
-			if (Utils.isMissingValue(m_ClassValue)) {
-				text.append(": null");
+		// Check if no instances have reached this node.
+		// ֲʽѵʱЭûУɻܵж
+		if (context.counter != null ? Utils.sum(statistics.classCounts()) == 0 : start == end) {
+			m_Attribute = null;
+			m_ClassValue = Utils.missingValue();
+			// Ҷӹͬһȫֲ
+			m_Distribution = context.emptyDistribution;
+			return null;
+		}
+
+		ScratchArena arena = context.arena;
+		int[] classCounts = statistics == null ? null : statistics.classCounts();
+		if (classCounts == null) {
+			classCounts = arena.classCounts();
+			data.countClasses(context.rows, start, end, context.rowCounts, classCounts);
+			if (statistics != null) {
+				classCounts = statistics.setClassCounts(classCounts);
+			}
+		}
+		int numInstances = Utils.sum(classCounts);
+		context.nodeInstances = numInstances;
+
+		// Ԥ֦ȡѴ޻ѴʱֱҶ
+		if ((context.maxDepth > 0 && depth >= context.maxDepth) || numInstances < context.minNum
+				|| (context.maxNodes > 0 && context.numNodes >= context.maxNodes)
+				|| classCounts[Utils.maxIndex(classCounts)] == numInstances) {
+			makeLeaf(context, classCounts);
+			return null;
+		}
+
+		// һαͳÿԵ (ȡֵ, ) ϡֻʷĬֵ
+		int[][] counts = statistics == null ? null : statistics.counts();
+		if (counts != null && attributes != null) {
+			// ܵļԣֻȽϱ
+			int[][] all = counts;
+			counts = new int[all.length][];
+			for (int att : attributes) {
+				counts[att] = all[att];
+			}
+		}
+		int best = -1;
+		if (counts == null) {
+			if (attributes != null) {
+				counts = arena.counts(attributes);
+			} else if (context.random == null) {
+				counts = arena.allCounts();
 			} else {
-				text.append(": " + m_ClassAttribute.value((int) m_ClassValue));
+				// ɭ֣ÿֻȡ numFeatures ԲȽ
+				counts = arena.sampledCounts(context.random, context.numFeatures);
 			}
-		} else {
-			for (int j = 0; j < m_Attribute.numValues(); j++) {
-				text.append("\n");
-				for (int i = 0; i < level; i++) {
-					text.append("|  ");
+			if (context.sampleRandom != null && statistics == null && end - start >= context.sampleThreshold) {
+				// 㣺Ϲƻ
+				best = chooseFromSample(context, start, end, counts);
+			}
+			context.sampled = best >= 0;
+			if (best < 0) {
+				data.countNode(context.rows, start, end, context.rowCounts, classCounts, counts);
+				if (statistics != null) {
+					counts = statistics.setCounts(counts);
 				}
-				text.append(m_Attribute.name() + " = " + m_Attribute.value(j));
-				text.append(m_Successors[j].toString(level + 1));
 			}
 		}
-		return text.toString();
+		if (best < 0) {
+			best = chooseAttribute(context, classCounts, numInstances, counts);
+		}
+		m_Attribute = data.header().attribute(best);
+		context.chosen = best;
+
+		double gain = context.gains[m_Attribute.index()];
+		if (Utils.eq(gain, 0) || gain < context.minGain
+				|| (context.maxNodes > 0 && context.numNodes + m_Attribute.numValues() > context.maxNodes)) {
+			makeLeaf(context, classCounts);
+			return null;
+		}
+
+		if (context.keepDistributions) {
+			// ֦ʱڲܱҶӣȼֲ
+			setDistribution(context, classCounts);
+		}
+		if (attributes != null) {
+			// ǾȷʱֻһȡֵҲ
+			context.successorAttributes = liveAttributes(attributes, m_Attribute.index(),
+					context.sampled ? null : counts, data.numClasses());
+		}
+		// Եȡֵԭ±꣬ÿӽӦһ
+		int[] offsets = context.counter != null ? new int[m_Attribute.numValues() + 1]
+				: arena.partition(context.rows, start, end, m_Attribute.index());
+		m_Successors = new MyId3[m_Attribute.numValues()];
+		for (int j = 0; j < m_Attribute.numValues(); j++) {
+			m_Successors[j] = new MyId3();
+		}
+		context.numNodes += m_Successors.length;
+		if (context.counter != null) {
+			// ÿļ꼴ڸͳ
+			for (int j = 0; j < m_Successors.length; j++) {
+				context.statistics.put(m_Successors[j], new NodeStatistics());
+			}
+		} else if (statistics != null) {
+			NodeStatistics[] successors = statistics.successors(m_Attribute.index(), m_Successors.length);
+			for (int j = 0; j < m_Successors.length; j++) {
+				context.statistics.put(m_Successors[j], successors[j]);
+			}
+		}
+		return offsets;
 	}
 
 	/**
-	 * Adds this tree recursively to the buffer.
-	 * 
-	 * @param id     the unqiue id for the method
-	 * @param buffer the buffer to add the source code to
-	 * @return the last ID being used
-	 * @throws Exception if something goes wrong
+	 * Returns the attributes worth scoring below a split node: those scored at
+	 * the node, except the split attribute and the attributes with a single
+	 * value among the node's rows, which have no gain in any subset of them.
+	 *
+	 * @param attributes the attributes scored at the node
+	 * @param split      the split attribute
+	 * @param counts     the node's contingency tables, or null if they were
+	 *                   taken from a sample and cannot show which attributes
+	 *                   are constant
+	 * @param numClasses the number of classes
+	 * @return the attributes, the given array itself if none was dropped
 	 */
-	protected int toSource(int id, StringBuffer buffer) throws Exception {
-		int result;
-		int i;
-		int newID;
-		StringBuffer[] subBuffers;
-
-		buffer.append("\n");
-		buffer.append("  protected static double node" + id + "(Object[] i) {\n");
-
-		// leaf?
-		if (m_Attribute == null) {
-			result = id;
-			if (Double.isNaN(m_ClassValue)) {
-				buffer.append("    return Double.NaN;");
-			} else {
-				buffer.append("    return " + m_ClassValue + ";");
+	private static int[] liveAttributes(int[] attributes, int split, int[][] counts, int numClasses) {
+
+		int numLive = 0;
+		boolean[] live = new boolean[attributes.length];
+		for (int i = 0; i < attributes.length; i++) {
+			int att = attributes[i];
+			if (att == split) {
+				continue;
 			}
-			if (m_ClassAttribute != null) {
-				buffer.append(" // " + m_ClassAttribute.value((int) m_ClassValue));
+			if (counts != null) {
+				int[] table = counts[att];
+				int numValues = 0;
+				for (int v = 0; v < table.length && numValues < 2; v += numClasses) {
+					for (int c = 0; c < numClasses; c++) {
+						if (table[v + c] != 0) {
+							numValues++;
+							break;
+						}
+					}
+				}
+				if (numValues < 2) {
+					continue;
+				}
 			}
-			buffer.append("\n");
-			buffer.append("  }\n");
-		} else {
-			buffer.append("    checkMissing(i, " + m_Attribute.index() + ");\n\n");
-			buffer.append("    // " + m_Attribute.name() + "\n");
+			live[i] = true;
+			numLive++;
+		}
+		if (numLive == attributes.length) {
+			return attributes;
+		}
+		int[] result = new int[numLive];
+		for (int i = 0, k = 0; i < attributes.length; i++) {
+			if (live[i]) {
+				result[k++] = attributes[i];
+			}
+		}
+		return result;
+	}
 
-			// subtree calls
-			subBuffers = new StringBuffer[m_Attribute.numValues()];
-			newID = id;
-			for (i = 0; i < m_Attribute.numValues(); i++) {
-				newID++;
+	/**
+	 * Scores the attributes of a node by the split criterion and chooses the
+	 * best one. The gains are left in context.gains.
+	 *
+	 * @param context      the state shared by the whole build
+	 * @param classCounts  the class counts of the node's instances
+	 * @param numInstances the number of instances counted
+	 * @param counts       the contingency tables, null for the attributes not
+	 *                     evaluated
+	 * @return the index of the chosen attribute
+	 * @exception Exception if the computation fails
+	 */
+	private int chooseAttribute(BuildContext context, int[] classCounts, int numInstances, int[][] counts)
+			throws Exception {
 
-				buffer.append("    ");
-				if (i > 0) {
-					buffer.append("else ");
+		int numClasses = context.data.numClasses();
+
+		// Compute attribute with maximum information gain.
+		// Դÿֻܴؼ
+		double[] infoGains = context.arena.infoGains();
+		context.gains = infoGains;
+
+		// ÿԵsplitInfo
+		double[] splitInfos = context.arena.splitInfos();
+		context.splitInfos = splitInfos;
+
+		double parentEntropy = computeEntropy(context.log2, classCounts, 0, numClasses, numInstances);
+		// ÿһ
+		for (int att = 0; att < counts.length; att++) {
+			if (counts[att] == null) {
+				continue;
+			}
+			// ÿһԵؼֵ
+			infoGains[att] = computeInfoGain(context.log2, counts[att], numClasses, parentEntropy, numInstances,
+					context.weights == null ? 1.0 : context.weights[att]);
+			if (context.gainRatio) {
+				splitInfos[att] = computeSplitInfo(context.log2, counts[att], numClasses, numInstances);
+			}
+		}
+
+		if (!context.gainRatio) {
+			return Utils.maxIndex(infoGains);
+		}
+		return chooseByGainRatio(context, counts, infoGains, splitInfos);
+	}
+
+	/**
+	 * Chooses the split attribute of a large node from a sample of its rows. The
+	 * sample starts at about half the sampling threshold and is doubled until
+	 * the Hoeffding bound separates the chosen attribute from the runner-up. If
+	 * that has not happened by the time the sample holds an eighth of the rows,
+	 * the attributes are too close to tell apart cheaply and the node is left to
+	 * exact counting, as are nodes too small to sample an eighth of.
+	 * <p/>
+	 * The first sample takes every step-th row of the node from a random
+	 * offset, with step a power of two, and every round halves the step by
+	 * adding the rows halfway between those taken so far. Each round thus only
+	 * reads its own rows, in their order in the node, and the node's rows are
+	 * not reordered.
+	 *
+	 * @param context the state shared by the whole build
+	 * @param start   the first position in the row indices that reaches the node
+	 * @param end     the position after the last one that reaches the node
+	 * @param counts  the zeroed contingency tables to evaluate, null for the
+	 *                other attributes; filled in with the sample's counts, or
+	 *                zeroed again if no attribute is chosen
+	 * @return the index of the chosen attribute, or -1 to count all rows
+	 * @exception Exception if the computation fails
+	 */
+	private int chooseFromSample(BuildContext context, int start, int end, int[][] counts) throws Exception {
+
+		EncodedInstances data = context.data;
+		int[] rows = context.rows;
+		int[] sample = context.arena.sortedRows();
+		int[] classCounts = context.arena.sampleClassCounts();
+		int numRows = end - start;
+		// ȡֵΧOneR Ȩز 1
+		double range = Utils.log2(data.numClasses());
+		double logConfidence = Math.log(1 / context.sampleConfidence);
+
+		// һÿ step ȡһУ֮ÿֲ룬ȡее
+		int step = Integer.highestOneBit(Math.max(1, numRows / Math.max(1, context.sampleThreshold / 2)));
+		if (step < 8) {
+			return -1;
+		}
+		int offset = context.sampleRandom.nextInt(step);
+		int stride = step;
+		int from = offset;
+		while (true) {
+			int size = 0;
+			for (int pos = from; pos < numRows; pos += stride) {
+				sample[size++] = rows[start + pos];
+			}
+			// ۼӵģֻͳƱ¼
+			data.countClasses(sample, 0, size, context.rowCounts, classCounts);
+			data.countNode(sample, 0, size, context.rowCounts, classCounts, counts);
+			int numInstances = Utils.sum(classCounts);
+			int att = chooseAttribute(context, classCounts, numInstances, counts);
+			// ԱȽϣѡʱ splitInfo
+			double[] scores = context.gains;
+			double bound = range * Math.sqrt(logConfidence / (2.0 * numInstances));
+			if (context.gainRatio && context.ratios[att] > 0) {
+				scores = context.ratios;
+			}
+			int second = -1;
+			for (int other = 0; other < scores.length; other++) {
+				//  Utils.maxIndex һNaN Ƚ
+				if (other != att && counts[other] != null && !Double.isNaN(scores[other])
+						&& (second < 0 || scores[other] > scores[second])) {
+					second = other;
 				}
-				buffer.append(
-						"if (((String) i[" + m_Attribute.index() + "]).equals(\"" + m_Attribute.value(i) + "\"))\n");
-				buffer.append("      return node" + newID + "(i);\n");
+			}
+			if (second < 0) {
+				return att;
+			}
+			if (scores == context.ratios) {
+				double splitInfo = context.splitInfos[att];
+				if (scores[second] > 0) {
+					splitInfo = Math.min(splitInfo, context.splitInfos[second]);
+				}
+				bound /= splitInfo;
+			}
+			if (scores[att] - scores[second] > bound) {
+				return att;
+			}
+			if (step == 8) {
+				// Ѵ˷֮һ޷֣Ϊȷͳ
+				for (int[] table : counts) {
+					if (table != null) {
+						Arrays.fill(table, 0);
+					}
+				}
+				return -1;
+			}
+			stride = step;
+			step >>= 1;
+			from = (offset + step) % stride;
+		}
+	}
 
-				subBuffers[i] = new StringBuffer();
-				newID = m_Successors[i].toSource(newID, subBuffers[i]);
+	/**
+	 * Chooses the attribute with the highest gain ratio among those whose gain
+	 * is above the average, or the one with the highest gain if there are none.
+	 *
+	 * @param context    the state shared by the whole build
+	 * @param counts     the contingency tables evaluated, null for the others
+	 * @param infoGains  the information gain of every attribute
+	 * @param splitInfos the split info of every attribute
+	 * @return the index of the chosen attribute
+	 */
+	private int chooseByGainRatio(BuildContext context, int[][] counts, double[] infoGains, double[] splitInfos) {
+
+		// ƽֵȡʱֻԳеƽ
+		// бų԰ 0 룬 OneR ȨɸԲ
+		double avrEntr = 0;
+		int count = 0;
+		for (int i = 0; i < infoGains.length; i++) {
+			if (context.random == null || counts[i] != null) {
+				avrEntr += infoGains[i];
+				count++;
 			}
-			buffer.append("    else\n");
-			buffer.append("      throw new IllegalArgumentException(\"Value '\" + i[" + m_Attribute.index()
-					+ "] + \"' is not allowed!\");\n");
-			buffer.append("  }\n");
+		}
+		if (context.random == null) {
+			count -= context.numFiltered;
+		}
+		avrEntr /= count;
+		// Ҵƽֵ棬ʲcandidates
+		boolean haveCandidates = false;
+		double[] candidates = context.arena.candidates();
+		context.ratios = candidates;
+		for (int i = 0; i < infoGains.length; i++) {
+			if (infoGains[i] > avrEntr) {
+				candidates[i] = infoGains[i] / splitInfos[i];
+				haveCandidates = true;
+			}
+		}
+		// Ľ2
+		// жϢػϢ
+		if (haveCandidates) {
+			return Utils.maxIndex(candidates);
+		}
+		return Utils.maxIndex(infoGains);
+	}
 
-			// output subtree code
-			for (i = 0; i < m_Attribute.numValues(); i++) {
-				buffer.append(subBuffers[i].toString());
+	/**
+	 * Makes this node a leaf predicting the majority class of its instances.
+	 *
+	 * @param context     the state shared by the whole build
+	 * @param classCounts the class counts of the node's instances, not all zero
+	 */
+	private void makeLeaf(BuildContext context, int[] classCounts) {
+		m_Attribute = null;
+		setDistribution(context, classCounts);
+	}
+
+	/**
+	 * Sets the normalized class distribution, class value and class attribute.
+	 *
+	 * @param context     the state shared by the whole build
+	 * @param classCounts the class counts of the node's instances, not all zero
+	 */
+	private void setDistribution(BuildContext context, int[] classCounts) {
+		m_Distribution = new double[classCounts.length];
+		for (int j = 0; j < classCounts.length; j++) {
+			m_Distribution[j] = classCounts[j];
+		}
+		Utils.normalize(m_Distribution);
+		// ͬҶӷֲ紿㣩һ
+		m_Distribution = context.distributions.intern(m_Distribution);
+		m_ClassValue = Utils.maxIndex(m_Distribution);
+		m_ClassAttribute = context.data.header().classAttribute();
+	}
+
+	/**
+	 * Reduced-error pruning: replaces every subtree by a leaf if that does not
+	 * increase the number of errors on the holdout data, working bottom-up.
+	 *
+	 * @param holdout the encoded pruning data
+	 * @param rows    the holdout row indices, reordered in place
+	 * @param start   the first position in rows that reaches this node
+	 * @param end     the position after the last one that reaches this node
+	 * @return the number of holdout errors of the (pruned) subtree
+	 */
+	private int prune(EncodedInstances holdout, int[] rows, int start, int end) {
+
+		// ѱ㵱ҶʱϵĴ
+		int leafErrors = 0;
+		for (int i = start; i < end; i++) {
+			if (Utils.isMissingValue(m_ClassValue) || holdout.classValue(rows[i]) != (int) m_ClassValue) {
+				leafErrors++;
 			}
-			subBuffers = null;
+		}
+		if (m_Attribute == null) {
+			return leafErrors;
+		}
 
-			result = newID;
+		int[] offsets = holdout.partition(rows, start, end, m_Attribute.index());
+		int subtreeErrors = 0;
+		for (int j = 0; j < m_Successors.length; j++) {
+			subtreeErrors += m_Successors[j].prune(holdout, rows, offsets[j], offsets[j + 1]);
+		}
+		if (leafErrors <= subtreeErrors) {
+			m_Attribute = null;
+			m_Successors = null;
+			return leafErrors;
 		}
+		m_Distribution = null;
+		return subtreeErrors;
+	}
 
-		return result;
+	/**
+	 * State shared by all nodes while a tree is grown.
+	 */
+	private static class BuildContext {
+
+		/** The encoded training data. */
+		final EncodedInstances data;
+
+		/** The working storage reused at every node. */
+		final ScratchArena arena;
+
+		/** The row indices, partitioned in place while splitting. */
+		final int[] rows;
+
+		/** The multiplicity of each row, null if every row counts once. */
+		final int[] rowCounts;
+
+		/** The OneR weight of each attribute, null if gains are not weighted. */
+		final double[] weights;
+
+		/** The OneR weight of each attribute, whether gains are weighted or not. */
+		final double[] oneRWeights;
+
+		/** Whether the split is chosen by gain ratio rather than gain. */
+		final boolean gainRatio;
+
+		/** The shared statistics of the nodes waiting to be split, or null. */
+		Map<MyId3, NodeStatistics> statistics;
+
+		/** The source of the counts of each level, null to count the rows here. */
+		LevelCounter counter;
+
+		/** The split attribute, or -1, of each node of the level being split. */
+		final List<Integer> levelSplits = new ArrayList<Integer>();
+
+		/** The statistics of the successors of the level being split, in order. */
+		final List<NodeStatistics> levelSuccessors = new ArrayList<NodeStatistics>();
+
+		/** The gains computed at the current node, indexed by attribute. */
+		double[] gains;
+
+		/** The split infos computed at the current node, if gainRatio. */
+		double[] splitInfos;
+
+		/** The gain ratios of the current node's candidates, if gainRatio. */
+		double[] ratios;
+
+		/** Source of the row samples of large nodes, null to count all rows. */
+		Random sampleRandom;
+
+		/** Minimum number of rows of a node for its split to be sampled. */
+		final int sampleThreshold;
+
+		/** Allowable error when choosing a split from a sample. */
+		final double sampleConfidence;
+
+		/** Whether the current node's split was chosen from a sample. */
+		boolean sampled;
+
+		/**
+		 * The attributes scored at the root, those passing the OneR weight
+		 * filter; null to score all attributes at every node.
+		 */
+		int[] attributes;
+
+		/** The number of attributes dropped by the OneR weight filter. */
+		int numFiltered;
+
+		/** The attributes the successors of the last split node score. */
+		int[] successorAttributes;
+
+		/** Source of the per-node attribute samples, null to use all attributes. */
+		final Random random;
+
+		/** The number of attributes sampled per node. */
+		final int numFeatures;
+
+		/** The distinct leaf distributions of the tree. */
+		final DistributionPool distributions = new DistributionPool();
+
+		/** The distribution shared by all empty leaves. */
+		final double[] emptyDistribution;
+
+		/** Maximum depth, 0 for unlimited. */
+		final int maxDepth;
+
+		/** Minimum number of instances for a node to be split. */
+		final int minNum;
+
+		/** Minimum weighted gain for a node to be split. */
+		final double minGain;
+
+		/** Maximum number of nodes, 0 for unlimited. */
+		final int maxNodes;
+
+		/** Whether split nodes keep their class distribution for pruning. */
+		final boolean keepDistributions;
+
+		/** The number of nodes created so far. */
+		int numNodes;
+
+		/** log2 and n * log2(n) for all counts up to the number of instances. */
+		Log2Table log2;
+
+		/** The file checkpoints are written to, null for none. */
+		File checkpointFile;
+
+		/** Nanoseconds between checkpoints. */
+		long checkpointInterval;
+
+		/** The time of the next checkpoint, from System.nanoTime(). */
+		long nextCheckpoint;
+
+		/** The checkpoint the build resumes from, null to start at the root. */
+		Checkpoint resume;
+
+		/** The number of rows of the node last split. */
+		int nodeInstances;
+
+		/** The attribute chosen at the node last split, -1 if none was scored. */
+		int chosen;
+
+		/**
+		 * The subtree each queued node belongs to, null for the root, while
+		 * subtree events are recorded; null otherwise.
+		 */
+		Map<MyId3, Id3Events.SubtreeState> subtrees;
+
+		BuildContext(ScratchArena arena, int[] rows, int[] rowCounts, double[] weights, Random random,
+				int numFeatures, Settings settings) {
+			this.arena = arena;
+			arena.reset();
+			data = arena.data();
+			this.rows = rows;
+			this.rowCounts = rowCounts;
+			boolean weighted = settings.splitCriterion == SPLIT_WEIGHTED_GAIN
+					|| settings.splitCriterion == SPLIT_WEIGHTED_GAIN_RATIO;
+			this.weights = weighted ? weights : null;
+			oneRWeights = weights;
+			gainRatio = settings.splitCriterion == SPLIT_GAIN_RATIO
+					|| settings.splitCriterion == SPLIT_WEIGHTED_GAIN_RATIO;
+			this.random = random;
+			this.numFeatures = numFeatures;
+			emptyDistribution = distributions.intern(new double[data.numClasses()]);
+			maxDepth = settings.maxDepth;
+			minNum = settings.minNum;
+			minGain = settings.minGain;
+			maxNodes = settings.maxNodes;
+			keepDistributions = settings.reducedErrorPruning;
+			sampleRandom = settings.sampleThreshold > 0 ? new Random(settings.seed) : null;
+			sampleThreshold = settings.sampleThreshold;
+			sampleConfidence = settings.sampleConfidence;
+			if (random == null) {
+				attributes = filterAttributes(data, weights, settings.minWeight, settings.topAttributes);
+				numFiltered = data.numAttributes() - 1 - attributes.length;
+			}
+			int numInstances = rows.length;
+			if (rowCounts != null) {
+				numInstances = 0;
+				for (int row : rows) {
+					numInstances += rowCounts[row];
+				}
+			}
+			log2 = Log2Table.upTo(numInstances);
+		}
 	}
 
 	/**
-	 * Returns a string that describes the classifier as source. The classifier will
-	 * be contained in a class with the given name (there may be auxiliary classes),
-	 * and will contain a method with the signature:
-	 * 
-	 * <pre>
-	 * <code>
-	 * public static double classify(Object[] i);
-	 * </code>
-	 * </pre>
-	 * 
-	 * where the array <code>i</code> contains elements that are either Double,
-	 * String, with missing values represented as null. The generated code is public
-	 * domain and comes with no warranty. <br/>
-	 * Note: works only if class attribute is the last attribute in the dataset.
+	 * The options of the classifier. Every node of the tree is a MyId3 as well,
+	 * so the options are kept in one object referenced by the root only.
+	 */
+	private static class Settings implements Serializable {
+
+		/** for serialization */
+		static final long serialVersionUID = 7093466238107493547L;
+
+		/** Maximum depth of the tree, 0 for unlimited. */
+		int maxDepth = 0;
+
+		/** Minimum number of instances for a node to be split. */
+		int minNum = 0;
+
+		/** Minimum weighted gain for a node to be split. */
+		double minGain = 0;
+
+		/** Maximum number of nodes, 0 for unlimited. */
+		int maxNodes = 0;
+
+		/** Whether reduced-error pruning is used. */
+		boolean reducedErrorPruning = false;
+
+		/** Number of folds, one of which is held out for pruning. */
+		int numFolds = 3;
+
+		/** Seed for shuffling the data before the holdout is taken. */
+		int seed = 1;
+
+		/** The split criterion, one of the SPLIT_ constants. */
+		int splitCriterion = SPLIT_WEIGHTED_GAIN_RATIO;
+
+		/** Minimum number of rows of a node for its split to be sampled, 0 for never. */
+		int sampleThreshold = 0;
+
+		/** Allowable error when choosing a split from a sample. */
+		double sampleConfidence = 1e-3;
+
+		/** Smallest OneR weight of an attribute to be used. */
+		double minWeight = 0;
+
+		/** Number of attributes with the highest OneR weights used, 0 for all. */
+		int topAttributes = 0;
+
+		/** The file checkpoints are written to and resumed from, empty for none. */
+		String checkpointFile = "";
+
+		/** Seconds between checkpoints. */
+		int checkpointInterval = 600;
+	}
+
+	/**
+	 * Returns the options, creating the defaults if none were set.
 	 *
-	 * @param className the name that should be given to the source class.
-	 * @return the object source described by a string
-	 * @throws Exception if the source can't be computed
+	 * @return the settings of this classifier
 	 */
-	public String toSource(String className) throws Exception {
-		StringBuffer result;
-		int id;
+	private Settings settings() {
+		if (m_Settings == null) {
+			m_Settings = new Settings();
+		}
+		return m_Settings;
+	}
 
-		result = new StringBuffer();
+	/**
+	 * Computes information gain for an attribute.
+	 *
+	 * @param log2          the logarithm table covering the node's counts
+	 * @param counts        the attribute's (value, class) counts
+	 * @param numClasses    the number of classes
+	 * @param parentEntropy the entropy of the node's class distribution
+	 * @param numInstances  the number of instances at the node
+	 * @param weight        the OneR weight of the attribute
+	 * @return the information gain for the given attribute and data
+	 * @throws Exception if computation fails
+	 */
+	private double computeInfoGain(Log2Table log2, int[] counts, int numClasses, double parentEntropy,
+			int numInstances, double weight) throws Exception {
+		// 㸸ĲȶǼ
+		double infoGain = parentEntropy;
+		// 㵱ǰԣҲԻֺ󣬱ɵļءøڵؼ
+		for (int j = 0; j < counts.length; j += numClasses) {
+			int size = 0;
+			for (int c = 0; c < numClasses; c++) {
+				size += counts[j + c];
+			}
+			if (size > 0) {
+				infoGain -= ((double) size / (double) numInstances)
+						* computeEntropy(log2, counts, j, numClasses, size);
+			}
+		}
+		// Ľ1
+		infoGain *= weight;
+		return infoGain;
+	}
 
-		result.append("class " + className + " {\n");
-		result.append("  private static void checkMissing(Object[] i, int index) {\n");
-		result.append("    if (i[index] == null)\n");
-		result.append("      throw new IllegalArgumentException(\"Null values " + "are not allowed!\");\n");
-		result.append("  }\n\n");
-		result.append("  public static double classify(Object[] i) {\n");
-		id = 0;
-		result.append("    return node" + id + "(i);\n");
-		result.append("  }\n");
-		toSource(id, result);
-		result.append("}\n");
+	/**
+	 * Classifies a given test instance using the decision tree.
+	 *
+	 * @param instance the instance to be classified
+	 * @return the classification
+	 * @throws NoSupportForMissingValuesException if instance has missing values
+	 */
+	public double classifyInstance(Instance instance) throws NoSupportForMissingValuesException {
 
-		return result.toString();
+		if (instance.hasMissingValue()) {
+			throw new NoSupportForMissingValuesException("Id3: no missing values, " + "please.");
+		}
+		return leafFor(instance).m_ClassValue;
+	}
+
+	/**
+	 * Computes class distribution for instance using decision tree.
+	 *
+	 * @param instance the instance for which distribution is to be computed
+	 * @return the class distribution for the given instance
+	 * @throws NoSupportForMissingValuesException if instance has missing values
+	 */
+	public double[] distributionForInstance(Instance instance) throws NoSupportForMissingValuesException {
+
+		if (instance.hasMissingValue()) {
+			throw new NoSupportForMissingValuesException("Id3: no missing values, " + "please.");
+		}
+		return leafFor(instance).m_Distribution;
+	}
+
+	/**
+	 * Follows the instance down to its leaf. The missing value check is done
+	 * once by the caller rather than at every level, which for sparse instances
+	 * would mean a scan of all stored values per node. A sample of the calls is
+	 * recorded as Score events if they are enabled in a flight recording.
+	 *
+	 * @param instance the instance, without missing values
+	 * @return the leaf the instance ends up in
+	 */
+	private MyId3 leafFor(Instance instance) {
+		Object event = Id3Events.INSTANCE.beginScore();
+		MyId3 node = this;
+		int depth = 0;
+		while (node.m_Attribute != null) {
+			node = node.m_Successors[(int) instance.value(node.m_Attribute)];
+			depth++;
+		}
+		if (event != null) {
+			Id3Events.INSTANCE.endScore(event, depth, Utils.isMissingValue(node.m_ClassValue) ? null
+					: node.m_ClassAttribute.value((int) node.m_ClassValue));
+		}
+		return node;
+	}
+
+	/**
+	 * Classifies a row of encoded data.
+	 *
+	 * @param data the encoded data
+	 * @param row  the row index
+	 * @return the predicted class index, or missing for an empty leaf
+	 */
+	double classifyRow(EncodedInstances data, int row) {
+		MyId3 node = this;
+		while (node.m_Attribute != null) {
+			node = node.m_Successors[data.value(row, node.m_Attribute.index())];
+		}
+		return node.m_ClassValue;
+	}
+
+	/**
+	 * Returns the number of nodes of the tree, including leaves.
+	 *
+	 * @return the number of nodes
+	 */
+	int numNodes() {
+		int numNodes = 1;
+		if (m_Attribute != null) {
+			for (MyId3 successor : m_Successors) {
+				numNodes += successor.numNodes();
+			}
+		}
+		return numNodes;
+	}
+
+	/**
+	 * Returns the attribute this node splits on.
+	 *
+	 * @return the split attribute, or null if the node is a leaf
+	 */
+	Attribute getSplitAttribute() {
+		return m_Attribute;
+	}
+
+	/**
+	 * Returns the subtree for one value of the split attribute.
+	 *
+	 * @param value the value index
+	 * @return the successor node
+	 */
+	MyId3 getSuccessor(int value) {
+		return m_Successors[value];
+	}
+
+	/**
+	 * Returns the class distribution of a leaf, all zero for an empty leaf.
+	 *
+	 * @return the class distribution
+	 */
+	double[] getDistribution() {
+		return m_Distribution;
+	}
+
+	/**
+	 * Returns an immutable copy of the trained tree for scoring. Unlike the tree
+	 * itself, whose nodes are plain mutable objects, the snapshot can be shared
+	 * by any number of threads without synchronization, and a later call of
+	 * buildClassifier does not affect it.
+	 *
+	 * @return the flattened tree
+	 * @throws IllegalStateException if no model has been built yet
+	 */
+	public FlatTree snapshot() {
+		if (m_Header == null) {
+			throw new IllegalStateException("Id3: No model built yet.");
+		}
+		return new FlatTree(this, m_Header.numAttributes(), m_Header.numClasses());
+	}
+
+	/**
+	 * Prints the decision tree using the private toString method from below.
+	 *
+	 * @return a textual description of the classifier
+	 */
+	public String toString() {
+
+		if ((m_Distribution == null) && (m_Successors == null)) {
+			return "Id3: No model built yet.";
+		}
+		return "Id3\n\n" + toString(0);
+	}
+
+	/**
+	 * Computes the split info of an attribute. An empty partition makes it NaN
+	 * (0 * log2(0)), which keeps the attribute out of the gain ratio comparison.
+	 *
+	 * @param log2         the logarithm table covering the node's counts
+	 * @param counts       the attribute's (value, class) counts
+	 * @param numClasses   the number of classes
+	 * @param numInstances the number of instances at the node
+	 * @return the split info of the attribute
+	 * @throws Exception if computation fails
+	 */
+	private double computeSplitInfo(Log2Table log2, int[] counts, int numClasses, int numInstances)
+			throws Exception {
+		// ǰԵÿһȡֵ
+		// Ľ2
+		double splitInfo = 0;
+		for (int j = 0; j < counts.length; j += numClasses) {
+			int size = 0;
+			for (int c = 0; c < numClasses; c++) {
+				size += counts[j + c];
+			}
+			splitInfo -= log2.nLog2N(size);
+		}
+		splitInfo /= (double) numInstances;
+		splitInfo += log2.log2(numInstances);
+
+		return splitInfo;
+	}
+
+	/**
+	 * Computes the entropy of a class distribution.
+	 * 
+	 * @param log2         the logarithm table covering the counts
+	 * @param classCounts  the array holding the class counts
+	 * @param offset       the position of the first class count
+	 * @param numClasses   the number of classes
+	 * @param numInstances the number of instances counted
+	 * @return the entropy of the class distribution
+	 * @throws Exception if computation fails
+	 */
+	private double computeEntropy(Log2Table log2, int[] classCounts, int offset, int numClasses, int numInstances)
+			throws Exception {
+
+		// 
+		double entropy = 0;
+		for (int j = 0; j < numClasses; j++) {
+			int classCount = classCounts[offset + j];
+			if (classCount > 0) {
+				entropy -= log2.nLog2N(classCount);
+			}
+		}
+		entropy /= (double) numInstances;
+		return entropy + log2.log2(numInstances);
+	}
+
+	/**
+	 * Outputs a tree at a certain level.
+	 *
+	 * @param level the level at which the tree is to be printed
+	 * @return the tree as string at the given level
+	 */
+	private String toString(int level) {
+
+		StringBuffer text = new StringBuffer();
+
+		if (m_Attribute == null) {
+			if (Utils.isMissingValue(m_ClassValue)) {
+				text.append(": null");
+			} else {
+				text.append(": " + m_ClassAttribute.value((int) m_ClassValue));
+			}
+		} else {
+			for (int j = 0; j < m_Attribute.numValues(); j++) {
+				text.append("\n");
+				for (int i = 0; i < level; i++) {
+					text.append("|  ");
+				}
+				text.append(m_Attribute.name() + " = " + m_Attribute.value(j));
+				text.append(m_Successors[j].toString(level + 1));
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Adds this tree recursively to the buffer.
+	 * 
+	 * @param id     the unqiue id for the method
+	 * @param buffer the buffer to add the source code to
+	 * @return the last ID being used
+	 * @throws Exception if something goes wrong
+	 */
+	protected int toSource(int id, StringBuffer buffer) throws Exception {
+		int result;
+		int i;
+		int newID;
+		StringBuffer[] subBuffers;
+
+		buffer.append("\n");
+		buffer.append("  protected static double node" + id + "(Object[] i) {\n");
+
+		// leaf?
+		if (m_Attribute == null) {
+			result = id;
+			if (Double.isNaN(m_ClassValue)) {
+				buffer.append("    return Double.NaN;");
+			} else {
+				buffer.append("    return " + m_ClassValue + ";");
+			}
+			if (m_ClassAttribute != null) {
+				buffer.append(" // " + m_ClassAttribute.value((int) m_ClassValue));
+			}
+			buffer.append("\n");
+			buffer.append("  }\n");
+		} else {
+			buffer.append("    checkMissing(i, " + m_Attribute.index() + ");\n\n");
+			buffer.append("    // " + m_Attribute.name() + "\n");
+
+			// subtree calls
+			subBuffers = new StringBuffer[m_Attribute.numValues()];
+			newID = id;
+			for (i = 0; i < m_Attribute.numValues(); i++) {
+				newID++;
+
+				buffer.append("    ");
+				if (i > 0) {
+					buffer.append("else ");
+				}
+				buffer.append(
+						"if (((String) i[" + m_Attribute.index() + "]).equals(\"" + m_Attribute.value(i) + "\"))\n");
+				buffer.append("      return node" + newID + "(i);\n");
+
+				subBuffers[i] = new StringBuffer();
+				newID = m_Successors[i].toSource(newID, subBuffers[i]);
+			}
+			buffer.append("    else\n");
+			buffer.append("      throw new IllegalArgumentException(\"Value '\" + i[" + m_Attribute.index()
+					+ "] + \"' is not allowed!\");\n");
+			buffer.append("  }\n");
+
+			// output subtree code
+			for (i = 0; i < m_Attribute.numValues(); i++) {
+				buffer.append(subBuffers[i].toString());
+			}
+			subBuffers = null;
+
+			result = newID;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a string that describes the classifier as source. The classifier will
+	 * be contained in a class with the given name (there may be auxiliary classes),
+	 * and will contain a method with the signature:
+	 * 
+	 * <pre>
+	 * <code>
+	 * public static double classify(Object[] i);
+	 * </code>
+	 * </pre>
+	 * 
+	 * where the array <code>i</code> contains elements that are either Double,
+	 * String, with missing values represented as null. The generated code is public
+	 * domain and comes with no warranty. <br/>
+	 * Note: works only if class attribute is the last attribute in the dataset.
+	 *
+	 * @param className the name that should be given to the source class.
+	 * @return the object source described by a string
+	 * @throws Exception if the source can't be computed
+	 */
+	public String toSource(String className) throws Exception {
+		StringBuffer result;
+		int id;
+
+		result = new StringBuffer();
+
+		result.append("class " + className + " {\n");
+		result.append("  private static void checkMissing(Object[] i, int index) {\n");
+		result.append("    if (i[index] == null)\n");
+		result.append("      throw new IllegalArgumentException(\"Null values " + "are not allowed!\");\n");
+		result.append("  }\n\n");
+		result.append("  public static double classify(Object[] i) {\n");
+		id = 0;
+		result.append("    return node" + id + "(i);\n");
+		result.append("  }\n");
+		toSource(id, result);
+		result.append("}\n");
+
+		return result.toString();
+	}
+
+	/**
+	 * Returns an enumeration describing the available options.
+	 *
+	 * @return an enumeration of all the available options.
+	 */
+	@Override
+	public Enumeration<Option> listOptions() {
+
+		Vector<Option> newVector = new Vector<Option>(12);
+
+		newVector.addElement(new Option("\tMaximum depth of the tree (default: 0, which means unlimited).", "depth", 1,
+				"-depth <max depth>"));
+		newVector.addElement(new Option("\tMinimum number of instances at a node for it to be split\n"
+				+ "\t(default: 0).", "M", 1, "-M <minimum number of instances>"));
+		newVector.addElement(new Option("\tMinimum weighted information gain for a split (default: 0).", "G", 1,
+				"-G <minimum gain>"));
+		newVector.addElement(new Option("\tMaximum number of nodes in the tree (default: 0, which means\n"
+				+ "\tunlimited).", "max-nodes", 1, "-max-nodes <num>"));
+		newVector.addElement(new Option("\tUse reduced error pruning.", "R", 0, "-R"));
+		newVector.addElement(new Option("\tNumber of folds for reduced error pruning, one of which is used\n"
+				+ "\tfor pruning (default: 3).", "N", 1, "-N <number of folds>"));
+		newVector.addElement(new Option("\tSeed for random data shuffling (default: 1).", "Q", 1, "-Q <seed>"));
+		newVector.addElement(new Option("\tSplit criterion: 0 = information gain, 1 = OneR-weighted\n"
+				+ "\tinformation gain, 2 = gain ratio among the attributes with\n"
+				+ "\tabove-average gain, 3 = the same with OneR-weighted gain\n" + "\t(default: 3).", "S", 1,
+				"-S <criterion>"));
+		newVector.addElement(new Option("\tChoose the split of nodes with at least this many rows from a\n"
+				+ "\tgrowing random sample of them (default: 0, which means never).", "sample", 1, "-sample <num>"));
+		newVector.addElement(new Option("\tAllowable error when choosing a split from a sample\n" + "\t(default: 0.001).",
+				"sample-confidence", 1, "-sample-confidence <delta>"));
+		newVector.addElement(new Option("\tOnly use attributes with at least this OneR weight (default: 0).",
+				"min-weight", 1, "-min-weight <weight>"));
+		newVector.addElement(new Option("\tOnly use this many attributes with the highest OneR weights\n"
+				+ "\t(default: 0, which means all).", "top-attributes", 1, "-top-attributes <num>"));
+		newVector.addElement(new Option("\tWrite checkpoints of the build to this file and resume from it\n"
+				+ "\tif it exists (default: none).", "checkpoint", 1, "-checkpoint <file>"));
+		newVector.addElement(new Option("\tTime between checkpoints (default: 600).", "checkpoint-interval", 1,
+				"-checkpoint-interval <seconds>"));
+
+		newVector.addAll(Collections.list(super.listOptions()));
+
+		return newVector.elements();
+	}
+
+	/**
+	 * Parses a given list of options.
+	 * <p/>
+	 *
+	 * <!-- options-start --> Valid options are:
+	 * <p/>
+	 *
+	 * <pre>
+	 * -depth &lt;max depth&gt;
+	 *  Maximum depth of the tree (default: 0, which means unlimited).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -M &lt;minimum number of instances&gt;
+	 *  Minimum number of instances at a node for it to be split
+	 *  (default: 0).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -G &lt;minimum gain&gt;
+	 *  Minimum weighted information gain for a split (default: 0).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -max-nodes &lt;num&gt;
+	 *  Maximum number of nodes in the tree (default: 0, which means
+	 *  unlimited).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -R
+	 *  Use reduced error pruning.
+	 * </pre>
+	 *
+	 * <pre>
+	 * -N &lt;number of folds&gt;
+	 *  Number of folds for reduced error pruning, one of which is used
+	 *  for pruning (default: 3).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -Q &lt;seed&gt;
+	 *  Seed for random data shuffling (default: 1).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -S &lt;criterion&gt;
+	 *  Split criterion: 0 = information gain, 1 = OneR-weighted
+	 *  information gain, 2 = gain ratio among the attributes with
+	 *  above-average gain, 3 = the same with OneR-weighted gain
+	 *  (default: 3).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -sample &lt;num&gt;
+	 *  Choose the split of nodes with at least this many rows from a
+	 *  growing random sample of them (default: 0, which means never).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -sample-confidence &lt;delta&gt;
+	 *  Allowable error when choosing a split from a sample
+	 *  (default: 0.001).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -min-weight &lt;weight&gt;
+	 *  Only use attributes with at least this OneR weight (default: 0).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -top-attributes &lt;num&gt;
+	 *  Only use this many attributes with the highest OneR weights
+	 *  (default: 0, which means all).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -checkpoint &lt;file&gt;
+	 *  Write checkpoints of the build to this file and resume from it
+	 *  if it exists (default: none).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -checkpoint-interval &lt;seconds&gt;
+	 *  Time between checkpoints (default: 600).
+	 * </pre>
+	 *
+	 *
+	 * <!-- options-end -->
+	 *
+	 * @param options the list of options as an array of strings
+	 * @throws Exception if an option is not supported
+	 */
+	@Override
+	public void setOptions(String[] options) throws Exception {
+
+		Settings settings = settings();
+
+		String tmpStr = Utils.getOption("depth", options);
+		settings.maxDepth = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 0;
+
+		tmpStr = Utils.getOption('M', options);
+		settings.minNum = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 0;
+
+		tmpStr = Utils.getOption('G', options);
+		settings.minGain = tmpStr.length() != 0 ? Double.parseDouble(tmpStr) : 0;
+
+		tmpStr = Utils.getOption("max-nodes", options);
+		settings.maxNodes = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 0;
+
+		settings.reducedErrorPruning = Utils.getFlag('R', options);
+
+		tmpStr = Utils.getOption('N', options);
+		settings.numFolds = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 3;
+
+		tmpStr = Utils.getOption('Q', options);
+		settings.seed = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 1;
+
+		tmpStr = Utils.getOption('S', options);
+		setSplitCriterion(new SelectedTag(tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : SPLIT_WEIGHTED_GAIN_RATIO,
+				TAGS_SPLIT));
+
+		tmpStr = Utils.getOption("sample", options);
+		settings.sampleThreshold = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 0;
+
+		tmpStr = Utils.getOption("sample-confidence", options);
+		settings.sampleConfidence = tmpStr.length() != 0 ? Double.parseDouble(tmpStr) : 1e-3;
+
+		tmpStr = Utils.getOption("min-weight", options);
+		settings.minWeight = tmpStr.length() != 0 ? Double.parseDouble(tmpStr) : 0;
+
+		tmpStr = Utils.getOption("top-attributes", options);
+		settings.topAttributes = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 0;
+
+		settings.checkpointFile = Utils.getOption("checkpoint", options);
+
+		tmpStr = Utils.getOption("checkpoint-interval", options);
+		settings.checkpointInterval = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 600;
+
+		super.setOptions(options);
+	}
+
+	/**
+	 * Gets the current settings of the classifier.
+	 *
+	 * @return an array of strings suitable for passing to setOptions
+	 */
+	@Override
+	public String[] getOptions() {
+
+		Settings settings = settings();
+		Vector<String> options = new Vector<String>(27);
+
+		options.add("-depth");
+		options.add("" + settings.maxDepth);
+		options.add("-M");
+		options.add("" + settings.minNum);
+		options.add("-G");
+		options.add("" + settings.minGain);
+		options.add("-max-nodes");
+		options.add("" + settings.maxNodes);
+		if (settings.reducedErrorPruning) {
+			options.add("-R");
+		}
+		options.add("-N");
+		options.add("" + settings.numFolds);
+		options.add("-Q");
+		options.add("" + settings.seed);
+		options.add("-S");
+		options.add("" + settings.splitCriterion);
+		options.add("-sample");
+		options.add("" + settings.sampleThreshold);
+		options.add("-sample-confidence");
+		options.add("" + settings.sampleConfidence);
+		options.add("-min-weight");
+		options.add("" + settings.minWeight);
+		options.add("-top-attributes");
+		options.add("" + settings.topAttributes);
+		if (settings.checkpointFile.length() != 0) {
+			options.add("-checkpoint");
+			options.add(settings.checkpointFile);
+		}
+		options.add("-checkpoint-interval");
+		options.add("" + settings.checkpointInterval);
+
+		Collections.addAll(options, super.getOptions());
+
+		return options.toArray(new String[0]);
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String maxDepthTipText() {
+		return "The maximum depth of the tree (0 means unlimited).";
+	}
+
+	/**
+	 * Get the value of maxDepth.
+	 *
+	 * @return Value of maxDepth.
+	 */
+	public int getMaxDepth() {
+		return settings().maxDepth;
+	}
+
+	/**
+	 * Set the value of maxDepth.
+	 *
+	 * @param v Value to assign to maxDepth.
+	 */
+	public void setMaxDepth(int v) {
+		settings().maxDepth = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String minNumTipText() {
+		return "The minimum number of instances at a node for it to be split.";
+	}
+
+	/**
+	 * Get the value of minNum.
+	 *
+	 * @return Value of minNum.
+	 */
+	public int getMinNum() {
+		return settings().minNum;
+	}
+
+	/**
+	 * Set the value of minNum.
+	 *
+	 * @param v Value to assign to minNum.
+	 */
+	public void setMinNum(int v) {
+		settings().minNum = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String minGainTipText() {
+		return "The minimum weighted information gain for a node to be split.";
+	}
+
+	/**
+	 * Get the value of minGain.
+	 *
+	 * @return Value of minGain.
+	 */
+	public double getMinGain() {
+		return settings().minGain;
+	}
+
+	/**
+	 * Set the value of minGain.
+	 *
+	 * @param v Value to assign to minGain.
+	 */
+	public void setMinGain(double v) {
+		settings().minGain = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String maxNodesTipText() {
+		return "The maximum number of nodes in the tree (0 means unlimited).";
+	}
+
+	/**
+	 * Get the value of maxNodes.
+	 *
+	 * @return Value of maxNodes.
+	 */
+	public int getMaxNodes() {
+		return settings().maxNodes;
+	}
+
+	/**
+	 * Set the value of maxNodes.
+	 *
+	 * @param v Value to assign to maxNodes.
+	 */
+	public void setMaxNodes(int v) {
+		settings().maxNodes = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String reducedErrorPruningTipText() {
+		return "Whether reduced-error pruning is used instead of the unpruned tree.";
+	}
+
+	/**
+	 * Get the value of reducedErrorPruning.
+	 *
+	 * @return Value of reducedErrorPruning.
+	 */
+	public boolean getReducedErrorPruning() {
+		return settings().reducedErrorPruning;
+	}
+
+	/**
+	 * Set the value of reducedErrorPruning.
+	 *
+	 * @param v Value to assign to reducedErrorPruning.
+	 */
+	public void setReducedErrorPruning(boolean v) {
+		settings().reducedErrorPruning = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String numFoldsTipText() {
+		return "Determines the amount of data used for pruning. One fold is used for pruning, the rest for growing the tree.";
+	}
+
+	/**
+	 * Get the value of numFolds.
+	 *
+	 * @return Value of numFolds.
+	 */
+	public int getNumFolds() {
+		return settings().numFolds;
+	}
+
+	/**
+	 * Set the value of numFolds.
+	 *
+	 * @param v Value to assign to numFolds.
+	 */
+	public void setNumFolds(int v) {
+		settings().numFolds = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String seedTipText() {
+		return "The seed used for randomizing the data when reduced-error pruning is used.";
+	}
+
+	/**
+	 * Get the value of seed.
+	 *
+	 * @return Value of seed.
+	 */
+	public int getSeed() {
+		return settings().seed;
+	}
+
+	/**
+	 * Set the value of seed.
+	 *
+	 * @param v Value to assign to seed.
+	 */
+	public void setSeed(int v) {
+		settings().seed = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String splitCriterionTipText() {
+		return "The criterion used to choose the split attribute.";
+	}
+
+	/**
+	 * Get the value of splitCriterion.
+	 *
+	 * @return Value of splitCriterion.
+	 */
+	public SelectedTag getSplitCriterion() {
+		return new SelectedTag(settings().splitCriterion, TAGS_SPLIT);
+	}
+
+	/**
+	 * Set the value of splitCriterion.
+	 *
+	 * @param v Value to assign to splitCriterion.
+	 */
+	public void setSplitCriterion(SelectedTag v) {
+		if (v.getTags() == TAGS_SPLIT) {
+			settings().splitCriterion = v.getSelectedTag().getID();
+		}
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String sampleThresholdTipText() {
+		return "The minimum number of rows of a node for its split to be chosen from a sample (0 means never).";
+	}
+
+	/**
+	 * Get the value of sampleThreshold.
+	 *
+	 * @return Value of sampleThreshold.
+	 */
+	public int getSampleThreshold() {
+		return settings().sampleThreshold;
+	}
+
+	/**
+	 * Set the value of sampleThreshold.
+	 *
+	 * @param v Value to assign to sampleThreshold.
+	 */
+	public void setSampleThreshold(int v) {
+		settings().sampleThreshold = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String sampleConfidenceTipText() {
+		return "The allowable error when choosing a split from a sample; smaller values need larger samples.";
+	}
+
+	/**
+	 * Get the value of sampleConfidence.
+	 *
+	 * @return Value of sampleConfidence.
+	 */
+	public double getSampleConfidence() {
+		return settings().sampleConfidence;
+	}
+
+	/**
+	 * Set the value of sampleConfidence.
+	 *
+	 * @param v Value to assign to sampleConfidence.
+	 */
+	public void setSampleConfidence(double v) {
+		settings().sampleConfidence = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String minWeightTipText() {
+		return "The smallest OneR weight of an attribute for it to be used.";
+	}
+
+	/**
+	 * Get the value of minWeight.
+	 *
+	 * @return Value of minWeight.
+	 */
+	public double getMinWeight() {
+		return settings().minWeight;
+	}
+
+	/**
+	 * Set the value of minWeight.
+	 *
+	 * @param v Value to assign to minWeight.
+	 */
+	public void setMinWeight(double v) {
+		settings().minWeight = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String topAttributesTipText() {
+		return "The number of attributes with the highest OneR weights to be used (0 means all).";
+	}
+
+	/**
+	 * Get the value of topAttributes.
+	 *
+	 * @return Value of topAttributes.
+	 */
+	public int getTopAttributes() {
+		return settings().topAttributes;
+	}
+
+	/**
+	 * Set the value of topAttributes.
+	 *
+	 * @param v Value to assign to topAttributes.
+	 */
+	public void setTopAttributes(int v) {
+		settings().topAttributes = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String checkpointFileTipText() {
+		return "The file the build is checkpointed to and resumed from if it exists (empty means no checkpoints).";
+	}
+
+	/**
+	 * Get the value of checkpointFile.
+	 *
+	 * @return Value of checkpointFile.
+	 */
+	public String getCheckpointFile() {
+		return settings().checkpointFile;
+	}
+
+	/**
+	 * Set the value of checkpointFile.
+	 *
+	 * @param v Value to assign to checkpointFile.
+	 */
+	public void setCheckpointFile(String v) {
+		settings().checkpointFile = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String checkpointIntervalTipText() {
+		return "The number of seconds between checkpoints.";
+	}
+
+	/**
+	 * Get the value of checkpointInterval.
+	 *
+	 * @return Value of checkpointInterval.
+	 */
+	public int getCheckpointInterval() {
+		return settings().checkpointInterval;
+	}
+
+	/**
+	 * Set the value of checkpointInterval.
+	 *
+	 * @param v Value to assign to checkpointInterval.
+	 */
+	public void setCheckpointInterval(int v) {
+		settings().checkpointInterval = v;
 	}
 
 	/**
@@ -2,6 +2,7 @@ package com;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -19,6 +20,7 @@ import weka.classifiers.rules.ZeroR;
 import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
+import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
@@ -231,8 +233,39 @@ public class MyOneR extends AbstractClassifier implements TechnicalInformationHa
 			return m_ZeroR.classifyInstance(inst);
 		}
 
+		return classifyValue(inst.value(m_rule.m_attr));
+	}
+
+	/**
+	 * Classifies an instance given as an array of attribute values, as
+	 * classifyInstance does, for scoring rows held in a shared buffer.
+	 *
+	 * @param values        the buffer
+	 * @param offset        the position of the instance's first value
+	 * @param numAttributes the number of values of the instance
+	 * @return the classification of the instance
+	 * @throws Exception if the instance can't be classified
+	 */
+	double classifyValues(double[] values, int offset, int numAttributes) throws Exception {
+
+		// default model?
+		if (m_ZeroR != null) {
+			return m_ZeroR.classifyInstance(new DenseInstance(1.0, Arrays.copyOfRange(values, offset,
+					offset + numAttributes)));
+		}
+		return classifyValue(values[offset + m_rule.m_attr.index()]);
+	}
+
+	/**
+	 * Applies the rule to a value of its attribute.
+	 *
+	 * @param value the value, missing or not
+	 * @return the predicted class
+	 */
+	private double classifyValue(double value) {
+
 		int v = 0;
-		if (inst.isMissing(m_rule.m_attr)) {
+		if (Utils.isMissingValue(value)) {
 			if (m_rule.m_missingValueClass != -1) {
 				return m_rule.m_missingValueClass;
 			} else {
@@ -240,9 +273,9 @@ public class MyOneR extends AbstractClassifier implements TechnicalInformationHa
 			}
 		}
 		if (m_rule.m_attr.isNominal()) {
-			v = (int) inst.value(m_rule.m_attr);
+			v = (int) value;
 		} else {
-			while (v < m_rule.m_breakpoints.length && inst.value(m_rule.m_attr) >= m_rule.m_breakpoints[v]) {
+			while (v < m_rule.m_breakpoints.length && value >= m_rule.m_breakpoints[v]) {
 				v++;
 			}
 		}
@@ -312,9 +345,13 @@ public class MyOneR extends AbstractClassifier implements TechnicalInformationHa
 		Enumeration<Attribute> enu = instances.enumerateAttributes();
 		while (enu.hasMoreElements()) {
 			try {
+				Object event = Id3Events.INSTANCE.beginWeight();
 				OneRRule r = newRule(enu.nextElement(), data);
 
 				weights.put(r.m_attr.name(), ((double)r.m_correct)/r.m_numInst);
+				if (event != null) {
+					Id3Events.INSTANCE.endWeight(event, r.m_attr.name(), weights.get(r.m_attr.name()), r.m_numInst);
+				}
 				ruleList.add(r);
 				
 				// if this attribute is the best so far, replace the rule
@@ -342,7 +379,30 @@ public class MyOneR extends AbstractClassifier implements TechnicalInformationHa
 	public Map<String, Double> getWeights(){
 		return weights;
 	}
-	
+
+	/**
+	 * Computes the weight newNominalRule gives a nominal attribute without
+	 * missing values, i.e. the fraction of instances its rule gets right, from
+	 * the attribute's (value, class) counts.
+	 *
+	 * @param counts       the counts, value v and class c at v * numClasses + c
+	 * @param numClasses   the number of classes
+	 * @param numInstances the number of instances counted
+	 * @return the fraction of correctly classified instances
+	 */
+	static double nominalAccuracy(int[] counts, int numClasses, int numInstances) {
+
+		int correct = 0;
+		for (int value = 0; value < counts.length; value += numClasses) {
+			int best = 0;
+			for (int c = 0; c < numClasses; c++) {
+				best = Math.max(best, counts[value + c]);
+			}
+			correct += best;
+		}
+		return ((double) correct) / numInstances;
+	}
+
 	/**
 	 * Create a rule branching on this attribute.
 	 * 
@@ -384,16 +444,39 @@ public class MyOneR extends AbstractClassifier implements TechnicalInformationHa
 	public OneRRule newNominalRule(Attribute attr, Instances data, int[] missingValueCounts) throws Exception {
 
 		// ... create arrays to hold the counts
-		int[][] counts = new int[attr.numValues()][data.classAttribute().numValues()];
-
-		// ... calculate the counts
-		Enumeration<Instance> enu = data.enumerateInstances();
-		while (enu.hasMoreElements()) {
-			Instance i = enu.nextElement();
-			if (i.isMissing(attr)) {
-				missingValueCounts[(int) i.classValue()]++;
-			} else {
-				counts[(int) i.value(attr)][(int) i.classValue()]++;
+		int numClasses = data.classAttribute().numValues();
+		int[][] counts = new int[attr.numValues()][numClasses];
+
+		// ... calculate the counts, by the vectorized contingency counter if
+		// there is one and the values fit in bytes; copying the values out
+		// only pays off then
+		if (ContingencyCounter.INSTANCE.isVectorized() && attr.numValues() <= 256) {
+			byte[] values = new byte[data.numInstances()];
+			int[] classValues = new int[data.numInstances()];
+			int numRows = 0;
+			for (int n = 0; n < data.numInstances(); n++) {
+				Instance i = data.instance(n);
+				if (i.isMissing(attr)) {
+					missingValueCounts[(int) i.classValue()]++;
+				} else {
+					values[numRows] = (byte) i.value(attr);
+					classValues[numRows++] = (int) i.classValue();
+				}
+			}
+			int[] table = new int[attr.numValues() * numClasses];
+			ContingencyCounter.INSTANCE.count(values, classValues, numRows, numClasses, table);
+			for (int value = 0; value < attr.numValues(); value++) {
+				System.arraycopy(table, value * numClasses, counts[value], 0, numClasses);
+			}
+		} else {
+			Enumeration<Instance> enu = data.enumerateInstances();
+			while (enu.hasMoreElements()) {
+				Instance i = enu.nextElement();
+				if (i.isMissing(attr)) {
+					missingValueCounts[(int) i.classValue()]++;
+				} else {
+					counts[(int) i.value(attr)][(int) i.classValue()]++;
+				}
 			}
 		}
 
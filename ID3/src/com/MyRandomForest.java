@@ -0,0 +1,681 @@
+package com;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import weka.classifiers.AbstractClassifier;
+import weka.core.Capabilities;
+import weka.core.Capabilities.Capability;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+import weka.core.Option;
+import weka.core.RevisionUtils;
+import weka.core.TechnicalInformation;
+import weka.core.TechnicalInformation.Field;
+import weka.core.TechnicalInformation.Type;
+import weka.core.TechnicalInformationHandler;
+import weka.core.Utils;
+
+/**
+ * <!-- globalinfo-start --> Class for constructing a forest of MyId3 trees. Each
+ * tree is grown with the OneR-weighted gain criterion on a bootstrap sample of
+ * the training data, considering a random subset of the attributes at each
+ * node. For more information see: <br/>
+ * <br/>
+ * Leo Breiman (2001). Random Forests. Machine Learning. 45(1):5-32.
+ * <p/>
+ * <!-- globalinfo-end -->
+ *
+ * <!-- options-start --> Valid options are:
+ * <p/>
+ *
+ * <pre>
+ * -I &lt;number of trees&gt;
+ *  Number of trees to build (default: 100).
+ * </pre>
+ *
+ * <pre>
+ * -K &lt;number of features&gt;
+ *  Number of attributes to randomly investigate at each node
+ *  (default: 0, which means int(log_2(#predictors)+1)).
+ * </pre>
+ *
+ * <pre>
+ * -S &lt;seed&gt;
+ *  Seed for random number generator (default: 1).
+ * </pre>
+ *
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of trees to build in parallel (default: 1, 0 means one per
+ *  available processor).
+ * </pre>
+ *
+ * <pre>
+ * -off-heap
+ *  Hold the encoded training data and the trees outside the Java heap.
+ * </pre>
+ *
+ * <pre>
+ * -off-heap-dir &lt;directory&gt;
+ *  Directory of the memory-mapped files backing the off-heap data
+ *  (default: none, which means direct memory).
+ * </pre>
+ *
+ * <!-- options-end -->
+ */
+public class MyRandomForest extends AbstractClassifier implements TechnicalInformationHandler {
+
+	/** for serialization */
+	static final long serialVersionUID = 3180574226466131283L;
+
+	/** Number of trees. */
+	private int m_NumTrees = 100;
+
+	/** Number of attributes sampled per node, 0 for the default. */
+	private int m_NumFeatures = 0;
+
+	/** Seed for the bootstrap samples and attribute sampling. */
+	private int m_Seed = 1;
+
+	/** Number of trees built in parallel, 0 for one per processor. */
+	private int m_NumExecutionSlots = 1;
+
+	/** Whether the encoded data and the trees are held outside the heap. */
+	private boolean m_OffHeap = false;
+
+	/** Directory of the files backing the off-heap data, empty for direct memory. */
+	private String m_OffHeapDirectory = "";
+
+	/** The flattened trees. */
+	private FlatTree[] m_Trees;
+
+	/** Number of attributes of the training data. */
+	private int m_NumAttributes;
+
+	/** Number of class values. */
+	private int m_NumClasses;
+
+	/**
+	 * Returns a string describing the classifier.
+	 *
+	 * @return a description suitable for the GUI.
+	 */
+	public String globalInfo() {
+
+		return "Class for constructing a forest of MyId3 trees. Each tree is grown with the "
+				+ "OneR-weighted gain criterion on a bootstrap sample of the training data, "
+				+ "considering a random subset of the attributes at each node. For more "
+				+ "information see:\n\n" + getTechnicalInformation().toString();
+	}
+
+	@Override
+	public TechnicalInformation getTechnicalInformation() {
+		TechnicalInformation result;
+
+		result = new TechnicalInformation(Type.ARTICLE);
+		result.setValue(Field.AUTHOR, "Leo Breiman");
+		result.setValue(Field.YEAR, "2001");
+		result.setValue(Field.TITLE, "Random Forests");
+		result.setValue(Field.JOURNAL, "Machine Learning");
+		result.setValue(Field.VOLUME, "45");
+		result.setValue(Field.NUMBER, "1");
+		result.setValue(Field.PAGES, "5-32");
+
+		return result;
+	}
+
+	/**
+	 * Returns default capabilities of the classifier.
+	 *
+	 * @return the capabilities of this classifier
+	 */
+	@Override
+	public Capabilities getCapabilities() {
+		Capabilities result = super.getCapabilities();
+		result.disableAll();
+
+		// attributes
+		result.enable(Capability.NOMINAL_ATTRIBUTES);
+
+		// class
+		result.enable(Capability.NOMINAL_CLASS);
+		result.enable(Capability.MISSING_CLASS_VALUES);
+
+		// instances
+		result.setMinimumNumberInstances(0);
+
+		return result;
+	}
+
+	/**
+	 * Builds the forest. The training data is encoded once and shared by all
+	 * trees; each tree only holds the bootstrap counts of the rows. Off heap,
+	 * the trees are grown from the encoded columns in direct or mapped memory,
+	 * and each flattened tree is moved there as soon as it is built.
+	 *
+	 * @param data the training data
+	 * @throws Exception if the classifier can't be built successfully
+	 */
+	@Override
+	public void buildClassifier(Instances data) throws Exception {
+
+		// can classifier handle the data?
+		getCapabilities().testWithFail(data);
+
+		// remove instances with missing class
+		data = new Instances(data);
+		data.deleteWithMissingClass();
+
+		EncodedInstances encoded = new EncodedInstances(data);
+		if (m_OffHeap) {
+			encoded = encoded.offHeap(offHeapDirectory());
+			data = null;
+		}
+		m_NumAttributes = encoded.numAttributes();
+		m_NumClasses = encoded.numClasses();
+		m_Trees = new FlatTree[m_NumTrees];
+
+		int numFeatures = m_NumFeatures;
+		if (numFeatures < 1) {
+			numFeatures = (int) Utils.log2(m_NumAttributes - 1) + 1;
+		}
+
+		// draw the seeds up front so the forest does not depend on scheduling
+		Random random = new Random(m_Seed);
+		long[] seeds = new long[m_NumTrees];
+		for (int i = 0; i < seeds.length; i++) {
+			seeds[i] = random.nextLong();
+		}
+
+		int slots = m_NumExecutionSlots < 1 ? Runtime.getRuntime().availableProcessors() : m_NumExecutionSlots;
+		ForkJoinPool pool = new ForkJoinPool(slots);
+		try {
+			pool.invoke(new ForestTask(encoded, new ConcurrentLinkedQueue<ScratchArena>(), seeds, numFeatures, 0,
+					m_NumTrees));
+		} catch (RuntimeException e) {
+			// the pool may wrap the exception of the failed task once more
+			Throwable cause = e;
+			while (cause instanceof RuntimeException && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Builds a range of trees, splitting the range until it holds one tree.
+	 */
+	private class ForestTask extends RecursiveAction {
+
+		/** for serialization */
+		private static final long serialVersionUID = -7312843358791472541L;
+
+		private final EncodedInstances m_Data;
+		/** Idle working storage, at most one per worker thread is ever created. */
+		private final Queue<ScratchArena> m_Arenas;
+		private final long[] m_Seeds;
+		private final int m_Features;
+		private final int m_From;
+		private final int m_To;
+
+		ForestTask(EncodedInstances data, Queue<ScratchArena> arenas, long[] seeds, int numFeatures, int from,
+				int to) {
+			m_Data = data;
+			m_Arenas = arenas;
+			m_Seeds = seeds;
+			m_Features = numFeatures;
+			m_From = from;
+			m_To = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (m_To - m_From > 1) {
+				int mid = (m_From + m_To) >>> 1;
+				invokeAll(new ForestTask(m_Data, m_Arenas, m_Seeds, m_Features, m_From, mid),
+						new ForestTask(m_Data, m_Arenas, m_Seeds, m_Features, mid, m_To));
+				return;
+			}
+			if (m_To == m_From) {
+				return;
+			}
+			ScratchArena arena = m_Arenas.poll();
+			if (arena == null) {
+				arena = new ScratchArena(m_Data);
+			}
+			try {
+				m_Trees[m_From] = buildTree(arena, new Random(m_Seeds[m_From]), m_Features);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			} finally {
+				m_Arenas.add(arena);
+			}
+		}
+	}
+
+	/**
+	 * Grows one tree on a bootstrap sample given as per-row counts.
+	 *
+	 * @param arena       the working storage of the building thread, sized for
+	 *                    the shared encoded training data
+	 * @param random      the tree's random number generator
+	 * @param numFeatures the number of attributes sampled per node
+	 * @return the flattened tree
+	 * @throws Exception if the tree can't be built
+	 */
+	private FlatTree buildTree(ScratchArena arena, Random random, int numFeatures) throws Exception {
+
+		EncodedInstances data = arena.data();
+		int n = data.numInstances();
+		int[] counts = new int[n];
+		for (int i = 0; i < n; i++) {
+			counts[random.nextInt(n)]++;
+		}
+		int numRows = 0;
+		for (int i = 0; i < n; i++) {
+			if (counts[i] > 0) {
+				numRows++;
+			}
+		}
+		int[] rows = new int[numRows];
+		for (int i = 0, j = 0; i < n; i++) {
+			if (counts[i] > 0) {
+				rows[j++] = i;
+			}
+		}
+
+		MyId3 tree = new MyId3();
+		tree.buildTree(arena, rows, counts, random, numFeatures);
+		FlatTree flat = new FlatTree(tree, data.numAttributes(), data.numClasses());
+		if (m_OffHeap) {
+			File directory = offHeapDirectory();
+			File file = null;
+			if (directory != null) {
+				file = File.createTempFile("tree", ".id3m", directory);
+				file.deleteOnExit();
+			}
+			flat = flat.offHeap(file);
+		}
+		return flat;
+	}
+
+	/**
+	 * Returns the directory of the files backing off-heap data.
+	 *
+	 * @return the directory, or null for direct memory
+	 */
+	private File offHeapDirectory() {
+		return m_OffHeapDirectory.length() == 0 ? null : new File(m_OffHeapDirectory);
+	}
+
+	/**
+	 * Computes the class distribution for an instance by summing the leaf
+	 * distributions of all trees.
+	 *
+	 * @param instance the instance for which distribution is to be computed
+	 * @return the class distribution for the given instance
+	 * @throws NoSupportForMissingValuesException if instance has missing values
+	 */
+	@Override
+	public double[] distributionForInstance(Instance instance) throws NoSupportForMissingValuesException {
+
+		if (instance.hasMissingValue()) {
+			throw new NoSupportForMissingValuesException("MyRandomForest: no missing values, " + "please.");
+		}
+		int[] codes = new int[m_NumAttributes];
+		EncodedInstances.encode(instance, codes);
+		double[] sums = new double[m_NumClasses];
+		for (FlatTree tree : m_Trees) {
+			tree.addDistribution(tree.leafOffset(codes), sums);
+		}
+		if (Utils.sum(sums) > 0) {
+			Utils.normalize(sums);
+		}
+		return sums;
+	}
+
+	/**
+	 * Returns an enumeration describing the available options.
+	 *
+	 * @return an enumeration of all the available options.
+	 */
+	@Override
+	public Enumeration<Option> listOptions() {
+
+		Vector<Option> newVector = new Vector<Option>(6);
+
+		newVector.addElement(new Option("\tNumber of trees to build (default: 100).", "I", 1, "-I <number of trees>"));
+		newVector.addElement(new Option("\tNumber of attributes to randomly investigate at each node\n"
+				+ "\t(default: 0, which means int(log_2(#predictors)+1)).", "K", 1, "-K <number of features>"));
+		newVector.addElement(new Option("\tSeed for random number generator (default: 1).", "S", 1, "-S <seed>"));
+		newVector.addElement(new Option("\tNumber of trees to build in parallel (default: 1, 0 means one per\n"
+				+ "\tavailable processor).", "num-slots", 1, "-num-slots <num>"));
+		newVector.addElement(new Option("\tHold the encoded training data and the trees outside the Java heap.",
+				"off-heap", 0, "-off-heap"));
+		newVector.addElement(new Option("\tDirectory of the memory-mapped files backing the off-heap data\n"
+				+ "\t(default: none, which means direct memory).", "off-heap-dir", 1, "-off-heap-dir <directory>"));
+
+		newVector.addAll(Collections.list(super.listOptions()));
+
+		return newVector.elements();
+	}
+
+	/**
+	 * Parses a given list of options.
+	 * <p/>
+	 *
+	 * <!-- options-start --> Valid options are:
+	 * <p/>
+	 *
+	 * <pre>
+	 * -I &lt;number of trees&gt;
+	 *  Number of trees to build (default: 100).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -K &lt;number of features&gt;
+	 *  Number of attributes to randomly investigate at each node
+	 *  (default: 0, which means int(log_2(#predictors)+1)).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -S &lt;seed&gt;
+	 *  Seed for random number generator (default: 1).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -num-slots &lt;num&gt;
+	 *  Number of trees to build in parallel (default: 1, 0 means one per
+	 *  available processor).
+	 * </pre>
+	 *
+	 * <pre>
+	 * -off-heap
+	 *  Hold the encoded training data and the trees outside the Java heap.
+	 * </pre>
+	 *
+	 * <pre>
+	 * -off-heap-dir &lt;directory&gt;
+	 *  Directory of the memory-mapped files backing the off-heap data
+	 *  (default: none, which means direct memory).
+	 * </pre>
+	 *
+	 * <!-- options-end -->
+	 *
+	 * @param options the list of options as an array of strings
+	 * @throws Exception if an option is not supported
+	 */
+	@Override
+	public void setOptions(String[] options) throws Exception {
+
+		String tmpStr = Utils.getOption('I', options);
+		m_NumTrees = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 100;
+
+		tmpStr = Utils.getOption('K', options);
+		m_NumFeatures = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 0;
+
+		tmpStr = Utils.getOption('S', options);
+		m_Seed = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 1;
+
+		tmpStr = Utils.getOption("num-slots", options);
+		m_NumExecutionSlots = tmpStr.length() != 0 ? Integer.parseInt(tmpStr) : 1;
+
+		m_OffHeap = Utils.getFlag("off-heap", options);
+
+		m_OffHeapDirectory = Utils.getOption("off-heap-dir", options);
+
+		super.setOptions(options);
+	}
+
+	/**
+	 * Gets the current settings of the forest.
+	 *
+	 * @return an array of strings suitable for passing to setOptions
+	 */
+	@Override
+	public String[] getOptions() {
+
+		Vector<String> options = new Vector<String>(11);
+
+		options.add("-I");
+		options.add("" + m_NumTrees);
+		options.add("-K");
+		options.add("" + m_NumFeatures);
+		options.add("-S");
+		options.add("" + m_Seed);
+		options.add("-num-slots");
+		options.add("" + m_NumExecutionSlots);
+		if (m_OffHeap) {
+			options.add("-off-heap");
+		}
+		if (m_OffHeapDirectory.length() != 0) {
+			options.add("-off-heap-dir");
+			options.add(m_OffHeapDirectory);
+		}
+
+		Collections.addAll(options, super.getOptions());
+
+		return options.toArray(new String[0]);
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String numTreesTipText() {
+		return "The number of trees to be generated.";
+	}
+
+	/**
+	 * Get the value of numTrees.
+	 *
+	 * @return Value of numTrees.
+	 */
+	public int getNumTrees() {
+		return m_NumTrees;
+	}
+
+	/**
+	 * Set the value of numTrees.
+	 *
+	 * @param v Value to assign to numTrees.
+	 */
+	public void setNumTrees(int v) {
+		m_NumTrees = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String numFeaturesTipText() {
+		return "The number of attributes to be used in random selection (0 means int(log_2(#predictors)+1)).";
+	}
+
+	/**
+	 * Get the value of numFeatures.
+	 *
+	 * @return Value of numFeatures.
+	 */
+	public int getNumFeatures() {
+		return m_NumFeatures;
+	}
+
+	/**
+	 * Set the value of numFeatures.
+	 *
+	 * @param v Value to assign to numFeatures.
+	 */
+	public void setNumFeatures(int v) {
+		m_NumFeatures = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String seedTipText() {
+		return "The random number seed to be used.";
+	}
+
+	/**
+	 * Get the value of seed.
+	 *
+	 * @return Value of seed.
+	 */
+	public int getSeed() {
+		return m_Seed;
+	}
+
+	/**
+	 * Set the value of seed.
+	 *
+	 * @param v Value to assign to seed.
+	 */
+	public void setSeed(int v) {
+		m_Seed = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String numExecutionSlotsTipText() {
+		return "The number of trees to build in parallel (0 means one per available processor).";
+	}
+
+	/**
+	 * Get the value of numExecutionSlots.
+	 *
+	 * @return Value of numExecutionSlots.
+	 */
+	public int getNumExecutionSlots() {
+		return m_NumExecutionSlots;
+	}
+
+	/**
+	 * Set the value of numExecutionSlots.
+	 *
+	 * @param v Value to assign to numExecutionSlots.
+	 */
+	public void setNumExecutionSlots(int v) {
+		m_NumExecutionSlots = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String offHeapTipText() {
+		return "Whether the encoded training data and the trees are held outside the Java heap.";
+	}
+
+	/**
+	 * Get the value of offHeap.
+	 *
+	 * @return Value of offHeap.
+	 */
+	public boolean getOffHeap() {
+		return m_OffHeap;
+	}
+
+	/**
+	 * Set the value of offHeap.
+	 *
+	 * @param v Value to assign to offHeap.
+	 */
+	public void setOffHeap(boolean v) {
+		m_OffHeap = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 *
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String offHeapDirectoryTipText() {
+		return "The directory of the memory-mapped files backing the off-heap data (empty means direct memory).";
+	}
+
+	/**
+	 * Get the value of offHeapDirectory.
+	 *
+	 * @return Value of offHeapDirectory.
+	 */
+	public String getOffHeapDirectory() {
+		return m_OffHeapDirectory;
+	}
+
+	/**
+	 * Set the value of offHeapDirectory.
+	 *
+	 * @param v Value to assign to offHeapDirectory.
+	 */
+	public void setOffHeapDirectory(String v) {
+		m_OffHeapDirectory = v;
+	}
+
+	/**
+	 * Returns a description of the classifier.
+	 *
+	 * @return a string representation of the classifier
+	 */
+	@Override
+	public String toString() {
+
+		if (m_Trees == null) {
+			return "MyRandomForest: No model built yet.";
+		}
+		long numNodes = 0;
+		for (FlatTree tree : m_Trees) {
+			numNodes += tree.numNodes();
+		}
+		return "MyRandomForest\n\nBagging with " + m_Trees.length + " iterations and base learner MyId3\n"
+				+ "Average number of nodes per tree: " + Utils.doubleToString((double) numNodes / m_Trees.length, 2)
+				+ "\n";
+	}
+
+	/**
+	 * Returns the revision string.
+	 *
+	 * @return the revision
+	 */
+	@Override
+	public String getRevision() {
+		return RevisionUtils.extract("$Revision: 1 $");
+	}
+
+	/**
+	 * Main method for testing this class
+	 *
+	 * @param argv the commandline options
+	 */
+	public static void main(String[] argv) {
+		runClassifier(new MyRandomForest(), argv);
+	}
+}
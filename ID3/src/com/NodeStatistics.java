@@ -0,0 +1,107 @@
+package com;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The counts of one node, remembered so that trees grown on the same rows
+ * with different settings do not count the same node twice. Nodes are
+ * identified by their path from the root: all trees that split the same rows
+ * on the same attributes reach a node with the same rows, whichever criterion
+ * chose those attributes. The statistics of a root and its descendants form a
+ * tree of their own, grown as the trees using it ask for nodes.
+ * <p/>
+ * The remembered arrays are shared and must not be modified. Statistics are
+ * not thread-safe.
+ */
+class NodeStatistics {
+
+	/** The class counts, null until counted. */
+	private int[] m_ClassCounts;
+
+	/** The contingency table of every attribute, null until counted. */
+	private int[][] m_Counts;
+
+	/** The successors by split attribute. */
+	private final Map<Integer, NodeStatistics[]> m_Successors = new HashMap<Integer, NodeStatistics[]>();
+
+	/**
+	 * Returns the class counts.
+	 *
+	 * @return the class counts, or null if they have not been counted yet
+	 */
+	int[] classCounts() {
+		return m_ClassCounts;
+	}
+
+	/**
+	 * Remembers the class counts.
+	 *
+	 * @param classCounts the class counts, copied
+	 * @return the remembered copy
+	 */
+	int[] setClassCounts(int[] classCounts) {
+		m_ClassCounts = classCounts.clone();
+		return m_ClassCounts;
+	}
+
+	/**
+	 * Returns the contingency tables.
+	 *
+	 * @return the tables indexed by attribute, or null if they have not been
+	 *         counted yet
+	 */
+	int[][] counts() {
+		return m_Counts;
+	}
+
+	/**
+	 * Remembers the contingency tables.
+	 *
+	 * @param counts the tables indexed by attribute, null for the class; copied
+	 * @return the remembered copy
+	 */
+	int[][] setCounts(int[][] counts) {
+		m_Counts = new int[counts.length][];
+		for (int att = 0; att < counts.length; att++) {
+			if (counts[att] != null) {
+				m_Counts[att] = counts[att].clone();
+			}
+		}
+		return m_Counts;
+	}
+
+	/**
+	 * Returns the number of nodes counted in this subtree.
+	 *
+	 * @return the number of nodes whose class counts are known
+	 */
+	int size() {
+		int size = m_ClassCounts == null ? 0 : 1;
+		for (NodeStatistics[] successors : m_Successors.values()) {
+			for (NodeStatistics successor : successors) {
+				size += successor.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the statistics of the successors for a split.
+	 *
+	 * @param att       the split attribute
+	 * @param numValues the number of values of the attribute
+	 * @return the successors' statistics, one per value
+	 */
+	NodeStatistics[] successors(int att, int numValues) {
+		NodeStatistics[] successors = m_Successors.get(att);
+		if (successors == null) {
+			successors = new NodeStatistics[numValues];
+			for (int v = 0; v < numValues; v++) {
+				successors[v] = new NodeStatistics();
+			}
+			m_Successors.put(att, successors);
+		}
+		return successors;
+	}
+}
@@ -0,0 +1,230 @@
+package com;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+
+/**
+ * Maps nominal values given as text to their indices, for scoring rows that
+ * arrive as strings. Each attribute gets an open-addressing hash table built
+ * once from the header, and lookups hash and compare the characters of the
+ * input in place, so decoding a row allocates nothing but the row's values
+ * and no Instance is needed to score it.
+ * <p/>
+ * A decoder is immutable and can be shared by any number of threads.
+ */
+public class NominalDecoder {
+
+	/** The header the tables were built from. */
+	private final Instances m_Header;
+
+	/** The values of each attribute by slot, null for empty slots. */
+	private final String[][] m_Keys;
+
+	/** The value index in each occupied slot. */
+	private final int[][] m_Codes;
+
+	/**
+	 * Builds the tables for the nominal attributes of a header.
+	 *
+	 * @param header the header of the training data, with the class set
+	 */
+	public NominalDecoder(Instances header) {
+		m_Header = new Instances(header, 0);
+		int numAttributes = header.numAttributes();
+		m_Keys = new String[numAttributes][];
+		m_Codes = new int[numAttributes][];
+		for (int att = 0; att < numAttributes; att++) {
+			Attribute attribute = header.attribute(att);
+			if (!attribute.isNominal()) {
+				continue;
+			}
+			int capacity = 2;
+			while (capacity < 2 * attribute.numValues()) {
+				capacity <<= 1;
+			}
+			String[] keys = new String[capacity];
+			int[] codes = new int[capacity];
+			for (int v = 0; v < attribute.numValues(); v++) {
+				String value = attribute.value(v);
+				int slot = spread(value.hashCode()) & (capacity - 1);
+				while (keys[slot] != null && !keys[slot].equals(value)) {
+					slot = (slot + 1) & (capacity - 1);
+				}
+				if (keys[slot] == null) {
+					keys[slot] = value;
+					codes[slot] = v;
+				}
+			}
+			m_Keys[att] = keys;
+			m_Codes[att] = codes;
+		}
+	}
+
+	/**
+	 * Returns the index of a nominal value given as part of a character
+	 * sequence.
+	 *
+	 * @param att   the attribute index
+	 * @param text  the text holding the value
+	 * @param start the position of the value's first character
+	 * @param end   the position after the value's last character
+	 * @return the value index, or -1 if the attribute has no such value or is
+	 *         not nominal
+	 */
+	public int indexOf(int att, CharSequence text, int start, int end) {
+		String[] keys = m_Keys[att];
+		if (keys == null) {
+			return -1;
+		}
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		int mask = keys.length - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			String key = keys[slot];
+			if (key == null) {
+				return -1;
+			}
+			if (matches(key, text, start, end)) {
+				return m_Codes[att][slot];
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of a nominal value given as part of a character array,
+	 * as read from a file in bulk.
+	 *
+	 * @param att   the attribute index
+	 * @param text  the characters holding the value
+	 * @param start the position of the value's first character
+	 * @param end   the position after the value's last character
+	 * @return the value index, or -1 if the attribute has no such value or is
+	 *         not nominal
+	 */
+	public int indexOf(int att, char[] text, int start, int end) {
+		String[] keys = m_Keys[att];
+		if (keys == null) {
+			return -1;
+		}
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + text[i];
+		}
+		int mask = keys.length - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			String key = keys[slot];
+			if (key == null) {
+				return -1;
+			}
+			if (matches(key, text, start, end)) {
+				return m_Codes[att][slot];
+			}
+		}
+	}
+
+	/**
+	 * Decodes one comma-separated row. Blanks around a value and a pair of
+	 * matching quotes are removed. The class value may be left out, and is
+	 * ignored if given.
+	 *
+	 * @param text   the text holding the row
+	 * @param start  the position of the row's first character
+	 * @param end    the position after the row's last character
+	 * @param values receives the value of each attribute, nominal values by
+	 *               their index, the class as missing
+	 * @return values
+	 * @throws IllegalArgumentException if a value is not in the header or the
+	 *                                  row has the wrong number of values
+	 */
+	public double[] decodeCsv(CharSequence text, int start, int end, double[] values) {
+		int numAttributes = m_Header.numAttributes();
+		int classIndex = m_Header.classIndex();
+		int numFields = 1;
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == ',') {
+				numFields++;
+			}
+		}
+		boolean withClass = numFields == numAttributes;
+		if (!withClass && numFields != numAttributes - 1) {
+			throw new IllegalArgumentException("Expected " + (numAttributes - 1) + " or " + numAttributes
+					+ " values, got " + numFields + ".");
+		}
+		int pos = start;
+		for (int att = 0; att < numAttributes; att++) {
+			if (att == classIndex) {
+				values[att] = Double.NaN;
+				if (!withClass) {
+					continue;
+				}
+			}
+			int fieldEnd = pos;
+			while (fieldEnd < end && text.charAt(fieldEnd) != ',') {
+				fieldEnd++;
+			}
+			if (att != classIndex) {
+				int from = pos;
+				int to = fieldEnd;
+				while (from < to && text.charAt(from) <= ' ') {
+					from++;
+				}
+				while (to > from && text.charAt(to - 1) <= ' ') {
+					to--;
+				}
+				if (to - from >= 2 && (text.charAt(from) == '\'' || text.charAt(from) == '"')
+						&& text.charAt(to - 1) == text.charAt(from)) {
+					from++;
+					to--;
+				}
+				int code = indexOf(att, text, from, to);
+				if (code < 0) {
+					throw new IllegalArgumentException("Unknown value '" + text.subSequence(from, to)
+							+ "' for attribute " + m_Header.attribute(att).name() + ".");
+				}
+				values[att] = code;
+			}
+			pos = fieldEnd + 1;
+		}
+		return values;
+	}
+
+	/**
+	 * Returns whether a range of characters equals a string.
+	 */
+	private static boolean matches(String key, CharSequence text, int start, int end) {
+		if (key.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != text.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether a range of characters equals a string.
+	 */
+	private static boolean matches(String key, char[] text, int start, int end) {
+		if (key.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != text[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Mixes the high bits of a string hash into the low ones used for the slot.
+	 */
+	private static int spread(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,656 @@
+package com;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Reads nominal ARFF files on several threads, straight into the columns of
+ * EncodedInstances. The header is parsed once by Weka. The data section is
+ * then cut into chunks of about the same number of bytes, each ending at a
+ * line end, and the chunks are read and decoded in parallel. Values are
+ * looked up among the header's values by a NominalDecoder, so no strings or
+ * Instance objects are created per row, and loading a large file gets faster
+ * with the number of cores.
+ * <p/>
+ * As MyId3 needs, rows with a missing class are skipped, and any other
+ * missing value is an error. Sparse rows are read into the dense columns.
+ * Instance weights are not supported.
+ * <p/>
+ * Usage: ParallelArffLoader [file] [threads]
+ */
+public class ParallelArffLoader {
+
+	/** The file read. */
+	private final File m_File;
+
+	/** Number of threads, 0 for one per processor. */
+	private int m_NumThreads = 0;
+
+	/** Approximate number of bytes per chunk. */
+	private int m_ChunkSize = 1 << 24;
+
+	/** Index of the class attribute, -1 for the last one. */
+	private int m_ClassIndex = -1;
+
+	/** The header, read on first use. */
+	private Instances m_Structure;
+
+	/** Position of the first byte after the @data line. */
+	private long m_DataStart;
+
+	/** Looks up the values of the header's attributes. */
+	private NominalDecoder m_Decoder;
+
+	/**
+	 * Creates a loader for an ARFF file.
+	 *
+	 * @param file the file to read
+	 */
+	public ParallelArffLoader(File file) {
+		m_File = file;
+	}
+
+	/**
+	 * Get the value of numThreads.
+	 *
+	 * @return Value of numThreads.
+	 */
+	public int getNumThreads() {
+		return m_NumThreads;
+	}
+
+	/**
+	 * Set the value of numThreads.
+	 *
+	 * @param v Value to assign to numThreads, 0 for one per processor.
+	 */
+	public void setNumThreads(int v) {
+		m_NumThreads = v;
+	}
+
+	/**
+	 * Get the value of chunkSize.
+	 *
+	 * @return Value of chunkSize.
+	 */
+	public int getChunkSize() {
+		return m_ChunkSize;
+	}
+
+	/**
+	 * Set the value of chunkSize.
+	 *
+	 * @param v Value to assign to chunkSize, in bytes.
+	 */
+	public void setChunkSize(int v) {
+		m_ChunkSize = v;
+	}
+
+	/**
+	 * Get the value of classIndex.
+	 *
+	 * @return Value of classIndex.
+	 */
+	public int getClassIndex() {
+		return m_ClassIndex;
+	}
+
+	/**
+	 * Set the value of classIndex.
+	 *
+	 * @param v Value to assign to classIndex, -1 for the last attribute.
+	 */
+	public void setClassIndex(int v) {
+		m_ClassIndex = v;
+		m_Structure = null;
+	}
+
+	/**
+	 * Reads the header of the file.
+	 *
+	 * @return the header, without instances, with the class set
+	 * @throws IOException if the header can't be read or has an attribute that
+	 *                     is not nominal
+	 */
+	public Instances getStructure() throws IOException {
+		if (m_Structure != null) {
+			return m_Structure;
+		}
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		InputStream in = new BufferedInputStream(new FileInputStream(m_File), 1 << 16);
+		try {
+			long position = 0;
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			while (true) {
+				int b = in.read();
+				if (b < 0 && line.size() == 0) {
+					throw new IOException("No @data section in " + m_File + "!");
+				}
+				if (b >= 0) {
+					line.write(b);
+					position++;
+				}
+				if (b < 0 || b == '\n') {
+					header.write(line.toByteArray());
+					String text = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+					line.reset();
+					if (text.regionMatches(true, 0, "@data", 0, 5)) {
+						break;
+					}
+				}
+			}
+			m_DataStart = position;
+		} finally {
+			in.close();
+		}
+
+		Instances structure = new Instances(
+				new StringReader(new String(header.toByteArray(), StandardCharsets.UTF_8)));
+		for (int att = 0; att < structure.numAttributes(); att++) {
+			if (!structure.attribute(att).isNominal()) {
+				throw new IOException("Attribute " + structure.attribute(att).name() + " is not nominal!");
+			}
+		}
+		structure.setClassIndex(m_ClassIndex < 0 ? structure.numAttributes() - 1 : m_ClassIndex);
+		m_Decoder = new NominalDecoder(structure);
+		m_Structure = structure;
+		return structure;
+	}
+
+	/**
+	 * Reads the rows of the file into encoded columns.
+	 *
+	 * @return the rows with a class value, in the order of the file
+	 * @throws Exception if the file can't be read, a value is not in the
+	 *                   header or missing
+	 */
+	public EncodedInstances getEncodedData() throws Exception {
+		final Instances structure = getStructure();
+		RandomAccessFile file = new RandomAccessFile(m_File, "r");
+		try {
+			final FileChannel channel = file.getChannel();
+			long[] bounds = chunkBounds(channel);
+			int numThreads = m_NumThreads < 1 ? Runtime.getRuntime().availableProcessors() : m_NumThreads;
+			numThreads = Math.max(1, Math.min(numThreads, bounds.length - 1));
+			ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+			List<Chunk> chunks = new ArrayList<Chunk>();
+			try {
+				List<Future<Chunk>> results = new ArrayList<Future<Chunk>>();
+				for (int k = 0; k + 1 < bounds.length; k++) {
+					final long start = bounds[k];
+					final long end = bounds[k + 1];
+					results.add(executor.submit(new Callable<Chunk>() {
+						@Override
+						public Chunk call() throws Exception {
+							return new Chunk(structure, start).read(channel, end);
+						}
+					}));
+				}
+				for (Future<Chunk> result : results) {
+					chunks.add(result.get());
+				}
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception) e.getCause();
+				}
+				throw e;
+			} finally {
+				executor.shutdownNow();
+			}
+			return join(structure, chunks);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Reads the rows of the file as instances, for code that needs them.
+	 *
+	 * @return the rows with a class value, in the order of the file
+	 * @throws Exception if the file can't be read, a value is not in the
+	 *                   header or missing
+	 */
+	public Instances getDataSet() throws Exception {
+		return getEncodedData().toInstances();
+	}
+
+	/**
+	 * Cuts the data section into chunks that start at the start of a line.
+	 *
+	 * @return the start of every chunk, followed by the end of the file
+	 */
+	private long[] chunkBounds(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long[] bounds = new long[16];
+		int numBounds = 0;
+		bounds[numBounds++] = m_DataStart;
+		long position = m_DataStart;
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		while (position < size) {
+			// the chunk ends after the first line end from its nominal size on
+			long next = position + Math.max(1, m_ChunkSize) - 1;
+			boolean found = false;
+			while (!found && next < size) {
+				buffer.clear();
+				int n = channel.read(buffer, next);
+				for (int i = 0; i < n && !found; i++) {
+					found = buffer.get(i) == '\n';
+					next++;
+				}
+			}
+			position = Math.min(next, size);
+			if (numBounds == bounds.length) {
+				bounds = Arrays.copyOf(bounds, 2 * numBounds);
+			}
+			bounds[numBounds++] = position;
+		}
+		return Arrays.copyOf(bounds, numBounds);
+	}
+
+	/**
+	 * Concatenates the columns of the chunks.
+	 */
+	private static EncodedInstances join(Instances structure, List<Chunk> chunks) {
+		int numInstances = 0;
+		for (Chunk chunk : chunks) {
+			numInstances += chunk.m_NumRows;
+		}
+		int numAttributes = structure.numAttributes();
+		byte[][] columns = new byte[numAttributes][];
+		int[][] wideColumns = new int[numAttributes][];
+		int[] classValues = new int[numInstances];
+		for (int att = 0; att < numAttributes; att++) {
+			if (att == structure.classIndex()) {
+				continue;
+			}
+			if (structure.attribute(att).numValues() <= 256) {
+				columns[att] = new byte[numInstances];
+			} else {
+				wideColumns[att] = new int[numInstances];
+			}
+		}
+		int row = 0;
+		for (Chunk chunk : chunks) {
+			for (int att = 0; att < numAttributes; att++) {
+				if (columns[att] != null) {
+					System.arraycopy(chunk.m_Columns[att], 0, columns[att], row, chunk.m_NumRows);
+				} else if (wideColumns[att] != null) {
+					System.arraycopy(chunk.m_WideColumns[att], 0, wideColumns[att], row, chunk.m_NumRows);
+				}
+			}
+			System.arraycopy(chunk.m_ClassValues, 0, classValues, row, chunk.m_NumRows);
+			row += chunk.m_NumRows;
+		}
+		return new EncodedInstances(structure, columns, wideColumns, classValues);
+	}
+
+	/**
+	 * The rows of one chunk of the data section, decoded by one thread.
+	 */
+	private class Chunk {
+
+		/** The header. */
+		private final Instances m_Header;
+
+		/** Position in the file of the chunk's first byte. */
+		private final long m_Start;
+
+		/** The columns of the attributes with at most 256 values. */
+		private final byte[][] m_Columns;
+
+		/** The columns of the attributes with more than 256 values. */
+		private final int[][] m_WideColumns;
+
+		/** The class value index of each row. */
+		private int[] m_ClassValues;
+
+		/** Number of rows kept. */
+		private int m_NumRows;
+
+		/** The decoded characters of the chunk. */
+		private char[] m_Text;
+
+		/** The characters of the current token, m_Text unless it had escapes. */
+		private char[] m_Token;
+
+		/** The position of the current token's first character. */
+		private int m_TokenStart;
+
+		/** The position after the current token's last character. */
+		private int m_TokenEnd;
+
+		/** Whether the current token was quoted. */
+		private boolean m_Quoted;
+
+		Chunk(Instances header, long start) {
+			m_Header = header;
+			m_Start = start;
+			m_Columns = new byte[header.numAttributes()][];
+			m_WideColumns = new int[header.numAttributes()][];
+			m_ClassValues = new int[0];
+		}
+
+		/**
+		 * Reads and decodes the rows of the chunk.
+		 *
+		 * @param channel the file
+		 * @param end     the position after the chunk's last byte
+		 * @return this chunk
+		 * @throws Exception if a row can't be decoded
+		 */
+		Chunk read(FileChannel channel, long end) throws Exception {
+			ByteBuffer bytes = ByteBuffer.allocate((int) (end - m_Start));
+			while (bytes.hasRemaining()) {
+				if (channel.read(bytes, m_Start + bytes.position()) < 0) {
+					throw new IOException("Unexpected end of " + m_File + "!");
+				}
+			}
+			bytes.flip();
+			// chunks end at line ends, so no multi-byte character is split
+			CharBuffer text = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE).decode(bytes);
+			char[] chars = text.array();
+			int length = text.limit();
+			m_Text = chars;
+			grow(Math.max(16, length / (2 * m_Header.numAttributes())));
+
+			int position = 0;
+			while (position < length) {
+				int lineEnd = position;
+				while (lineEnd < length && chars[lineEnd] != '\n') {
+					lineEnd++;
+				}
+				int to = lineEnd;
+				while (to > position && chars[to - 1] <= ' ') {
+					to--;
+				}
+				int from = skipBlanks(chars, position, to);
+				if (from < to && chars[from] != '%') {
+					if (m_NumRows == m_ClassValues.length) {
+						grow(2 * m_NumRows);
+					}
+					if (chars[from] == '{') {
+						readSparse(chars, from + 1, to);
+					} else {
+						readDense(chars, from, to);
+					}
+				}
+				position = lineEnd + 1;
+			}
+			return this;
+		}
+
+		/**
+		 * Decodes a row of comma-separated values into row m_NumRows.
+		 */
+		private void readDense(char[] chars, int from, int to) throws Exception {
+			int numAttributes = m_Header.numAttributes();
+			int position = from;
+			boolean classMissing = false;
+			boolean valueMissing = false;
+			for (int att = 0; att < numAttributes; att++) {
+				if (att > 0) {
+					if (position >= to || chars[position] != ',') {
+						throw error(position, "expected " + numAttributes + " values");
+					}
+					position = skipBlanks(chars, position + 1, to);
+				}
+				position = skipBlanks(chars, readToken(chars, position, to, false), to);
+				if (!store(att, position)) {
+					classMissing |= att == m_Header.classIndex();
+					valueMissing |= att != m_Header.classIndex();
+				}
+			}
+			if (position < to) {
+				throw error(position, "expected " + numAttributes + " values");
+			}
+			endRow(classMissing, valueMissing);
+		}
+
+		/**
+		 * Decodes the entries of a sparse row, after its opening brace, into row
+		 * m_NumRows, whose values are all 0.
+		 */
+		private void readSparse(char[] chars, int from, int to) throws Exception {
+			int position = skipBlanks(chars, from, to);
+			boolean classMissing = false;
+			boolean valueMissing = false;
+			while (position < to && chars[position] != '}') {
+				int att = 0;
+				int digits = position;
+				while (position < to && chars[position] >= '0' && chars[position] <= '9') {
+					att = 10 * att + chars[position++] - '0';
+				}
+				if (position == digits || att >= m_Header.numAttributes()) {
+					throw error(digits, "bad attribute index");
+				}
+				position = skipBlanks(chars, position, to);
+				position = skipBlanks(chars, readToken(chars, position, to, true), to);
+				if (!store(att, position)) {
+					classMissing |= att == m_Header.classIndex();
+					valueMissing |= att != m_Header.classIndex();
+				}
+				if (position < to && chars[position] == ',') {
+					position = skipBlanks(chars, position + 1, to);
+				}
+			}
+			if (position + 1 != to) {
+				throw error(position, "expected '}' at the end of the row");
+			}
+			endRow(classMissing, valueMissing);
+		}
+
+		/**
+		 * Keeps the row just decoded, skips it if its class is missing, or
+		 * rejects it if another value is.
+		 */
+		private void endRow(boolean classMissing, boolean valueMissing) throws Exception {
+			if (classMissing) {
+				// the row is dropped; clear it, as a sparse row next relies on zeros
+				for (int att = 0; att < m_Columns.length; att++) {
+					if (m_Columns[att] != null) {
+						m_Columns[att][m_NumRows] = 0;
+					} else if (m_WideColumns[att] != null) {
+						m_WideColumns[att][m_NumRows] = 0;
+					}
+				}
+				m_ClassValues[m_NumRows] = 0;
+				return;
+			}
+			if (valueMissing) {
+				throw new NoSupportForMissingValuesException("Id3: no missing values, " + "please.");
+			}
+			m_NumRows++;
+		}
+
+		/**
+		 * Finds the token starting at a position: a quoted string, or the
+		 * characters up to the next separator without trailing blanks.
+		 *
+		 * @return the position after the token
+		 */
+		private int readToken(char[] chars, int position, int to, boolean sparse) throws Exception {
+			if (position < to && (chars[position] == '\'' || chars[position] == '"')) {
+				char quote = chars[position];
+				int close = position + 1;
+				boolean escaped = false;
+				while (close < to && chars[close] != quote) {
+					if (chars[close] == '\\') {
+						escaped = true;
+						close++;
+					}
+					close++;
+				}
+				if (close >= to) {
+					throw error(position, "unterminated quote");
+				}
+				m_Quoted = true;
+				if (escaped) {
+					m_Token = unescape(chars, position + 1, close);
+					m_TokenStart = 0;
+					m_TokenEnd = m_Token.length;
+				} else {
+					m_Token = m_Text;
+					m_TokenStart = position + 1;
+					m_TokenEnd = close;
+				}
+				return close + 1;
+			}
+			int end = position;
+			while (end < to && chars[end] != ',' && !(sparse && chars[end] == '}')) {
+				end++;
+			}
+			int tokenEnd = end;
+			while (tokenEnd > position && chars[tokenEnd - 1] <= ' ') {
+				tokenEnd--;
+			}
+			m_Quoted = false;
+			m_Token = m_Text;
+			m_TokenStart = position;
+			m_TokenEnd = tokenEnd;
+			return tokenEnd;
+		}
+
+		/**
+		 * Stores the value index of the current token in row m_NumRows.
+		 *
+		 * @return false if the value is missing
+		 */
+		private boolean store(int att, int position) throws Exception {
+			if (!m_Quoted && m_TokenEnd - m_TokenStart == 1 && m_Token[m_TokenStart] == '?') {
+				return false;
+			}
+			int code = m_Decoder.indexOf(att, m_Token, m_TokenStart, m_TokenEnd);
+			if (code < 0) {
+				throw error(position, "unknown value '" + new String(m_Token, m_TokenStart, m_TokenEnd - m_TokenStart)
+						+ "' for attribute " + m_Header.attribute(att).name());
+			}
+			if (att == m_Header.classIndex()) {
+				m_ClassValues[m_NumRows] = code;
+			} else if (m_Columns[att] != null) {
+				m_Columns[att][m_NumRows] = (byte) code;
+			} else {
+				m_WideColumns[att][m_NumRows] = code;
+			}
+			return true;
+		}
+
+		/**
+		 * Resizes the columns to hold the given number of rows.
+		 */
+		private void grow(int capacity) {
+			for (int att = 0; att < m_Columns.length; att++) {
+				if (att == m_Header.classIndex()) {
+					continue;
+				}
+				if (m_Header.attribute(att).numValues() <= 256) {
+					m_Columns[att] = m_Columns[att] == null ? new byte[capacity]
+							: Arrays.copyOf(m_Columns[att], capacity);
+				} else {
+					m_WideColumns[att] = m_WideColumns[att] == null ? new int[capacity]
+							: Arrays.copyOf(m_WideColumns[att], capacity);
+				}
+			}
+			m_ClassValues = Arrays.copyOf(m_ClassValues, capacity);
+		}
+
+		/**
+		 * Returns an error for the row at a position of the chunk.
+		 */
+		private IOException error(int position, String message) {
+			long offset = m_Start + StandardCharsets.UTF_8.encode(CharBuffer.wrap(m_Text, 0, position)).limit();
+			return new IOException(m_File + ", byte " + offset + ": " + message + "!");
+		}
+	}
+
+	/**
+	 * Returns the first position from a given one that does not hold a blank.
+	 */
+	private static int skipBlanks(char[] chars, int position, int to) {
+		while (position < to && chars[position] <= ' ') {
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * Removes the backslash escapes of a quoted value, as Weka does.
+	 */
+	private static char[] unescape(char[] chars, int from, int to) {
+		StringBuilder value = new StringBuilder(to - from);
+		for (int i = from; i < to; i++) {
+			char c = chars[i];
+			if (c == '\\' && i + 1 < to) {
+				c = chars[++i];
+				if (c == 'n') {
+					c = '\n';
+				} else if (c == 't') {
+					c = '\t';
+				} else if (c == 'r') {
+					c = '\r';
+				}
+			}
+			value.append(c);
+		}
+		return value.toString().toCharArray();
+	}
+
+	/**
+	 * Loads a file with DataSource and with this loader, reports the times and
+	 * checks that both give the same rows.
+	 *
+	 * @param args the file and the number of threads, 0 for one per processor
+	 * @throws Exception if the file can't be read
+	 */
+	public static void main(String[] args) throws Exception {
+		File file = new File(args.length > 0 ? args[0] : "data/breast-cancer.arff");
+		ParallelArffLoader loader = new ParallelArffLoader(file);
+		loader.setNumThreads(args.length > 1 ? Integer.parseInt(args[1]) : 0);
+
+		long start = System.nanoTime();
+		Instances data = DataSource.read(file.getPath());
+		data.setClassIndex(data.numAttributes() - 1);
+		data.deleteWithMissingClass();
+		EncodedInstances expected = new EncodedInstances(data);
+		long single = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		EncodedInstances encoded = loader.getEncodedData();
+		long parallel = System.nanoTime() - start;
+
+		boolean same = encoded.numInstances() == expected.numInstances();
+		for (int row = 0; row < encoded.numInstances() && same; row++) {
+			for (int att = 0; att < encoded.numAttributes() && same; att++) {
+				same = encoded.value(row, att) == expected.value(row, att);
+			}
+		}
+		double megabytes = file.length() / 1e6;
+		System.out.println(String.format(
+				"rows: %d, DataSource: %.0f ms (%.1f MB/s), parallel: %.0f ms (%.1f MB/s), same rows: %b",
+				encoded.numInstances(), single / 1e6, megabytes * 1e9 / single, parallel / 1e6,
+				megabytes * 1e9 / parallel, same));
+	}
+}
@@ -0,0 +1,299 @@
+package com;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+
+/**
+ * Bounded cache of class distributions in front of a ModelHolder. A tree only
+ * looks at the attributes it splits on, so the key is made of those values
+ * alone, packed into one long; rows differing only in other attributes share
+ * an entry. With a few nominal attributes of small arity the key space is
+ * small and repetitive traffic is almost always served from the cache.
+ * <p/>
+ * The cache is split into stripes, each a least-recently-used map guarded by
+ * its own lock, so threads rarely contend. All entries belong to one model
+ * version: when a new model is published, the next lookup drops them and
+ * starts over with the new model's split attributes.
+ * <p/>
+ * The returned distributions are shared between all rows falling into the
+ * same leaf and must not be modified.
+ */
+public class PredictionCache {
+
+	/** Number of stripes, a power of two. */
+	private static final int STRIPES = 16;
+
+	/** The model holder. */
+	private final ModelHolder m_Holder;
+
+	/** The header of the training data, for the arity of the attributes. */
+	private final Instances m_Header;
+
+	/** The maximum number of entries per stripe. */
+	private final int m_StripeSize;
+
+	/** The entries of the current model version. */
+	private final AtomicReference<Generation> m_Generation = new AtomicReference<Generation>();
+
+	/** Number of lookups served from the cache. */
+	private final LongAdder m_Hits = new LongAdder();
+
+	/** Number of lookups that had to score the row. */
+	private final LongAdder m_Misses = new LongAdder();
+
+	/** Number of entries dropped to make room. */
+	private final LongAdder m_Evictions = new LongAdder();
+
+	/** Number of times the entries were dropped for a new model version. */
+	private final LongAdder m_Invalidations = new LongAdder();
+
+	/**
+	 * The entries for one model version.
+	 */
+	private final class Generation {
+
+		/** The model version the entries were computed with. */
+		final ModelHolder.Version m_Version;
+
+		/** The attributes making up the key. */
+		final int[] m_KeyAttributes;
+
+		/** The weight of each key attribute's value in the key. */
+		final long[] m_Weights;
+
+		/** The model's leaf distributions, shared by the entries. */
+		final double[][] m_Leaves;
+
+		/** The stripes, null if the key space does not fit a long. */
+		final Stripe[] m_Stripes;
+
+		Generation(ModelHolder.Version version) {
+			m_Version = version;
+			FlatTree model = version.model();
+			m_KeyAttributes = model.splitAttributes();
+			m_Weights = new long[m_KeyAttributes.length];
+			long weight = 1;
+			for (int i = 0; i < m_KeyAttributes.length && weight > 0; i++) {
+				m_Weights[i] = weight;
+				int numValues = m_Header.attribute(m_KeyAttributes[i]).numValues();
+				weight = weight > Long.MAX_VALUE / numValues ? -1 : weight * numValues;
+			}
+			m_Leaves = new double[model.numDistributions()][];
+			for (int i = 0; i < m_Leaves.length; i++) {
+				m_Leaves[i] = model.distribution(i * model.numClasses());
+			}
+			if (weight > 0) {
+				m_Stripes = new Stripe[STRIPES];
+				for (int s = 0; s < STRIPES; s++) {
+					m_Stripes[s] = new Stripe();
+				}
+			} else {
+				m_Stripes = null;
+			}
+		}
+
+		/**
+		 * Looks up an instance, scoring and adding it on a miss.
+		 */
+		double[] distributionForInstance(Instance instance) {
+			FlatTree model = m_Version.model();
+			if (m_Stripes == null) {
+				m_Misses.increment();
+				return m_Leaves[model.leafOffset(instance) / model.numClasses()];
+			}
+			long key = 0;
+			for (int i = 0; i < m_KeyAttributes.length; i++) {
+				key += (long) instance.value(m_KeyAttributes[i]) * m_Weights[i];
+			}
+			Stripe stripe = m_Stripes[stripe(key)];
+			Long boxed = Long.valueOf(key);
+			double[] dist;
+			synchronized (stripe) {
+				dist = stripe.get(boxed);
+			}
+			if (dist != null) {
+				m_Hits.increment();
+				return dist;
+			}
+			m_Misses.increment();
+			dist = m_Leaves[model.leafOffset(instance) / model.numClasses()];
+			synchronized (stripe) {
+				stripe.put(boxed, dist);
+			}
+			return dist;
+		}
+
+		/**
+		 * Returns the number of entries.
+		 */
+		int size() {
+			int size = 0;
+			if (m_Stripes != null) {
+				for (Stripe stripe : m_Stripes) {
+					synchronized (stripe) {
+						size += stripe.size();
+					}
+				}
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * One stripe of entries, in access order.
+	 */
+	private final class Stripe extends LinkedHashMap<Long, double[]> {
+
+		/** for serialization */
+		private static final long serialVersionUID = 6420512270473620113L;
+
+		Stripe() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, double[]> eldest) {
+			if (size() > m_StripeSize) {
+				m_Evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a cache for the models published to a holder.
+	 *
+	 * @param holder     the model holder
+	 * @param header     the header of the training data
+	 * @param maxEntries the maximum number of entries, rounded up to a multiple
+	 *                   of the number of stripes
+	 */
+	public PredictionCache(ModelHolder holder, Instances header, int maxEntries) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("Cache size must be at least 1!");
+		}
+		m_Holder = holder;
+		m_Header = new Instances(header, 0);
+		m_StripeSize = (maxEntries + STRIPES - 1) / STRIPES;
+	}
+
+	/**
+	 * Computes the class distribution for an instance with the current model,
+	 * from the cache if possible.
+	 *
+	 * @param instance the instance
+	 * @return the class distribution, shared and not to be modified
+	 * @throws NoSupportForMissingValuesException if instance has missing values
+	 * @throws IllegalStateException              if no model has been published
+	 */
+	public double[] distributionForInstance(Instance instance) throws NoSupportForMissingValuesException {
+		if (instance.hasMissingValue()) {
+			throw new NoSupportForMissingValuesException("Id3: no missing values, " + "please.");
+		}
+		return generation().distributionForInstance(instance);
+	}
+
+	/**
+	 * Returns the entries of the current model version, replacing those of an
+	 * older one.
+	 *
+	 * @return the current generation
+	 * @throws IllegalStateException if no model has been published
+	 */
+	private Generation generation() {
+		ModelHolder.Version version = m_Holder.current();
+		if (version == null) {
+			throw new IllegalStateException("No model published yet!");
+		}
+		while (true) {
+			Generation current = m_Generation.get();
+			if (current != null && current.m_Version == version) {
+				return current;
+			}
+			if (current != null && current.m_Version.number() > version.number()) {
+				// another thread already moved on to a newer model
+				return current;
+			}
+			Generation next = new Generation(version);
+			if (m_Generation.compareAndSet(current, next)) {
+				if (current != null) {
+					m_Invalidations.increment();
+				}
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Spreads the key bits before picking a stripe.
+	 */
+	private static int stripe(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 60) & (STRIPES - 1);
+	}
+
+	/**
+	 * Returns the number of lookups served from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long hits() {
+		return m_Hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that had to score the row.
+	 *
+	 * @return the number of misses
+	 */
+	public long misses() {
+		return m_Misses.sum();
+	}
+
+	/**
+	 * Returns the share of lookups served from the cache.
+	 *
+	 * @return the hit rate, 0 if nothing was looked up
+	 */
+	public double hitRate() {
+		long hits = m_Hits.sum();
+		long lookups = hits + m_Misses.sum();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Returns the number of entries dropped to make room.
+	 *
+	 * @return the number of evictions
+	 */
+	public long evictions() {
+		return m_Evictions.sum();
+	}
+
+	/**
+	 * Returns the number of times the entries were dropped because a new model
+	 * was published.
+	 *
+	 * @return the number of invalidations
+	 */
+	public long invalidations() {
+		return m_Invalidations.sum();
+	}
+
+	/**
+	 * Returns the number of entries for the current model version.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		Generation current = m_Generation.get();
+		return current == null ? 0 : current.size();
+	}
+}
@@ -0,0 +1,150 @@
+package com;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Measures the scoring throughput of a ModelHolder for an increasing number of
+ * threads, while a background thread keeps publishing new versions of the
+ * model. Since the read path takes no locks, the throughput should grow about
+ * linearly with the number of threads up to the number of cores.
+ * <p/>
+ * With a cache size, the rows are scored through a PredictionCache, which is
+ * invalidated by every publish.
+ * <p/>
+ * Usage: ScoringBenchmark [train file] [test file] [max threads] [ms per step]
+ * [cache size]
+ */
+public class ScoringBenchmark {
+
+	/** Keeps the results alive so scoring is not optimized away. */
+	static volatile double ms_sink;
+
+	/**
+	 * Reads a dataset, with the last attribute as the class.
+	 *
+	 * @param fileName the file to read
+	 * @return the dataset
+	 * @throws Exception if the file can't be read
+	 */
+	public Instances getInstances(String fileName) throws Exception {
+		Instances m_instances = DataSource.read(fileName);
+		m_instances.setClassIndex(m_instances.numAttributes() - 1);
+		return m_instances;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String train = args.length > 0 ? args[0] : "data/breast-cancer.arff";
+		String test = args.length > 1 ? args[1] : "data/breast-cancer-test.arff";
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long millis = args.length > 3 ? Long.parseLong(args[3]) : 2000;
+		int cacheSize = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+
+		ScoringBenchmark benchmark = new ScoringBenchmark();
+		final Instances trainIns = benchmark.getInstances(train);
+		final Instances testIns = benchmark.getInstances(test);
+		final MyId3 tree = new MyId3();
+		tree.buildClassifier(trainIns);
+		final ModelHolder holder = new ModelHolder();
+		holder.publish(tree);
+		PredictionCache cache = cacheSize > 0 ? new PredictionCache(holder, trainIns, cacheSize) : null;
+
+		// keep publishing new versions, as a live retraining job would
+		final AtomicBoolean running = new AtomicBoolean(true);
+		Thread publisher = new Thread("publisher") {
+			@Override
+			public void run() {
+				while (running.get()) {
+					holder.publish(tree.snapshot());
+					try {
+						Thread.sleep(10);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		};
+		publisher.setDaemon(true);
+		publisher.start();
+
+		// warm up
+		score(holder, cache, testIns, 1, millis);
+
+		System.out.println("threads\tscores/s\tspeedup");
+		double base = 0;
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			double rate = score(holder, cache, testIns, threads, millis);
+			if (threads == 1) {
+				base = rate;
+			}
+			System.out.printf("%d\t%.0f\t%.2f%n", threads, rate, rate / base);
+		}
+		running.set(false);
+		System.out.println("model versions published: " + holder.current().number());
+		if (cache != null) {
+			System.out.printf("cache hit rate: %.4f (%d invalidations, %d evictions)%n", cache.hitRate(),
+					cache.invalidations(), cache.evictions());
+		}
+	}
+
+	/**
+	 * Scores the test instances in a loop on several threads for a while.
+	 *
+	 * @param holder  the model holder
+	 * @param cache   the cache to score through, or null
+	 * @param data    the instances to score
+	 * @param threads the number of scoring threads
+	 * @param millis  how long to score
+	 * @return the number of instances scored per second, over all threads
+	 * @throws Exception if a thread fails
+	 */
+	static double score(final ModelHolder holder, final PredictionCache cache, final Instances data, int threads,
+			final long millis) throws Exception {
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final long[] counts = new long[threads];
+		final Exception[] failures = new Exception[threads];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int index = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						long end = System.nanoTime() + millis * 1000000L;
+						long count = 0;
+						double sum = 0;
+						while (System.nanoTime() < end) {
+							for (Instance instance : data) {
+								sum += (cache != null ? cache.distributionForInstance(instance)
+										: holder.distributionForInstance(instance))[0];
+							}
+							count += data.numInstances();
+						}
+						counts[index] = count;
+						ms_sink += sum;
+					} catch (Exception e) {
+						failures[index] = e;
+					}
+				}
+			};
+			workers[t].start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		long total = 0;
+		for (int t = 0; t < threads; t++) {
+			workers[t].join();
+			if (failures[t] != null) {
+				throw failures[t];
+			}
+			total += counts[t];
+		}
+		return total / ((System.nanoTime() - begin) / 1e9);
+	}
+}
@@ -0,0 +1,167 @@
+package com;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Load generator for ScoringServer. A number of concurrent clients each post
+ * single rows from an ARFF file in a loop; at the end the request rate,
+ * latency percentiles and the server's own statistics are printed.
+ * <p/>
+ * Valid options are:
+ *
+ * <pre>
+ * -T &lt;test file&gt;
+ *  The ARFF file the rows are taken from (required).
+ * </pre>
+ *
+ * <pre>
+ * -u &lt;url&gt;
+ *  The server (default: http://localhost:8080).
+ * </pre>
+ *
+ * <pre>
+ * -c &lt;clients&gt;
+ *  The number of concurrent clients (default: 100).
+ * </pre>
+ *
+ * <pre>
+ * -s &lt;seconds&gt;
+ *  How long to run (default: 10).
+ * </pre>
+ */
+public class ScoringLoadTest {
+
+	/** The charset of requests and responses. */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** The number of latency samples kept per client. */
+	private static final int SAMPLES = 4096;
+
+	public static void main(String[] args) throws Exception {
+		String testFile = Utils.getOption('T', args);
+		if (testFile.length() == 0) {
+			throw new Exception("No test file given (-T).");
+		}
+		String url = Utils.getOption('u', args);
+		final String base = url.length() != 0 ? url : "http://localhost:8080";
+		String option = Utils.getOption('c', args);
+		int clients = option.length() != 0 ? Integer.parseInt(option) : 100;
+		option = Utils.getOption('s', args);
+		final long seconds = option.length() != 0 ? Long.parseLong(option) : 10;
+
+		Instances data = DataSource.read(testFile);
+		final String[] rows = new String[data.numInstances()];
+		for (int i = 0; i < rows.length; i++) {
+			Instance instance = data.instance(i);
+			StringBuilder row = new StringBuilder();
+			for (int att = 0; att < data.numAttributes(); att++) {
+				row.append(att == 0 ? "" : ",").append(instance.stringValue(att));
+			}
+			rows[i] = row.append('\n').toString();
+		}
+
+		ExecutorService executor = ScoringServer.newVirtualThreadExecutor();
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(clients);
+		}
+		final AtomicLong requests = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+		final long[][] latencies = new long[clients][SAMPLES];
+		final int[] numSamples = new int[clients];
+		final CountDownLatch done = new CountDownLatch(clients);
+		final long end = System.nanoTime() + seconds * 1000000000L;
+		for (int c = 0; c < clients; c++) {
+			final int client = c;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						URL score = new URL(base + "/score");
+						for (int i = client; System.nanoTime() < end; i++) {
+							long start = System.nanoTime();
+							try {
+								post(score, rows[i % rows.length]);
+								requests.incrementAndGet();
+							} catch (Exception e) {
+								errors.incrementAndGet();
+							}
+							latencies[client][numSamples[client]++ % SAMPLES] = System.nanoTime() - start;
+						}
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+		}
+		done.await();
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.SECONDS);
+
+		int total = 0;
+		for (int c = 0; c < clients; c++) {
+			total += Math.min(numSamples[c], SAMPLES);
+		}
+		long[] all = new long[total];
+		for (int c = 0, k = 0; c < clients; c++) {
+			int n = Math.min(numSamples[c], SAMPLES);
+			System.arraycopy(latencies[c], 0, all, k, n);
+			k += n;
+		}
+		Arrays.sort(all);
+		System.out.println("clients:      " + clients);
+		System.out.println("requests/s:   " + Utils.doubleToString(requests.get() / (double) seconds, 1));
+		System.out.println("errors:       " + errors.get());
+		if (all.length > 0) {
+			System.out.println("latency p50:  " + Utils.doubleToString(all[all.length / 2] / 1e6, 3) + " ms");
+			System.out.println("latency p99:  " + Utils.doubleToString(all[(int) (all.length * 0.99)] / 1e6, 3) + " ms");
+		}
+		System.out.println("server stats: " + get(new URL(base + "/stats")).trim());
+	}
+
+	private static String post(URL url, String body) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "text/csv");
+		OutputStream out = connection.getOutputStream();
+		out.write(body.getBytes(UTF8));
+		out.close();
+		if (connection.getResponseCode() != 200) {
+			throw new Exception("HTTP " + connection.getResponseCode());
+		}
+		return read(connection.getInputStream());
+	}
+
+	private static String get(URL url) throws Exception {
+		return read(url.openStream());
+	}
+
+	private static String read(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			out.write(buffer, 0, n);
+		}
+		in.close();
+		return new String(out.toByteArray(), UTF8);
+	}
+}
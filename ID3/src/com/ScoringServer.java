@@ -0,0 +1,660 @@
+package com;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Standalone HTTP scoring service for a tree model. Rows are posted to
+ * <code>/score</code> either as CSV, one row per line, or as JSON (an array of
+ * rows, each an array of values or an object keyed by attribute name). The
+ * values follow the header of the training ARFF file; the class value may be
+ * given or left out. The response holds one prediction per row, the class
+ * label or, with <code>?output=distribution</code>, the class distribution.
+ * <code>/stats</code> reports throughput, batch sizes and queue latency.
+ * <p/>
+ * Each request is handled on its own virtual thread when the JVM has them (Java
+ * 21 and later), otherwise on a cached thread pool. Request threads only parse
+ * and wait: their rows go to a CoalescingScorer, which scores the rows of
+ * concurrent requests together in batches, each with one model version. The
+ * model can be replaced while serving through the ModelHolder.
+ * <p/>
+ * Valid options are:
+ *
+ * <pre>
+ * -t &lt;training file&gt;
+ *  The training ARFF file, which gives the header (required).
+ * </pre>
+ *
+ * <pre>
+ * -m &lt;model file&gt;
+ *  A FlatTree saved for the header; if absent a MyId3 tree is trained.
+ * </pre>
+ *
+ * <pre>
+ * -p &lt;port&gt;
+ *  The port to listen on (default: 8080).
+ * </pre>
+ *
+ * <pre>
+ * -b &lt;rows&gt;
+ *  The maximum number of rows scored as one batch (default: 1024).
+ * </pre>
+ *
+ * <pre>
+ * -w &lt;microseconds&gt;
+ *  The longest a row waits for others to join its batch (default: 0,
+ *  only rows already waiting are batched).
+ * </pre>
+ */
+public class ScoringServer {
+
+	/** The charset of requests and responses. */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** The header rows are decoded against. */
+	private final Instances m_Header;
+
+	/** Maps the values of the rows to their indices. */
+	private final NominalDecoder m_Decoder;
+
+	/** The model used for scoring. */
+	private final ModelHolder m_Holder;
+
+	/** The maximum number of rows per batch. */
+	private final int m_MaxBatchRows;
+
+	/** The longest a row waits for others to join its batch, in microseconds. */
+	private final long m_MaxWaitMicros;
+
+	/** Number of requests scored. */
+	private final AtomicLong m_Requests = new AtomicLong();
+
+	/** When the server was started. */
+	private long m_StartNanos;
+
+	/** The HTTP server, null unless started. */
+	private HttpServer m_Server;
+
+	/** Runs the request handlers. */
+	private ExecutorService m_Executor;
+
+	/** Whether the request handlers run on virtual threads. */
+	private boolean m_Virtual;
+
+	/** Batches and scores the rows, null unless started. */
+	private CoalescingScorer m_Scorer;
+
+	/**
+	 * Creates a server for models trained on the given header.
+	 *
+	 * @param header        the header of the training data, with the class set
+	 * @param holder        the model holder, with a model published
+	 * @param maxBatchRows  the maximum number of rows per batch
+	 * @param maxWaitMicros the longest a row waits for others to join its
+	 *                      batch, in microseconds
+	 */
+	public ScoringServer(Instances header, ModelHolder holder, int maxBatchRows, long maxWaitMicros) {
+		m_Header = new Instances(header, 0);
+		m_Decoder = new NominalDecoder(header);
+		m_Holder = holder;
+		m_MaxBatchRows = maxBatchRows;
+		m_MaxWaitMicros = maxWaitMicros;
+	}
+
+	/**
+	 * Starts listening on a port.
+	 *
+	 * @param port the port, 0 for any free port
+	 * @throws IOException if the port can't be bound
+	 */
+	public synchronized void start(int port) throws IOException {
+		m_Server = HttpServer.create(new InetSocketAddress(port), 1024);
+		m_Server.createContext("/score", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleScore(exchange);
+			}
+		});
+		m_Server.createContext("/stats", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, "application/json", stats());
+			}
+		});
+		m_Executor = newVirtualThreadExecutor();
+		m_Virtual = m_Executor != null;
+		if (!m_Virtual) {
+			m_Executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "scoring-request");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		m_Server.setExecutor(m_Executor);
+		m_Scorer = CoalescingScorer.forModel(m_Holder, m_MaxBatchRows, m_MaxWaitMicros);
+		m_StartNanos = System.nanoTime();
+		m_Server.start();
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 *
+	 * @return the port
+	 */
+	public int port() {
+		return m_Server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the server, waiting at most a second for open exchanges.
+	 */
+	public synchronized void stop() {
+		if (m_Server == null) {
+			return;
+		}
+		m_Server.stop(1);
+		m_Scorer.close();
+		m_Executor.shutdown();
+		m_Server = null;
+	}
+
+	/**
+	 * Returns an executor starting a virtual thread per task, through reflection
+	 * so that the class still compiles and runs on Java 8.
+	 *
+	 * @return the executor, or null if the JVM has no virtual threads
+	 */
+	static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Handles a request to /score.
+	 *
+	 * @param exchange the exchange
+	 * @throws IOException if the response can't be sent
+	 */
+	private void handleScore(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				respond(exchange, 405, "text/plain", "Rows must be POSTed.\n");
+				return;
+			}
+			String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+			boolean json = contentType != null && contentType.contains("json");
+			boolean distribution = "output=distribution".equals(exchange.getRequestURI().getRawQuery());
+			String body = new String(readFully(exchange.getRequestBody()), UTF8);
+
+			double[][] rows;
+			try {
+				rows = json ? decodeJson(body) : decodeCsv(body);
+			} catch (IllegalArgumentException e) {
+				respond(exchange, 400, "text/plain", e.getMessage() + "\n");
+				return;
+			}
+
+			List<CompletableFuture<double[]>> futures = new ArrayList<CompletableFuture<double[]>>(rows.length);
+			for (double[] row : rows) {
+				futures.add(m_Scorer.distributionForValues(row));
+			}
+			double[][] result = new double[rows.length][];
+			try {
+				for (int r = 0; r < result.length; r++) {
+					result[r] = futures.get(r).get();
+				}
+			} catch (ExecutionException e) {
+				respond(exchange, 503, "text/plain", e.getCause().getMessage() + "\n");
+				return;
+			}
+			m_Requests.incrementAndGet();
+			respond(exchange, 200, json ? "application/json" : "text/csv",
+					json ? formatJson(result, distribution) : formatCsv(result, distribution));
+		} catch (InterruptedException e) {
+			respond(exchange, 503, "text/plain", "Interrupted.\n");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Decodes CSV rows, one per non-empty line.
+	 *
+	 * @param body the request body
+	 * @return the values of each row
+	 * @throws IllegalArgumentException if a row does not match the header
+	 */
+	double[][] decodeCsv(String body) {
+		List<double[]> rows = new ArrayList<double[]>();
+		int length = body.length();
+		for (int start = 0, end; start < length; start = end + 1) {
+			end = body.indexOf('\n', start);
+			if (end < 0) {
+				end = length;
+			}
+			int last = end;
+			while (last > start && Character.isWhitespace(body.charAt(last - 1))) {
+				last--;
+			}
+			if (last > start) {
+				rows.add(m_Decoder.decodeCsv(body, start, last, new double[m_Header.numAttributes()]));
+			}
+		}
+		return rows.toArray(new double[rows.size()][]);
+	}
+
+	/**
+	 * Decodes JSON rows: an array of arrays of values, or of objects mapping
+	 * attribute names to values.
+	 *
+	 * @param body the request body
+	 * @return the values of each row
+	 * @throws IllegalArgumentException if the body is not valid or a row does
+	 *                                  not match the header
+	 */
+	double[][] decodeJson(String body) {
+		Object parsed = new JsonReader(body).readDocument();
+		if (!(parsed instanceof List)) {
+			throw new IllegalArgumentException("Expected an array of rows.");
+		}
+		List<?> list = (List<?>) parsed;
+		double[][] rows = new double[list.size()][];
+		for (int r = 0; r < rows.length; r++) {
+			Object row = list.get(r);
+			if (row instanceof List) {
+				List<?> values = (List<?>) row;
+				String[] fields = new String[values.size()];
+				for (int i = 0; i < fields.length; i++) {
+					fields[i] = String.valueOf(values.get(i));
+				}
+				rows[r] = decodeRow(fields);
+			} else if (row instanceof Map) {
+				Map<?, ?> values = (Map<?, ?>) row;
+				String[] fields = new String[m_Header.numAttributes()];
+				for (int att = 0; att < fields.length; att++) {
+					Object value = values.get(m_Header.attribute(att).name());
+					if (value == null && att != m_Header.classIndex()) {
+						throw new IllegalArgumentException("Row " + (r + 1) + ": no value for attribute "
+								+ m_Header.attribute(att).name() + ".");
+					}
+					fields[att] = value == null ? null : String.valueOf(value);
+				}
+				rows[r] = decodeRow(fields);
+			} else {
+				throw new IllegalArgumentException("Row " + (r + 1) + " is neither an array nor an object.");
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Encodes one row given as strings. The class value may be left out, and is
+	 * ignored if given.
+	 *
+	 * @param fields the values, in header order
+	 * @return the value of each attribute, nominal values by their index
+	 * @throws IllegalArgumentException if a value is not in the header
+	 */
+	private double[] decodeRow(String[] fields) {
+		int numAttributes = m_Header.numAttributes();
+		int classIndex = m_Header.classIndex();
+		boolean withClass = fields.length == numAttributes;
+		if (!withClass && fields.length != numAttributes - 1) {
+			throw new IllegalArgumentException("Expected " + (numAttributes - 1) + " or " + numAttributes
+					+ " values, got " + fields.length + ".");
+		}
+		double[] codes = new double[numAttributes];
+		for (int att = 0, f = 0; att < numAttributes; att++) {
+			if (att == classIndex) {
+				codes[att] = Double.NaN;
+				if (withClass) {
+					f++;
+				}
+				continue;
+			}
+			String field = fields[f++];
+			int code = m_Decoder.indexOf(att, field, 0, field.length());
+			if (code < 0) {
+				throw new IllegalArgumentException(
+						"Unknown value '" + field + "' for attribute " + m_Header.attribute(att).name() + ".");
+			}
+			codes[att] = code;
+		}
+		return codes;
+	}
+
+	/**
+	 * Formats the predictions as CSV, one line per row.
+	 */
+	private String formatCsv(double[][] result, boolean distribution) {
+		StringBuilder text = new StringBuilder();
+		for (double[] dist : result) {
+			if (distribution) {
+				for (int c = 0; c < dist.length; c++) {
+					text.append(c == 0 ? "" : ",").append(dist[c]);
+				}
+			} else {
+				String label = classLabel(dist);
+				text.append(label == null ? "?" : label);
+			}
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Formats the predictions as a JSON array, of labels or of objects mapping
+	 * class labels to probabilities.
+	 */
+	private String formatJson(double[][] result, boolean distribution) {
+		Attribute classAttribute = m_Header.classAttribute();
+		StringBuilder text = new StringBuilder("[");
+		for (int r = 0; r < result.length; r++) {
+			text.append(r == 0 ? "" : ",");
+			if (distribution) {
+				text.append('{');
+				for (int c = 0; c < result[r].length; c++) {
+					text.append(c == 0 ? "" : ",").append(jsonString(classAttribute.value(c))).append(':')
+							.append(result[r][c]);
+				}
+				text.append('}');
+			} else {
+				String label = classLabel(result[r]);
+				text.append(label == null ? "null" : jsonString(label));
+			}
+		}
+		return text.append("]\n").toString();
+	}
+
+	/**
+	 * Returns the label of the most likely class, or null for an empty leaf.
+	 */
+	private String classLabel(double[] dist) {
+		if (Utils.sum(dist) == 0) {
+			return null;
+		}
+		return m_Header.classAttribute().value(Utils.maxIndex(dist));
+	}
+
+	/**
+	 * Returns the statistics as a JSON object.
+	 *
+	 * @return the statistics
+	 */
+	public String stats() {
+		double seconds = (System.nanoTime() - m_StartNanos) / 1e9;
+		long requests = m_Requests.get();
+		long rows = m_Scorer.numRows();
+		ModelHolder.Version version = m_Holder.current();
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("uptimeSeconds", seconds);
+		stats.put("virtualThreads", m_Virtual);
+		stats.put("modelVersion", version == null ? 0 : version.number());
+		stats.put("requests", requests);
+		stats.put("rows", rows);
+		stats.put("requestsPerSecond", requests / seconds);
+		stats.put("rowsPerSecond", rows / seconds);
+		stats.put("batches", m_Scorer.numBatches());
+		stats.put("meanRowsPerBatch", m_Scorer.meanBatchSize());
+		stats.put("maxRowsPerBatch", m_Scorer.maxBatchSize());
+		stats.put("batchSizeHistogram", Arrays.toString(m_Scorer.batchSizeHistogram()));
+		stats.put("queued", m_Scorer.numQueued());
+		stats.put("meanQueueMicros", m_Scorer.meanWaitMicros());
+		stats.put("maxQueueMicros", m_Scorer.maxWaitMicros());
+		StringBuilder text = new StringBuilder("{");
+		for (Map.Entry<String, Object> entry : stats.entrySet()) {
+			text.append(text.length() == 1 ? "" : ",").append(jsonString(entry.getKey())).append(':')
+					.append(entry.getValue());
+		}
+		return text.append("}\n").toString();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, String body)
+			throws IOException {
+		byte[] bytes = body.getBytes(UTF8);
+		exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static String jsonString(String s) {
+		StringBuilder text = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				text.append('\\').append(c);
+			} else if (c < 0x20) {
+				text.append(String.format("\\u%04x", (int) c));
+			} else {
+				text.append(c);
+			}
+		}
+		return text.append('"').toString();
+	}
+
+	/**
+	 * A minimal JSON reader for request bodies. Numbers, booleans and null are
+	 * returned as their literal text, since they are matched against nominal
+	 * values anyway.
+	 */
+	private static class JsonReader {
+
+		private final String m_Text;
+		private int m_Pos;
+
+		JsonReader(String text) {
+			m_Text = text;
+		}
+
+		Object readDocument() {
+			Object value = readValue();
+			skipWhitespace();
+			if (m_Pos != m_Text.length()) {
+				throw error("Unexpected content");
+			}
+			return value;
+		}
+
+		private Object readValue() {
+			skipWhitespace();
+			if (m_Pos >= m_Text.length()) {
+				throw error("Unexpected end of input");
+			}
+			char c = m_Text.charAt(m_Pos);
+			if (c == '[') {
+				m_Pos++;
+				List<Object> list = new ArrayList<Object>();
+				if (!consume(']')) {
+					do {
+						list.add(readValue());
+					} while (consume(','));
+					expect(']');
+				}
+				return list;
+			}
+			if (c == '{') {
+				m_Pos++;
+				Map<String, Object> map = new LinkedHashMap<String, Object>();
+				if (!consume('}')) {
+					do {
+						skipWhitespace();
+						String key = readString();
+						expect(':');
+						map.put(key, readValue());
+					} while (consume(','));
+					expect('}');
+				}
+				return map;
+			}
+			if (c == '"') {
+				return readString();
+			}
+			int start = m_Pos;
+			while (m_Pos < m_Text.length() && ",]} \t\r\n".indexOf(m_Text.charAt(m_Pos)) < 0) {
+				m_Pos++;
+			}
+			if (start == m_Pos) {
+				throw error("Unexpected character '" + c + "'");
+			}
+			return m_Text.substring(start, m_Pos);
+		}
+
+		private String readString() {
+			if (m_Pos >= m_Text.length() || m_Text.charAt(m_Pos) != '"') {
+				throw error("Expected a string");
+			}
+			StringBuilder text = new StringBuilder();
+			m_Pos++;
+			while (m_Pos < m_Text.length()) {
+				char c = m_Text.charAt(m_Pos++);
+				if (c == '"') {
+					return text.toString();
+				}
+				if (c == '\\') {
+					if (m_Pos >= m_Text.length()) {
+						break;
+					}
+					char e = m_Text.charAt(m_Pos++);
+					switch (e) {
+					case 'n':
+						text.append('\n');
+						break;
+					case 't':
+						text.append('\t');
+						break;
+					case 'r':
+						text.append('\r');
+						break;
+					case 'b':
+						text.append('\b');
+						break;
+					case 'f':
+						text.append('\f');
+						break;
+					case 'u':
+						if (m_Pos + 4 > m_Text.length()) {
+							throw error("Bad escape");
+						}
+						text.append((char) Integer.parseInt(m_Text.substring(m_Pos, m_Pos + 4), 16));
+						m_Pos += 4;
+						break;
+					default:
+						text.append(e);
+					}
+				} else {
+					text.append(c);
+				}
+			}
+			throw error("Unterminated string");
+		}
+
+		private boolean consume(char c) {
+			skipWhitespace();
+			if (m_Pos < m_Text.length() && m_Text.charAt(m_Pos) == c) {
+				m_Pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if (!consume(c)) {
+				throw error("Expected '" + c + "'");
+			}
+		}
+
+		private void skipWhitespace() {
+			while (m_Pos < m_Text.length() && Character.isWhitespace(m_Text.charAt(m_Pos))) {
+				m_Pos++;
+			}
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + m_Pos + " of the JSON body.");
+		}
+	}
+
+	/**
+	 * Runs the server until the process is stopped.
+	 *
+	 * @param args the options, see the class description
+	 * @throws Exception if the data or model can't be loaded or the port can't
+	 *                   be bound
+	 */
+	public static void main(String[] args) throws Exception {
+		String trainFile = Utils.getOption('t', args);
+		if (trainFile.length() == 0) {
+			throw new Exception("No training file given (-t).");
+		}
+		String modelFile = Utils.getOption('m', args);
+		String port = Utils.getOption('p', args);
+		String batch = Utils.getOption('b', args);
+		String wait = Utils.getOption('w', args);
+
+		Instances data = DataSource.read(trainFile);
+		data.setClassIndex(data.numAttributes() - 1);
+		ModelHolder holder = new ModelHolder();
+		if (modelFile.length() != 0) {
+			FlatTree model = FlatTree.load(new File(modelFile));
+			if (model.numAttributes() != data.numAttributes() || model.numClasses() != data.numClasses()) {
+				throw new Exception("Model " + modelFile + " does not match the header of " + trainFile + ".");
+			}
+			holder.publish(model);
+		} else {
+			MyId3 tree = new MyId3();
+			tree.buildClassifier(data);
+			holder.publish(tree);
+		}
+
+		ScoringServer server = new ScoringServer(data, holder, batch.length() != 0 ? Integer.parseInt(batch) : 1024,
+				wait.length() != 0 ? Long.parseLong(wait) : 0);
+		server.start(port.length() != 0 ? Integer.parseInt(port) : 8080);
+		System.out.println("Scoring on http://localhost:" + server.port() + "/score"
+				+ (server.m_Virtual ? " (virtual threads)" : " (thread pool)"));
+	}
+}
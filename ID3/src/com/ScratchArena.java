@@ -0,0 +1,371 @@
+package com;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reusable working storage for growing trees on one encoded dataset. All
+ * buffers are sized once from the number of attributes, their arities, the
+ * number of classes and the number of rows, and are reset for every node, so
+ * that growing a tree allocates only the nodes themselves.
+ * <p/>
+ * An arena is not thread-safe; each building thread needs its own. It can be
+ * reused for any number of trees grown on the same data.
+ */
+class ScratchArena {
+
+	/** The data the buffers are sized for. */
+	private final EncodedInstances m_Data;
+
+	/** The class counts of the current node. */
+	private final int[] m_ClassCounts;
+
+	/** The class counts of a sample of the current node's rows. */
+	private final int[] m_SampleClassCounts;
+
+	/** The contingency table of every attribute, null at the class index. */
+	private final int[][] m_Tables;
+
+	/** The tables evaluated at the current node, null for the others. */
+	private final int[][] m_Counts;
+
+	/** The non-class attribute indices, shuffled while sampling. */
+	private final int[] m_Attributes;
+
+	/** Information gain of every attribute. */
+	private final double[] m_InfoGains;
+
+	/** Split info of every attribute. */
+	private final double[] m_SplitInfos;
+
+	/** Gain ratio of the candidate attributes. */
+	private final double[] m_Candidates;
+
+	/** The successor offsets of a partition. */
+	private final int[] m_Offsets;
+
+	/** Per-row scratch space for partitioning. */
+	private final int[] m_Values;
+
+	/** Per-row scratch space for partitioning. */
+	private final int[] m_Sorted;
+
+	/** The nodes waiting to be expanded. */
+	private final Frontier m_Frontier = new Frontier();
+
+	/**
+	 * Allocates the buffers for the given data.
+	 *
+	 * @param data the encoded data
+	 */
+	ScratchArena(EncodedInstances data) {
+		m_Data = data;
+		int numAttributes = data.numAttributes();
+		m_ClassCounts = new int[data.numClasses()];
+		m_SampleClassCounts = new int[data.numClasses()];
+		m_Tables = new int[numAttributes][];
+		m_Counts = new int[numAttributes][];
+		m_Attributes = new int[numAttributes - 1];
+		int maxValues = 0;
+		for (int att = 0; att < numAttributes; att++) {
+			if (att != data.classIndex()) {
+				m_Tables[att] = new int[data.numValues(att) * data.numClasses()];
+				maxValues = Math.max(maxValues, data.numValues(att));
+			}
+		}
+		m_InfoGains = new double[numAttributes];
+		m_SplitInfos = new double[numAttributes];
+		m_Candidates = new double[numAttributes];
+		m_Offsets = new int[maxValues + 1];
+		m_Values = new int[data.numInstances()];
+		m_Sorted = new int[data.numInstances()];
+		reset();
+	}
+
+	/**
+	 * Prepares the arena for growing a new tree. The attribute order used for
+	 * sampling is restored, so a tree does not depend on the trees grown before
+	 * it in the same arena.
+	 */
+	void reset() {
+		for (int att = 0, i = 0; att < m_Tables.length; att++) {
+			if (m_Tables[att] != null) {
+				m_Attributes[i++] = att;
+			}
+		}
+	}
+
+	/**
+	 * Returns the data the arena was sized for.
+	 *
+	 * @return the encoded data
+	 */
+	EncodedInstances data() {
+		return m_Data;
+	}
+
+	/**
+	 * Returns the class counts buffer, zeroed.
+	 *
+	 * @return the class counts
+	 */
+	int[] classCounts() {
+		Arrays.fill(m_ClassCounts, 0);
+		return m_ClassCounts;
+	}
+
+	/**
+	 * Returns the buffer for the class counts of a sample, zeroed. It is
+	 * separate from classCounts, which holds the counts of the whole node.
+	 *
+	 * @return the sample's class counts
+	 */
+	int[] sampleClassCounts() {
+		Arrays.fill(m_SampleClassCounts, 0);
+		return m_SampleClassCounts;
+	}
+
+	/**
+	 * Returns per-row scratch space for row indices, shared with partition and
+	 * so only valid until the next partition.
+	 *
+	 * @return an array at least as long as the number of rows
+	 */
+	int[] sortedRows() {
+		return m_Sorted;
+	}
+
+	/**
+	 * Returns zeroed contingency tables for all attributes, null at the class
+	 * index.
+	 *
+	 * @return the tables
+	 */
+	int[][] allCounts() {
+		for (int att = 0; att < m_Tables.length; att++) {
+			if (m_Tables[att] != null) {
+				Arrays.fill(m_Tables[att], 0);
+			}
+			m_Counts[att] = m_Tables[att];
+		}
+		return m_Counts;
+	}
+
+	/**
+	 * Returns zeroed contingency tables for the given attributes, null for the
+	 * others and the class.
+	 *
+	 * @param attributes the attribute indices
+	 * @return the tables
+	 */
+	int[][] counts(int[] attributes) {
+		Arrays.fill(m_Counts, null);
+		for (int att : attributes) {
+			Arrays.fill(m_Tables[att], 0);
+			m_Counts[att] = m_Tables[att];
+		}
+		return m_Counts;
+	}
+
+	/**
+	 * Returns zeroed contingency tables for a random sample of the attributes,
+	 * null for the attributes not drawn and the class.
+	 *
+	 * @param random      the random number generator
+	 * @param numFeatures the number of attributes to draw
+	 * @return the tables
+	 */
+	int[][] sampledCounts(Random random, int numFeatures) {
+		Arrays.fill(m_Counts, null);
+		numFeatures = Math.min(numFeatures, m_Attributes.length);
+		// partial Fisher-Yates shuffle
+		for (int i = 0; i < numFeatures; i++) {
+			int j = i + random.nextInt(m_Attributes.length - i);
+			int att = m_Attributes[j];
+			m_Attributes[j] = m_Attributes[i];
+			m_Attributes[i] = att;
+			Arrays.fill(m_Tables[att], 0);
+			m_Counts[att] = m_Tables[att];
+		}
+		return m_Counts;
+	}
+
+	/**
+	 * Returns the information gain buffer, zeroed.
+	 *
+	 * @return the information gains
+	 */
+	double[] infoGains() {
+		Arrays.fill(m_InfoGains, 0);
+		return m_InfoGains;
+	}
+
+	/**
+	 * Returns the split info buffer, zeroed.
+	 *
+	 * @return the split infos
+	 */
+	double[] splitInfos() {
+		Arrays.fill(m_SplitInfos, 0);
+		return m_SplitInfos;
+	}
+
+	/**
+	 * Returns the candidate gain ratio buffer, zeroed.
+	 *
+	 * @return the candidates
+	 */
+	double[] candidates() {
+		Arrays.fill(m_Candidates, 0);
+		return m_Candidates;
+	}
+
+	/**
+	 * Partitions a range of rows by an attribute's value.
+	 *
+	 * @param rows  the row indices
+	 * @param start the first position in rows
+	 * @param end   the position after the last one in rows
+	 * @param att   the attribute to partition on
+	 * @return the start position of each value's rows followed by end, valid
+	 *         until the next call
+	 */
+	int[] partition(int[] rows, int start, int end, int att) {
+		m_Data.partition(rows, start, end, att, m_Offsets, m_Values, m_Sorted);
+		return m_Offsets;
+	}
+
+	/**
+	 * Returns the queue of nodes waiting to be expanded.
+	 *
+	 * @return the frontier, empty unless a build is in progress
+	 */
+	Frontier frontier() {
+		return m_Frontier;
+	}
+
+	/**
+	 * A FIFO queue of nodes and their row ranges, held in growable parallel
+	 * arrays so queuing a node allocates nothing once the arrays are big enough.
+	 */
+	static class Frontier {
+
+		private MyId3[] m_Nodes = new MyId3[64];
+		private int[] m_Starts = new int[64];
+		private int[] m_Ends = new int[64];
+		private int[] m_Depths = new int[64];
+		private int[][] m_Attributes = new int[64][];
+
+		/** Position of the head in the ring. */
+		private int m_Head;
+
+		/** Number of queued nodes. */
+		private int m_Size;
+
+		/** Ring position of the node last removed. */
+		private int m_Current;
+
+		/** The attributes of the node last removed. */
+		private int[] m_CurrentAttributes;
+
+		/**
+		 * Adds a node at the tail.
+		 *
+		 * @param node  the node
+		 * @param start the first position of its rows
+		 * @param end   the position after the last one of its rows
+		 * @param depth      the node's depth
+		 * @param attributes the attributes to score in the node's subtree, or
+		 *                   null for all
+		 */
+		void add(MyId3 node, int start, int end, int depth, int[] attributes) {
+			if (m_Size == m_Nodes.length) {
+				grow();
+			}
+			int i = (m_Head + m_Size) & (m_Nodes.length - 1);
+			m_Nodes[i] = node;
+			m_Starts[i] = start;
+			m_Ends[i] = end;
+			m_Depths[i] = depth;
+			m_Attributes[i] = attributes;
+			m_Size++;
+		}
+
+		/**
+		 * Returns whether no nodes are queued.
+		 *
+		 * @return true if the queue is empty
+		 */
+		boolean isEmpty() {
+			return m_Size == 0;
+		}
+
+		/**
+		 * Returns the number of queued nodes.
+		 *
+		 * @return the size of the queue
+		 */
+		int size() {
+			return m_Size;
+		}
+
+		/**
+		 * Removes the head node; its row range, depth and attributes are then
+		 * available from start(), end(), depth() and attributes().
+		 *
+		 * @return the node
+		 */
+		MyId3 poll() {
+			m_Current = m_Head;
+			MyId3 node = m_Nodes[m_Current];
+			m_Nodes[m_Current] = null;
+			m_CurrentAttributes = m_Attributes[m_Current];
+			m_Attributes[m_Current] = null;
+			m_Head = (m_Head + 1) & (m_Nodes.length - 1);
+			m_Size--;
+			return node;
+		}
+
+		int start() {
+			return m_Starts[m_Current];
+		}
+
+		int end() {
+			return m_Ends[m_Current];
+		}
+
+		int depth() {
+			return m_Depths[m_Current];
+		}
+
+		int[] attributes() {
+			return m_CurrentAttributes;
+		}
+
+		/**
+		 * Doubles the capacity, unrolling the ring to start at 0.
+		 */
+		private void grow() {
+			int capacity = m_Nodes.length;
+			MyId3[] nodes = new MyId3[2 * capacity];
+			int[] starts = new int[2 * capacity];
+			int[] ends = new int[2 * capacity];
+			int[] depths = new int[2 * capacity];
+			int[][] attributes = new int[2 * capacity][];
+			for (int k = 0; k < m_Size; k++) {
+				int i = (m_Head + k) & (capacity - 1);
+				nodes[k] = m_Nodes[i];
+				starts[k] = m_Starts[i];
+				ends[k] = m_Ends[i];
+				depths[k] = m_Depths[i];
+				attributes[k] = m_Attributes[i];
+			}
+			m_Nodes = nodes;
+			m_Starts = starts;
+			m_Ends = ends;
+			m_Depths = depths;
+			m_Attributes = attributes;
+			m_Head = 0;
+		}
+	}
+}
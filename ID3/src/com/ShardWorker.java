@@ -0,0 +1,329 @@
+package com;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.converters.ArffLoader;
+
+/**
+ * Holds one shard of the training rows for DistributedId3 and counts them on
+ * request. The worker keeps the row range of every node of the coordinator's
+ * current level; when the coordinator sends the splits of a level it
+ * partitions the ranges and returns the class counts and the contingency
+ * tables of the successors, and the coordinator sums them over all shards.
+ * <p/>
+ * The protocol runs over one TCP connection per training run. Requests are a
+ * command byte followed by its arguments; replies start with a status byte, 0
+ * for success or 1 followed by an error message. Numbers are big-endian
+ * int32 except within the blocks of counts.
+ *
+ * <pre>
+ * 'H'                      header: number of rows, number of attributes,
+ *                          class index, number of values of each attribute
+ * 'R'                      root: the counts of the root (see below)
+ * 'S' n split[n]           split the n nodes of the current level (-1 for no
+ *                          split): the counts of their successors
+ * 'Q'                      end of the run, no reply
+ * </pre>
+ *
+ * The counts of a level are sent as the number of nodes and the length of a
+ * block of unsigned varints (7 bits per byte, low bits first), followed by
+ * the block. It holds the class counts of each node, followed by the table of
+ * every attribute except the class, value-major, if the node has rows. Most
+ * counts of deep nodes are small, so they mostly take one byte.
+ * <p/>
+ * Valid options are:
+ *
+ * <pre>
+ * -t &lt;training file&gt;
+ *  The ARFF file holding the shard, class last (required).
+ * </pre>
+ *
+ * <pre>
+ * -shard &lt;index&gt;/&lt;count&gt;
+ *  Keep only every count-th row of the file, starting at row index
+ *  (default: keep all rows).
+ * </pre>
+ *
+ * <pre>
+ * -p &lt;port&gt;
+ *  The port to listen on (default: 0, any free port, which is printed).
+ * </pre>
+ */
+public class ShardWorker {
+
+	/** Request for the shape of the data. */
+	static final int HELLO = 'H';
+
+	/** Request for the counts of the root. */
+	static final int ROOT = 'R';
+
+	/** Request to split a level and count the next one. */
+	static final int SPLIT = 'S';
+
+	/** End of a training run. */
+	static final int QUIT = 'Q';
+
+	/** The shard. */
+	private final EncodedInstances m_Data;
+
+	/** The working storage. */
+	private final ScratchArena m_Arena;
+
+	/** The rows, partitioned in place as the levels are split. */
+	private int[] m_Rows;
+
+	/** The multiplicity of each row, null if every row counts once. */
+	private int[] m_RowCounts;
+
+	/** The first position in m_Rows of each node of the current level. */
+	private int[] m_Starts = new int[0];
+
+	/** The position after the last one of each node of the current level. */
+	private int[] m_Ends = new int[0];
+
+	/** The counts of the current level, encoded. */
+	private byte[] m_Block = new byte[1 << 16];
+
+	/** Used length of m_Block. */
+	private int m_BlockLength;
+
+	/**
+	 * Creates a worker for a shard.
+	 *
+	 * @param data the rows of the shard, with the class set and no missing
+	 *             class values
+	 * @throws Exception if the rows can't be encoded
+	 */
+	public ShardWorker(Instances data) throws Exception {
+		m_Data = new EncodedInstances(data);
+		m_Arena = new ScratchArena(m_Data);
+	}
+
+	/**
+	 * Serves training runs, one connection at a time, until the thread is
+	 * interrupted or the socket closed.
+	 *
+	 * @param server the listening socket
+	 * @throws IOException if no connection can be accepted
+	 */
+	public void serve(ServerSocket server) throws IOException {
+		while (!Thread.currentThread().isInterrupted()) {
+			Socket socket = server.accept();
+			try {
+				socket.setTcpNoDelay(true);
+				serve(new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16)),
+						new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16)));
+			} catch (IOException e) {
+				System.err.println("ShardWorker: connection lost: " + e.getMessage());
+			} finally {
+				socket.close();
+			}
+		}
+	}
+
+	/**
+	 * Answers the requests of one training run.
+	 */
+	private void serve(DataInputStream in, DataOutputStream out) throws IOException {
+		while (true) {
+			int command;
+			try {
+				command = in.readUnsignedByte();
+			} catch (EOFException e) {
+				return;
+			}
+			if (command == QUIT) {
+				return;
+			}
+			int[] splits = null;
+			if (command == SPLIT) {
+				splits = new int[in.readInt()];
+				for (int i = 0; i < splits.length; i++) {
+					splits[i] = in.readInt();
+				}
+			}
+			try {
+				if (command == HELLO) {
+					out.writeByte(0);
+					out.writeInt(m_Data.numInstances());
+					out.writeInt(m_Data.numAttributes());
+					out.writeInt(m_Data.classIndex());
+					for (int att = 0; att < m_Data.numAttributes(); att++) {
+						out.writeInt(m_Data.numValues(att));
+					}
+				} else if (command == ROOT) {
+					root();
+					out.writeByte(0);
+					writeLevel(out);
+				} else if (command == SPLIT) {
+					split(splits);
+					out.writeByte(0);
+					writeLevel(out);
+				} else {
+					throw new IllegalArgumentException("unknown command " + command);
+				}
+			} catch (RuntimeException e) {
+				out.writeByte(1);
+				out.writeUTF(e.toString());
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * Makes all rows the only node of the current level. Duplicate rows are
+	 * collapsed as MyId3 does.
+	 */
+	private void root() {
+		m_RowCounts = new int[m_Data.numInstances()];
+		m_Rows = m_Data.distinctRows(m_RowCounts, (int) (m_Data.numInstances() * MyId3.MAX_DISTINCT_SHARE));
+		if (m_Rows == null) {
+			m_Rows = m_Data.allRows();
+			m_RowCounts = null;
+		}
+		m_Starts = new int[] { 0 };
+		m_Ends = new int[] { m_Rows.length };
+	}
+
+	/**
+	 * Partitions the nodes of the current level that are split; their
+	 * successors become the current level.
+	 *
+	 * @param splits the split attribute of each node, -1 for no split
+	 */
+	private void split(int[] splits) {
+		if (m_Rows == null) {
+			throw new IllegalStateException("no root counted");
+		}
+		if (splits.length != m_Starts.length) {
+			throw new IllegalArgumentException("expected " + m_Starts.length + " splits, got " + splits.length);
+		}
+		int size = 0;
+		for (int att : splits) {
+			if (att >= 0) {
+				if (att >= m_Data.numAttributes() || att == m_Data.classIndex()) {
+					throw new IllegalArgumentException("bad split attribute " + att);
+				}
+				size += m_Data.numValues(att);
+			}
+		}
+		int[] starts = new int[size];
+		int[] ends = new int[size];
+		int k = 0;
+		for (int i = 0; i < splits.length; i++) {
+			int att = splits[i];
+			if (att < 0) {
+				continue;
+			}
+			int[] offsets = m_Arena.partition(m_Rows, m_Starts[i], m_Ends[i], att);
+			for (int v = 0; v < m_Data.numValues(att); v++) {
+				starts[k] = offsets[v];
+				ends[k++] = offsets[v + 1];
+			}
+		}
+		m_Starts = starts;
+		m_Ends = ends;
+	}
+
+	/**
+	 * Writes the number of nodes of the current level and their counts.
+	 */
+	private void writeLevel(DataOutputStream out) throws IOException {
+		int numClasses = m_Data.numClasses();
+		m_BlockLength = 0;
+		for (int i = 0; i < m_Starts.length; i++) {
+			int[] classCounts = m_Arena.classCounts();
+			m_Data.countClasses(m_Rows, m_Starts[i], m_Ends[i], m_RowCounts, classCounts);
+			for (int c = 0; c < numClasses; c++) {
+				putVarint(classCounts[c]);
+			}
+			if (m_Starts[i] == m_Ends[i]) {
+				continue;
+			}
+			int[][] counts = m_Arena.allCounts();
+			m_Data.countNode(m_Rows, m_Starts[i], m_Ends[i], m_RowCounts, classCounts, counts);
+			for (int[] table : counts) {
+				if (table != null) {
+					for (int count : table) {
+						putVarint(count);
+					}
+				}
+			}
+		}
+		out.writeInt(m_Starts.length);
+		out.writeInt(m_BlockLength);
+		out.write(m_Block, 0, m_BlockLength);
+	}
+
+	/**
+	 * Appends a count to the block.
+	 */
+	private void putVarint(int value) {
+		if (m_BlockLength + 5 > m_Block.length) {
+			m_Block = Arrays.copyOf(m_Block, 2 * m_Block.length);
+		}
+		while ((value & ~0x7F) != 0) {
+			m_Block[m_BlockLength++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		m_Block[m_BlockLength++] = (byte) value;
+	}
+
+	/**
+	 * Reads a shard and serves training runs.
+	 *
+	 * @param args the options, see the class description
+	 * @throws Exception if the data can't be read or the port can't be bound
+	 */
+	public static void main(String[] args) throws Exception {
+		String trainFile = Utils.getOption('t', args);
+		if (trainFile.length() == 0) {
+			throw new Exception("No training file given (-t).");
+		}
+		String shard = Utils.getOption("shard", args);
+		String port = Utils.getOption('p', args);
+
+		int index = 0;
+		int count = 1;
+		if (shard.length() != 0) {
+			String[] fields = shard.split("/");
+			index = Integer.parseInt(fields[0].trim());
+			count = Integer.parseInt(fields[1].trim());
+		}
+
+		// stream the rows, keeping only the shard's, so that the workers on a
+		// host never hold the whole file
+		ArffLoader loader = new ArffLoader();
+		loader.setFile(new File(trainFile));
+		Instances structure = loader.getStructure();
+		structure.setClassIndex(structure.numAttributes() - 1);
+		Instances data = new Instances(structure, 0);
+		Instance row;
+		for (int i = 0; (row = loader.getNextInstance(structure)) != null; i++) {
+			if (i % count == index) {
+				data.add(row);
+			}
+		}
+		new MyId3().getCapabilities().testWithFail(data);
+		data.deleteWithMissingClass();
+
+		ShardWorker worker = new ShardWorker(data);
+		ServerSocket server = new ServerSocket(port.length() != 0 ? Integer.parseInt(port) : 0);
+		System.out.println("ShardWorker listening on port " + server.getLocalPort() + " with "
+				+ data.numInstances() + " rows");
+		System.out.flush();
+		worker.serve(server);
+	}
+}
@@ -0,0 +1,311 @@
+package com;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import weka.core.Instances;
+import weka.core.SelectedTag;
+import weka.core.Tag;
+import weka.core.Utils;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Compares the split criteria of MyId3 and a grid of its pre-pruning
+ * parameters in one run, and prints a table of the results. Everything that
+ * does not depend on the variant is computed once: the data is encoded once,
+ * the OneR weights are computed once per fold, and the counts of a node are
+ * taken from NodeStatistics shared by all variants growing that node on the
+ * same fold.
+ * <p/>
+ * With a test file every variant is trained on the training file and
+ * evaluated on the test file; otherwise it is cross-validated on the training
+ * file, with the folds Weka's stratified cross-validation would use.
+ * <p/>
+ * Valid options are:
+ *
+ * <pre>
+ * -t &lt;training file&gt;
+ *  The training ARFF file, class last (required).
+ * </pre>
+ *
+ * <pre>
+ * -T &lt;test file&gt;
+ *  The test ARFF file (default: cross-validation).
+ * </pre>
+ *
+ * <pre>
+ * -x &lt;number of folds&gt;
+ *  Number of cross-validation folds (default: 10).
+ * </pre>
+ *
+ * <pre>
+ * -s &lt;seed&gt;
+ *  Seed for randomizing the data before cross-validation (default: 1).
+ * </pre>
+ *
+ * <pre>
+ * -S &lt;criteria&gt;
+ *  Comma-separated split criteria (default: 0,1,2,3, see MyId3).
+ * </pre>
+ *
+ * <pre>
+ * -depth &lt;depths&gt;
+ *  Comma-separated maximum depths (default: 0).
+ * </pre>
+ *
+ * <pre>
+ * -M &lt;numbers&gt;
+ *  Comma-separated minimum numbers of instances to split (default: 0).
+ * </pre>
+ */
+public class SplitSearch {
+
+	/**
+	 * One combination of settings and its results over all folds.
+	 */
+	static class Variant {
+
+		/** The split criterion. */
+		final int m_Criterion;
+
+		/** The maximum depth. */
+		final int m_MaxDepth;
+
+		/** The minimum number of instances to split. */
+		final int m_MinNum;
+
+		/** Number of test rows classified correctly. */
+		int m_Correct;
+
+		/** Number of test rows. */
+		int m_Tested;
+
+		/** Total number of nodes of the trees. */
+		long m_Nodes;
+
+		/** Number of trees. */
+		int m_Trees;
+
+		/** Total build time, in nanoseconds. */
+		long m_BuildNanos;
+
+		Variant(int criterion, int maxDepth, int minNum) {
+			m_Criterion = criterion;
+			m_MaxDepth = maxDepth;
+			m_MinNum = minNum;
+		}
+
+		/**
+		 * Creates an untrained tree with the variant's settings.
+		 */
+		MyId3 newTree() {
+			MyId3 tree = new MyId3();
+			tree.setSplitCriterion(new SelectedTag(m_Criterion, MyId3.TAGS_SPLIT));
+			tree.setMaxDepth(m_MaxDepth);
+			tree.setMinNum(m_MinNum);
+			return tree;
+		}
+
+		/**
+		 * Returns the accuracy over all folds.
+		 */
+		double accuracy() {
+			return m_Tested == 0 ? 0 : (double) m_Correct / m_Tested;
+		}
+	}
+
+	/** The variants compared. */
+	private final List<Variant> m_Variants = new ArrayList<Variant>();
+
+	/** Number of nodes grown over all variants and folds. */
+	private long m_NodesGrown;
+
+	/** Number of nodes whose rows were actually counted. */
+	private long m_NodesCounted;
+
+	/**
+	 * Creates a search over all combinations of the given values.
+	 *
+	 * @param criteria  the split criteria
+	 * @param maxDepths the maximum depths
+	 * @param minNums   the minimum numbers of instances to split
+	 */
+	public SplitSearch(int[] criteria, int[] maxDepths, int[] minNums) {
+		for (int criterion : criteria) {
+			for (int maxDepth : maxDepths) {
+				for (int minNum : minNums) {
+					m_Variants.add(new Variant(criterion, maxDepth, minNum));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Trains every variant on the training data and tests it on the test data.
+	 *
+	 * @param train the training data
+	 * @param test  the test data, with the same header
+	 * @throws Exception if a tree can't be built
+	 */
+	public void evaluate(Instances train, Instances test) throws Exception {
+		EncodedInstances trainData = new EncodedInstances(train);
+		EncodedInstances testData = new EncodedInstances(test);
+		evaluateFold(new ScratchArena(trainData), trainData.allRows(), testData, testData.allRows());
+	}
+
+	/**
+	 * Cross-validates every variant on the data.
+	 *
+	 * @param data     the data
+	 * @param numFolds the number of folds
+	 * @param seed     the seed for randomizing the data
+	 * @throws Exception if a tree can't be built
+	 */
+	public void crossValidate(Instances data, int numFolds, int seed) throws Exception {
+		data = new Instances(data);
+		data.randomize(new Random(seed));
+		data.stratify(numFolds);
+		EncodedInstances encoded = new EncodedInstances(data);
+		ScratchArena arena = new ScratchArena(encoded);
+		int numInstances = encoded.numInstances();
+		for (int fold = 0; fold < numFolds; fold++) {
+			// the same blocks as Instances.testCV
+			int size = numInstances / numFolds;
+			int offset = numInstances % numFolds;
+			if (fold < offset) {
+				size++;
+				offset = fold;
+			}
+			int first = fold * (numInstances / numFolds) + offset;
+			int[] trainRows = new int[numInstances - size];
+			int[] testRows = new int[size];
+			for (int row = 0, i = 0; row < numInstances; row++) {
+				if (row >= first && row < first + size) {
+					testRows[row - first] = row;
+				} else {
+					trainRows[i++] = row;
+				}
+			}
+			evaluateFold(arena, trainRows, encoded, testRows);
+		}
+	}
+
+	/**
+	 * Trains every variant on one set of rows and tests it on another.
+	 *
+	 * @param arena     the working storage, sized for the training data
+	 * @param trainRows the training rows
+	 * @param testData  the encoded test data
+	 * @param testRows  the test rows
+	 * @throws Exception if a tree can't be built
+	 */
+	private void evaluateFold(ScratchArena arena, int[] trainRows, EncodedInstances testData, int[] testRows)
+			throws Exception {
+		double[] weights = MyId3.oneRWeights(arena, trainRows, null);
+		NodeStatistics statistics = new NodeStatistics();
+		int[] rows = new int[trainRows.length];
+		for (Variant variant : m_Variants) {
+			System.arraycopy(trainRows, 0, rows, 0, rows.length);
+			MyId3 tree = variant.newTree();
+			long start = System.nanoTime();
+			tree.buildTree(arena, rows, weights, statistics);
+			variant.m_BuildNanos += System.nanoTime() - start;
+			for (int row : testRows) {
+				if (tree.classifyRow(testData, row) == testData.classValue(row)) {
+					variant.m_Correct++;
+				}
+			}
+			variant.m_Tested += testRows.length;
+			int numNodes = tree.numNodes();
+			variant.m_Nodes += numNodes;
+			variant.m_Trees++;
+			m_NodesGrown += numNodes;
+		}
+		m_NodesCounted += statistics.size();
+	}
+
+	/**
+	 * Returns the results as a table, one line per variant.
+	 *
+	 * @return the table
+	 */
+	public String toTable() {
+		StringBuilder text = new StringBuilder();
+		text.append(String.format("%-45s %6s %6s %9s %9s %9s%n", "criterion", "depth", "M", "accuracy", "nodes",
+				"build ms"));
+		Variant best = null;
+		for (Variant variant : m_Variants) {
+			Tag tag = new SelectedTag(variant.m_Criterion, MyId3.TAGS_SPLIT).getSelectedTag();
+			text.append(String.format("%-45s %6d %6d %9.4f %9.1f %9.2f%n", tag.getReadable(), variant.m_MaxDepth,
+					variant.m_MinNum, variant.accuracy(), (double) variant.m_Nodes / variant.m_Trees,
+					variant.m_BuildNanos / 1e6));
+			if (best == null || variant.accuracy() > best.accuracy()) {
+				best = variant;
+			}
+		}
+		if (best != null) {
+			text.append(String.format("%nbest: %s, depth %d, M %d%n",
+					new SelectedTag(best.m_Criterion, MyId3.TAGS_SPLIT).getSelectedTag().getReadable(),
+					best.m_MaxDepth, best.m_MinNum));
+		}
+		text.append("nodes grown: " + m_NodesGrown + ", nodes counted: " + m_NodesCounted + "\n");
+		return text.toString();
+	}
+
+	/**
+	 * Parses a comma-separated list of integers.
+	 */
+	private static int[] parseList(String list, int[] defaults) {
+		if (list.length() == 0) {
+			return defaults;
+		}
+		String[] fields = list.split(",");
+		int[] values = new int[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			values[i] = Integer.parseInt(fields[i].trim());
+		}
+		return values;
+	}
+
+	/**
+	 * Reads a dataset, with the last attribute as the class.
+	 */
+	private static Instances read(String fileName) throws Exception {
+		Instances data = DataSource.read(fileName);
+		data.setClassIndex(data.numAttributes() - 1);
+		new MyId3().getCapabilities().testWithFail(data);
+		data.deleteWithMissingClass();
+		return data;
+	}
+
+	/**
+	 * Runs the search and prints the table.
+	 *
+	 * @param args the options, see the class description
+	 * @throws Exception if the data can't be read or a tree can't be built
+	 */
+	public static void main(String[] args) throws Exception {
+		String trainFile = Utils.getOption('t', args);
+		if (trainFile.length() == 0) {
+			throw new Exception("No training file given (-t).");
+		}
+		String testFile = Utils.getOption('T', args);
+		String folds = Utils.getOption('x', args);
+		String seed = Utils.getOption('s', args);
+		SplitSearch search = new SplitSearch(
+				parseList(Utils.getOption('S', args), new int[] { MyId3.SPLIT_INFO_GAIN, MyId3.SPLIT_WEIGHTED_GAIN,
+						MyId3.SPLIT_GAIN_RATIO, MyId3.SPLIT_WEIGHTED_GAIN_RATIO }),
+				parseList(Utils.getOption("depth", args), new int[] { 0 }),
+				parseList(Utils.getOption('M', args), new int[] { 0 }));
+
+		Instances train = read(trainFile);
+		if (testFile.length() != 0) {
+			search.evaluate(train, read(testFile));
+		} else {
+			search.crossValidate(train, folds.length() != 0 ? Integer.parseInt(folds) : 10,
+					seed.length() != 0 ? Integer.parseInt(seed) : 1);
+		}
+		System.out.print(search.toTable());
+	}
+}